@@ -0,0 +1,392 @@
+package bpt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Objects;
+
+/**
+ * <p>{@code PackedBinaryPatriciaTrie} is a binary Patricia trie over <b>packed</b> bit strings. It offers the
+ * operations of {@link BinaryPatriciaTrie}, on {@link String} keys too, but is a separate class, not a subclass. Where
+ * {@link BinaryPatriciaTrie} stores its keys as {@link String}s of '0' and '1' characters, two bytes per bit, and
+ * searches them with {@link String#substring(int)} and {@link String#startsWith(String)}, this trie takes its keys as
+ * ranges of bits of a {@code long[]} or a {@code byte[]}, most significant bit first, and stores them one bit per bit,
+ * 16 times less. Labels are compared 64 bits at a time: the first bit where a key and a label differ is the number of
+ * leading zeros of the XOR of their next 64 bits.</p>
+ *
+ * <p>Nodes do not copy their labels either. Every node points into the bits of one of the keys below it, whose prefix
+ * is the path from the root down to the node, and only records where its label ends: its label starts where the one of
+ * its parent ends. Splitting a label or merging a node with its only child therefore only creates or drops a node.
+ * {@link #search(long[], int, int)} and {@link #delete(long[], int, int)} never allocate, and
+ * {@link #insert(long[], int, int)} only allocates the nodes it adds and, if the key ends in a new leaf, a copy of its
+ * bits.</p>
+ *
+ * <p>The {@code byte[]} and {@link String} methods pack their keys into a buffer of this trie first, so that they never
+ * allocate past the first calls either; like {@link BinaryPatriciaTrie}, this class is not thread-safe.</p>
+ *
+ * @author Cheolhong Ahn
+ *
+ * @see BinaryPatriciaTrie
+ */
+public class PackedBinaryPatriciaTrie {
+
+    private static final class TrieNode {
+        private TrieNode left, right, prev;
+        private long[] bits;   // a key whose first end bits are the path from the root to the end of this node.
+        private int end;       // the label of this node is bits [prev.end, end).
+        private boolean isKey;
+
+        TrieNode(long[] bits, int end, boolean isKey) {
+            this.bits = bits;
+            this.end = end;
+            this.isKey = isKey;
+        }
+    }
+
+    private final TrieNode root = new TrieNode(new long[0], 0, false);
+    private int size;
+    private long[] scratch = new long[1]; // keys given as byte[] or String, packed.
+
+    // Bit i of a, 0 past its end.
+    private static int bit(long[] a, long i) {
+        int word = (int) (i >>> 6);
+        return word < a.length ? (int) (a[word] >>> (63 - (i & 63))) & 1 : 0;
+    }
+
+    // The 64 bits of a from bit i on, 0 past its end.
+    private static long window(long[] a, long i) {
+        int word = (int) (i >>> 6), shift = (int) (i & 63);
+        long w = word < a.length ? a[word] << shift : 0;
+        if(shift != 0 && word + 1 < a.length) {
+            w |= a[word + 1] >>> (64 - shift);
+        }
+        return w;
+    }
+
+    // Number of leading bits that a from bit i on and b from bit j on have in common, at most n.
+    private static int commonPrefix(long[] a, long i, long[] b, long j, int n) {
+        for(int k = 0; k < n; k += 64) {
+            long x = window(a, i + k) ^ window(b, j + k);
+            if(x != 0) {
+                return Math.min(n, k + Long.numberOfLeadingZeros(x));
+            }
+        }
+        return n;
+    }
+
+    // Copies length bits of key from bit offset on, to the start of a new array.
+    private static long[] copy(long[] key, int offset, int length) {
+        long[] bits = new long[(length + 63) >>> 6];
+        for(int w = 0; w < bits.length; w++) {
+            bits[w] = window(key, offset + 64L * w);
+        }
+        if((length & 63) != 0) {
+            bits[bits.length - 1] &= -1L << (64 - (length & 63)); // clear the bits past the key.
+        }
+        return bits;
+    }
+
+    private static void check(long[] key, int offset, int length) {
+        Objects.checkFromIndexSize((long) offset, length, 64L * key.length);
+    }
+
+    // Makes child the child of parent on the side of bit b.
+    private static void link(TrieNode parent, int b, TrieNode child) {
+        if(b == 0) {
+            parent.left = child;
+        } else {
+            parent.right = child;
+        }
+        child.prev = parent;
+    }
+
+    // Replaces n by its only child, which takes over its label.
+    private static void merge(TrieNode n) {
+        TrieNode child = n.left != null ? n.left : n.right;
+        link(n.prev, n.prev.left == n ? 0 : 1, child);
+    }
+
+    // Returns the node whose label ends exactly at the end of the key, or null if there is none.
+    private TrieNode find(long[] key, int offset, int length) {
+        TrieNode n = root;
+        while(n.end < length) {
+            TrieNode child = bit(key, (long) offset + n.end) == 0 ? n.left : n.right;
+            if(child == null || child.end > length) {
+                return null;
+            }
+            int labelLength = child.end - n.end;
+            if(commonPrefix(key, (long) offset + n.end, child.bits, n.end, labelLength) < labelLength) {
+                return null;
+            }
+            n = child;
+        }
+        return n;
+    }
+
+    // Packs the bits of key from bit offset on into scratch, and returns the offset of the first one there.
+    private int pack(byte[] key, int offset, int length) {
+        Objects.checkFromIndexSize((long) offset, length, 8L * key.length);
+        int first = offset >>> 3, bytes = ((offset & 7) + length + 7) >>> 3;
+        int words = (bytes + 7) >>> 3;
+        if(scratch.length < words) {
+            scratch = new long[Math.max(words, 2 * scratch.length)];
+        }
+        Arrays.fill(scratch, 0, words, 0);
+        for(int i = 0; i < bytes; i++) {
+            scratch[i >>> 3] |= (key[first + i] & 0xffL) << (56 - 8 * (i & 7));
+        }
+        return offset & 7;
+    }
+
+    // Packs key, a string of '0' and '1' characters, into scratch.
+    private void pack(String key) {
+        int words = (key.length() + 63) >>> 6;
+        if(scratch.length < words) {
+            scratch = new long[Math.max(words, 2 * scratch.length)];
+        }
+        Arrays.fill(scratch, 0, words, 0);
+        for(int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if(c != '0' && c != '1') {
+                throw new IllegalArgumentException("Not a bit string: " + key + ".");
+            }
+            scratch[i >>> 6] |= (long) (c - '0') << (63 - (i & 63));
+        }
+    }
+
+    /**
+     * Simple constructor that will initialize the internals of {@code this}.
+     */
+    public PackedBinaryPatriciaTrie() {
+    }
+
+    /**
+     * Searches the trie for a given key.
+     *
+     * @param key The bits of the key, most significant bit of key[0] first.
+     * @param offset The first bit of the key.
+     * @param length The number of bits of the key.
+     * @return {@code true} if and only if key is in the trie, {@code false} otherwise.
+     * @throws IndexOutOfBoundsException if the bits are not all in key.
+     */
+    public boolean search(long[] key, int offset, int length) {
+        check(key, offset, length);
+        TrieNode n = find(key, offset, length);
+        return n != null && n.isKey;
+    }
+
+    /**
+     * Inserts key into the trie. The trie keeps a copy of its bits, if it needs them.
+     *
+     * @param key The bits of the key, most significant bit of key[0] first.
+     * @param offset The first bit of the key.
+     * @param length The number of bits of the key.
+     * @return {@code true} if and only if the key was not already in the trie, {@code false} otherwise.
+     * @throws IndexOutOfBoundsException if the bits are not all in key.
+     */
+    public boolean insert(long[] key, int offset, int length) {
+        check(key, offset, length);
+        TrieNode n = root;
+        while(n.end < length) {
+            int b = bit(key, (long) offset + n.end);
+            TrieNode child = b == 0 ? n.left : n.right;
+            if(child == null) { // hits null: the rest of the key becomes a leaf.
+                link(n, b, new TrieNode(copy(key, offset, length), length, true));
+                size++;
+                return true;
+            }
+            int labelLength = child.end - n.end;
+            int common = commonPrefix(key, (long) offset + n.end, child.bits, n.end, Math.min(labelLength, length - n.end));
+            if(common < labelLength) { // the key leaves the label of child: split it.
+                int split = n.end + common;
+                TrieNode parent = new TrieNode(child.bits, split, split == length);
+                link(n, b, parent);
+                link(parent, bit(child.bits, split), child);
+                if(split < length) { // shares a common prefix: the rest of the key becomes a leaf next to child.
+                    link(parent, bit(key, (long) offset + split), new TrieNode(copy(key, offset, length), length, true));
+                }
+                size++;
+                return true;
+            }
+            n = child;
+        }
+        if(n.isKey) {
+            return false;
+        }
+        n.isKey = true; // the key ends at the end of a splitter.
+        size++;
+        return true;
+    }
+
+    /**
+     * Deletes key from the trie.
+     *
+     * @param key The bits of the key, most significant bit of key[0] first.
+     * @param offset The first bit of the key.
+     * @param length The number of bits of the key.
+     * @return {@code true} if and only if key was contained by the trie before we attempted deletion, {@code false} otherwise.
+     * @throws IndexOutOfBoundsException if the bits are not all in key.
+     */
+    public boolean delete(long[] key, int offset, int length) {
+        check(key, offset, length);
+        TrieNode n = find(key, offset, length);
+        if(n == null || !n.isKey) {
+            return false;
+        }
+        n.isKey = false;
+        size--;
+        if(n == root || (n.left != null && n.right != null)) { // still a splitter.
+            return true;
+        }
+        if(n.left != null || n.right != null) { // only one child, which takes over.
+            merge(n);
+            return true;
+        }
+        TrieNode parent = n.prev; // a leaf: drop it, and its parent too if it is a splitter of a single child now.
+        if(parent.left == n) {
+            parent.left = null;
+        } else {
+            parent.right = null;
+        }
+        if(parent != root && !parent.isKey) {
+            merge(parent);
+        }
+        return true;
+    }
+
+    /**
+     * Searches the trie for a key given as bytes.
+     * @param key The bits of the key, most significant bit of key[0] first.
+     * @param offset The first bit of the key.
+     * @param length The number of bits of the key.
+     * @return {@code true} if and only if key is in the trie, {@code false} otherwise.
+     * @throws IndexOutOfBoundsException if the bits are not all in key.
+     */
+    public boolean search(byte[] key, int offset, int length) {
+        int start = pack(key, offset, length); // may replace scratch, so it must come first.
+        return search(scratch, start, length);
+    }
+
+    /**
+     * Inserts a key given as bytes into the trie.
+     * @param key The bits of the key, most significant bit of key[0] first.
+     * @param offset The first bit of the key.
+     * @param length The number of bits of the key.
+     * @return {@code true} if and only if the key was not already in the trie, {@code false} otherwise.
+     * @throws IndexOutOfBoundsException if the bits are not all in key.
+     */
+    public boolean insert(byte[] key, int offset, int length) {
+        int start = pack(key, offset, length); // may replace scratch, so it must come first.
+        return insert(scratch, start, length);
+    }
+
+    /**
+     * Deletes a key given as bytes from the trie.
+     * @param key The bits of the key, most significant bit of key[0] first.
+     * @param offset The first bit of the key.
+     * @param length The number of bits of the key.
+     * @return {@code true} if and only if key was contained by the trie before we attempted deletion, {@code false} otherwise.
+     * @throws IndexOutOfBoundsException if the bits are not all in key.
+     */
+    public boolean delete(byte[] key, int offset, int length) {
+        int start = pack(key, offset, length); // may replace scratch, so it must come first.
+        return delete(scratch, start, length);
+    }
+
+    /**
+     * Searches the trie for a key given like those of {@link BinaryPatriciaTrie#search(String)}.
+     * @param key The key, a string of '0' and '1' characters.
+     * @return {@code true} if and only if key is in the trie, {@code false} otherwise.
+     * @throws IllegalArgumentException if key holds other characters.
+     */
+    public boolean search(String key) {
+        pack(key);
+        return search(scratch, 0, key.length());
+    }
+
+    /**
+     * Inserts a key given like those of {@link BinaryPatriciaTrie#insert(String)}.
+     * @param key The key, a string of '0' and '1' characters.
+     * @return {@code true} if and only if the key was not already in the trie, {@code false} otherwise.
+     * @throws IllegalArgumentException if key holds other characters.
+     */
+    public boolean insert(String key) {
+        pack(key);
+        return insert(scratch, 0, key.length());
+    }
+
+    /**
+     * Deletes a key given like those of {@link BinaryPatriciaTrie#delete(String)}.
+     * @param key The key, a string of '0' and '1' characters.
+     * @return {@code true} if and only if key was contained by the trie before we attempted deletion, {@code false} otherwise.
+     * @throws IllegalArgumentException if key holds other characters.
+     */
+    public boolean delete(String key) {
+        pack(key);
+        return delete(scratch, 0, key.length());
+    }
+
+    /**
+     * Queries the trie for emptiness.
+     *
+     * @return {@code true} if and only if {@link #getSize()} == 0, {@code false} otherwise.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the number of keys in the tree.
+     *
+     * @return The number of keys in the tree.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Performs an <i>inorder (symmetric) traversal</i> of the trie, like {@link BinaryPatriciaTrie#inorderTraversal()}.
+     * The keys are unpacked, so this is meant for tests and debugging.
+     *
+     * @return An {@link Iterator} over the keys stored in the trie, as strings of '0' and '1' characters, exposing the
+     * elements in <i>symmetric order</i>.
+     */
+    public Iterator<String> inorderTraversal() {
+        ArrayList<String> keys = new ArrayList<>();
+        traversalHelper(keys, root);
+        return keys.iterator();
+    }
+
+    private static void traversalHelper(ArrayList<String> keys, TrieNode n) {
+        if(n == null) {
+            return;
+        }
+        traversalHelper(keys, n.left);
+        if(n.isKey) {
+            char[] key = new char[n.end];
+            for(int i = 0; i < n.end; i++) {
+                key[i] = (char) ('0' + bit(n.bits, i));
+            }
+            keys.add(new String(key));
+        }
+        traversalHelper(keys, n.right);
+    }
+
+    /**
+     * Makes sure that the trie doesn't have splitter nodes with a single child.
+     * @return {@code true} iff all nodes in the trie either denote stored strings or split into two subtrees, {@code false} otherwise.
+     */
+    public boolean isJunkFree() {
+        return isJunkFree(root.left) && isJunkFree(root.right);
+    }
+
+    private static boolean isJunkFree(TrieNode n) {
+        if(n == null) {
+            return true;
+        }
+        if(!n.isKey && (n.left == null || n.right == null)) {
+            return false;
+        }
+        return isJunkFree(n.left) && isJunkFree(n.right);
+    }
+}
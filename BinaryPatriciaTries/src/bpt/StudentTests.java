@@ -3,7 +3,11 @@ import org.junit.Test;
 
 import static org.junit.Assert.*;
 
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Random;
+import java.util.Set;
 
 /**
  * A jUnit test suite for {@link BinaryPatriciaTrie}.
@@ -103,6 +107,62 @@ public class StudentTests {
                 trie.isJunkFree());
     }
 
+
+    @Test public void testPackedTrie() {
+        PackedBinaryPatriciaTrie trie = new PackedBinaryPatriciaTrie();
+        Set<String> keys = new HashSet<>();
+        Random rng = new Random(47);
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder key = new StringBuilder();
+            int length = rng.nextInt(4) == 0 ? rng.nextInt(200) : rng.nextInt(12); // long keys span several words.
+            for (int b = 0; b < length; b++) {
+                key.append(rng.nextBoolean() ? '1' : '0');
+            }
+            String k = key.toString();
+            if (rng.nextInt(3) == 0) {
+                assertEquals("Deletion of " + k + " should report whether it was there.", keys.remove(k), trie.delete(k));
+            } else {
+                assertEquals("Insertion of " + k + " should report whether it was new.", keys.add(k), trie.insert(k));
+            }
+            assertEquals("Size should match the number of distinct keys.", keys.size(), trie.getSize());
+        }
+        assertTrue("Packed trie had some junk in it!", trie.isJunkFree());
+        Set<String> traversed = new HashSet<>();
+        for (Iterator<String> it = trie.inorderTraversal(); it.hasNext(); ) {
+            traversed.add(it.next());
+        }
+        assertEquals("Traversal should return every key.", keys, traversed);
+
+        // The same key at other bit offsets of a long[] and of a byte[].
+        long[] words = {0x0123456789abcdefL, 0xfedcba9876543210L};
+        PackedBinaryPatriciaTrie packed = new PackedBinaryPatriciaTrie();
+        assertTrue(packed.insert(words, 4, 100));
+        assertTrue("A key should be found at any offset.", packed.search(new long[] {0x123456789abcdefL << 4 | 0xf, 0xedcba9876543210L << 4}, 0, 100));
+        assertFalse("A prefix of a key is not a key.", packed.search(words, 4, 99));
+        byte[] bytes = {(byte) 0xab, (byte) 0xcd, (byte) 0xef};
+        assertTrue(packed.insert(bytes, 3, 17));
+        assertTrue(packed.search("01011110011011110"));
+        assertFalse(packed.insert("01011110011011110"));
+        assertTrue(packed.delete(bytes, 3, 17));
+        assertEquals(1, packed.getSize());
+
+        // byte[] keys longer than the packing buffer of the trie, so that it has to grow it first.
+        byte[] zeros = new byte[16], ones = new byte[20];
+        Arrays.fill(ones, (byte) 0xff);
+        assertTrue(packed.insert(zeros, 0, 128));
+        assertTrue(packed.search(new long[2], 0, 128));
+        assertTrue(packed.insert(ones, 8, 150));
+        assertTrue(packed.search(ones, 0, 150));
+        assertFalse(packed.search(zeros, 0, 127));
+        assertTrue(packed.delete(zeros, 0, 128));
+        assertFalse(packed.search(zeros, 0, 128));
+        assertEquals(2, packed.getSize());
+        try {
+            packed.search(words, 64, 65);
+            fail("Bits past the end of the key should be rejected.");
+        } catch (IndexOutOfBoundsException ignored) {
+        }
+    }
 }
     
 
@@ -0,0 +1,276 @@
+package phonebook.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import phonebook.hashes.*;
+import phonebook.utils.Probes;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * <p>A <a href="https://github.com/openjdk/jmh">JMH</a> benchmark which drives every {@link HashTable} of
+ * {@code phonebook.hashes} through the same mixes of {@link HashTable#get(String)}, {@link HashTable#put(String, String)}
+ * and {@link HashTable#remove(String)} calls, so that collision resolvers can be compared on throughput, allocation rate
+ * and probes per operation.</p>
+ *
+ * <p>Every trial fills a fresh table with at least 512 keys of a given distribution, and keeps going until a target load
+ * factor is reached. Open addressing tables resize on their own, so their load factor is measured against the capacity
+ * they have when the filling stops; separate chaining tables are enlarged during the filling, whenever they would
+ * exceed the target load factor. Every benchmark invocation then performs the next 256 operations of a
+ * pre-generated random sequence: a search for a stored key, a search for an absent key, or the removal and
+ * re-insertion of a stored key, so that the size of the table stays constant. Scores are per operation, not per
+ * invocation. The probes reported by every call are
+ * summed in the auxiliary counters {@code probes} and {@code calls}; their ratio is the average number of probes per
+ * call.</p>
+ *
+ * <p>The sources under {@code benchmarks/} need JMH and its annotation processor on the classpath, next to the sources
+ * under {@code src/}. Run {@link #main(String[])}, which also attaches {@link GCProfiler} to report the allocation
+ * rate ({@code gc.alloc.rate.norm} is in bytes per operation), or pass {@code -prof gc} to the JMH runner.</p>
+ *
+ * @see HashTable
+ * @see CollisionResolver
+ * @see Probes
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CollisionResolverBenchmark {
+
+    /**
+     * The tables under comparison.
+     */
+    public enum Resolver {
+        SEPARATE_CHAINING(SeparateChainingHashTable::new),
+        LINEAR_PROBING_HARD(() -> new LinearProbingHashTable(false)),
+        LINEAR_PROBING_SOFT(() -> new LinearProbingHashTable(true)),
+        LINEAR_PROBING_SOFT_COMPACTING(() -> compacting(new LinearProbingHashTable(true))),
+        LINEAR_PROBING_ROBIN_HOOD(() -> new LinearProbingHashTable(false, true)),
+        ORDERED_LINEAR_PROBING_HARD(() -> new OrderedLinearProbingHashTable(false)),
+        ORDERED_LINEAR_PROBING_SOFT(() -> new OrderedLinearProbingHashTable(true)),
+        QUADRATIC_PROBING_HARD(() -> new QuadraticProbingHashTable(false)),
+        QUADRATIC_PROBING_SOFT(() -> new QuadraticProbingHashTable(true)),
+        QUADRATIC_PROBING_SOFT_COMPACTING(() -> compacting(new QuadraticProbingHashTable(true))),
+        INCREMENTAL_LINEAR_PROBING(() -> new IncrementalLinearProbingHashTable(false)),
+        CUCKOO_HASHING(CuckooHashTable::new),
+        SWISS_TABLE(SwissHashTable::new),
+        ARENA_LINEAR_PROBING(ArenaHashTable::new),
+        OFF_HEAP_LINEAR_PROBING(OffHeapHashTable::new),
+        CONCURRENT_SEPARATE_CHAINING(ConcurrentSeparateChainingHashTable::new),
+        CONCURRENT_OPEN_ADDRESSING(ConcurrentOpenAddressingHashTable::new);
+
+        private final Supplier<HashTable> factory;
+
+        Resolver(Supplier<HashTable> factory) {
+            this.factory = factory;
+        }
+
+        HashTable create() {
+            return factory.get();
+        }
+
+        private static HashTable compacting(OpenAddressingHashTable table) {
+            table.setCompactionRatio(COMPACTION_RATIO);
+            return table;
+        }
+    }
+
+    /**
+     * The shapes of the keys stored.
+     */
+    public enum KeyDistribution {
+        /** Random capitalized names of 5 to 12 letters. */
+        NAMES,
+        /** Phone numbers sharing their area code and exchange, i.e long common prefixes. */
+        PHONE_NUMBERS,
+        /**
+         * Concatenations of &quot;Aa&quot; and &quot;BB&quot;, which all share the same {@link String#hashCode()}. Not part of
+         * the default parameters: quadratic probing cannot place more keys with the same home cell than the distinct cells
+         * its probe sequence visits, which is about half of the table.
+         */
+        EQUAL_HASH_CODES;
+
+        String key(Random rng, int i) {
+            switch (this) {
+                case NAMES:
+                    StringBuilder name = new StringBuilder();
+                    name.append((char) ('A' + rng.nextInt(26)));
+                    for (int len = 4 + rng.nextInt(8); len > 0; len--) {
+                        name.append((char) ('a' + rng.nextInt(26)));
+                    }
+                    return name.append(i).toString(); // suffix keeps keys unique.
+                case PHONE_NUMBERS:
+                    return String.format("301-405-%04d", i);
+                case EQUAL_HASH_CODES:
+                    StringBuilder colliding = new StringBuilder();
+                    for (int bit = 0; bit < 12; bit++) {
+                        colliding.append(((i >> bit) & 1) == 0 ? "Aa" : "BB");
+                    }
+                    return colliding.toString();
+                default:
+                    throw new RuntimeException("Encountered unsupported KeyDistribution: " + this + ".");
+            }
+        }
+    }
+
+    private static final int OPS = 1 << 16;        // length of the pre-generated operation sequence.
+    private static final int MIN_KEYS = 1 << 9;
+    private static final int MAX_KEYS = 1 << 11;    // keeps every table within the primes of PrimeGenerator.
+    private static final int BATCH = 1 << 8;        // operations per invocation, see Workload#refillIfGrown().
+    private static final byte GET_HIT = 0, GET_MISS = 1, REPLACE = 2;
+    private static final double COMPACTION_RATIO = 0.05; // low enough for the highest load factor not to grow first.
+
+    /**
+     * A populated table and the sequence of operations to run against it.
+     */
+    @State(Scope.Thread)
+    public static class Workload {
+
+        @Param
+        public Resolver resolver;
+
+        @Param({"NAMES", "PHONE_NUMBERS"})
+        public KeyDistribution keys;
+
+        @Param({"0.25", "0.45"})
+        public double loadFactor;
+
+        @Param({"90", "50"})
+        public int readPercent;
+
+        HashTable table;
+        int filledCapacity;
+        String[] stored, absent;
+        byte[] ops = new byte[OPS];
+        int[] targets = new int[OPS];
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Random rng = new Random(47);
+            String[] all = new String[2 * MAX_KEYS];
+            for (int i = 0; i < all.length; i++) {
+                all[i] = keys.key(rng, i);
+            }
+            fill(all);
+            absent = new String[MAX_KEYS];
+            System.arraycopy(all, stored.length, absent, 0, absent.length);
+            for (int i = 0; i < OPS; i++) {
+                int roll = rng.nextInt(100);
+                ops[i] = roll < readPercent ? (roll % 4 == 0 ? GET_MISS : GET_HIT) : REPLACE;
+                targets[i] = rng.nextInt(ops[i] == GET_MISS ? absent.length : stored.length);
+            }
+        }
+
+        // Inserts keys until there are at least MIN_KEYS of them and the load factor is reached.
+        private void fill(String[] all) {
+            table = resolver.create();
+            int n = 0;
+            while (n < Math.min(all.length, MAX_KEYS)) {
+                table.put(all[n], all[n]);
+                n++;
+                if (n >= MIN_KEYS && table.size() >= loadFactor * table.capacity()) {
+                    break;
+                }
+                if (table.size() > loadFactor * table.capacity()) { // only chaining tables get here.
+                    enlarge(table);
+                }
+            }
+            stored = new String[n];
+            System.arraycopy(all, 0, stored, 0, n);
+            filledCapacity = table.capacity();
+        }
+
+        private static void enlarge(HashTable table) {
+            if (table instanceof SeparateChainingHashTable) {
+                ((SeparateChainingHashTable) table).enlarge();
+            } else if (table instanceof ConcurrentSeparateChainingHashTable) {
+                ((ConcurrentSeparateChainingHashTable) table).enlarge();
+            }
+        }
+
+        /**
+         * Rebuilds the table with the keys it had if it grew during the last batch, outside of the measurement.
+         * Soft-deleting tables only reclaim tombstones when they grow, so under endless replacements they would
+         * eventually run out of primes. Growing twice in a row takes more tombstones than half of the cells of the
+         * filled table, more than a batch of {@link #BATCH} operations can leave, so a table never grows more than once
+         * between two refills, and every filled table has room for that.
+         */
+        @Setup(Level.Invocation)
+        public void refillIfGrown() {
+            if (table.capacity() != filledCapacity) {
+                fill(stored);
+            }
+        }
+    }
+
+    /**
+     * Probes and calls, summed over every invocation of an iteration.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class ProbeCounters {
+        public long probes;
+        public long calls;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            probes = calls = 0;
+        }
+
+        void record(Probes p) {
+            probes += p.getProbes();
+            calls++;
+        }
+    }
+
+    /**
+     * Runs the next {@link #BATCH} operations of the mix.
+     * @param w The table and its operations.
+     * @param counters The probe counters of the current iteration.
+     * @param bh Consumes the results, so that the JIT cannot elide the calls.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void mixed(Workload w, ProbeCounters counters, Blackhole bh) {
+        for (int op = 0; op < BATCH; op++) {
+            int i = w.next;
+            w.next = (i + 1) & (OPS - 1);
+            switch (w.ops[i]) {
+                case GET_HIT:
+                    counters.record(w.table.get(w.stored[w.targets[i]]));
+                    break;
+                case GET_MISS:
+                    counters.record(w.table.get(w.absent[w.targets[i]]));
+                    break;
+                default:
+                    String key = w.stored[w.targets[i]];
+                    Probes removed = w.table.remove(key);
+                    counters.record(removed);
+                    bh.consume(removed);
+                    counters.record(w.table.put(key, key));
+            }
+        }
+    }
+
+    /**
+     * Runs every benchmark with the GC profiler attached.
+     * @param args Ignored.
+     * @throws RunnerException If JMH fails to run.
+     */
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(CollisionResolverBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,199 @@
+package phonebook.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import phonebook.hashes.*;
+import phonebook.utils.Probes;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * <p>A <a href="https://github.com/openjdk/jmh">JMH</a> benchmark which compares the {@link HashFunction}s a table can
+ * hash its keys with, on the key distributions of {@link CollisionResolverBenchmark}:</p>
+ * <ul>
+ *     <li>{@link #hash(Keys, Blackhole)} measures the functions alone. {@link String#hashCode()} is cached by every
+ *     {@link String}, so its cost is that of a field read, while a seeded function goes over every character on every
+ *     call: this is the price of the seeded functions.</li>
+ *     <li>{@link #get(Table, ProbeCounters, Blackhole)} measures searches in a table filled with the function, half of them
+ *     for absent keys, with the probes they take in the auxiliary counters {@code probes} and {@code calls}: this is what
+ *     the seeded functions buy back, in shorter collision chains.</li>
+ * </ul>
+ *
+ * <p>Like {@link CollisionResolverBenchmark}, the sources under {@code benchmarks/} need JMH and its annotation processor on
+ * the classpath, next to the sources under {@code src/}.</p>
+ *
+ * @see HashFunction
+ * @see CollisionResolverBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HashFunctionBenchmark {
+
+    /**
+     * The hash functions under comparison.
+     */
+    public enum Function {
+        STRING_HASH_CODE(() -> HashFunction.STRING_HASH_CODE),
+        SEEDED(() -> HashFunction.seeded(47));
+
+        private final Supplier<HashFunction> factory;
+
+        Function(Supplier<HashFunction> factory) {
+            this.factory = factory;
+        }
+
+        HashFunction create() {
+            return factory.get();
+        }
+    }
+
+    /**
+     * The tables the functions are plugged in.
+     */
+    public enum TableKind {
+        SEPARATE_CHAINING,
+        LINEAR_PROBING,
+        QUADRATIC_PROBING;
+
+        HashTable create(HashFunction function) {
+            switch (this) {
+                case SEPARATE_CHAINING:
+                    SeparateChainingHashTable sc = new SeparateChainingHashTable(CapacityPolicy.POWER_OF_TWO);
+                    sc.setHashFunction(function);
+                    return sc;
+                case LINEAR_PROBING:
+                    LinearProbingHashTable lp = new LinearProbingHashTable(false, false, CapacityPolicy.POWER_OF_TWO);
+                    lp.setHashFunction(function);
+                    return lp;
+                case QUADRATIC_PROBING:
+                    QuadraticProbingHashTable qp = new QuadraticProbingHashTable(false, CapacityPolicy.POWER_OF_TWO);
+                    qp.setHashFunction(function);
+                    return qp;
+                default:
+                    throw new RuntimeException("Encountered unsupported TableKind: " + this + ".");
+            }
+        }
+    }
+
+    private static final int KEYS = 1 << 12;
+
+    /**
+     * Keys of a distribution and the function to hash them with.
+     */
+    @State(Scope.Thread)
+    public static class Keys {
+
+        @Param
+        public Function function;
+
+        @Param({"NAMES", "PHONE_NUMBERS"})
+        public CollisionResolverBenchmark.KeyDistribution keys;
+
+        HashFunction hashFunction;
+        String[] stored, absent;
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            hashFunction = function.create();
+            Random rng = new Random(47);
+            stored = new String[KEYS];
+            absent = new String[KEYS];
+            for (int i = 0; i < KEYS; i++) {
+                stored[i] = keys.key(rng, i);
+                absent[i] = keys.key(rng, KEYS + i);
+            }
+        }
+
+        String nextKey() {
+            int i = next;
+            next = (i + 1) & (2 * KEYS - 1);
+            return i < KEYS ? stored[i] : absent[i - KEYS];
+        }
+    }
+
+    /**
+     * A table filled with the keys of a {@link Keys}.
+     */
+    @State(Scope.Thread)
+    public static class Table extends Keys {
+
+        @Param
+        public TableKind table;
+
+        HashTable filled;
+
+        @Setup(Level.Trial)
+        public void fill() {
+            filled = table.create(hashFunction);
+            if (filled instanceof SeparateChainingHashTable) { // one chain per key, like open addressing at half load.
+                while (filled.capacity() < KEYS) {
+                    ((SeparateChainingHashTable) filled).enlarge();
+                }
+            }
+            for (String key : stored) {
+                filled.put(key, key);
+            }
+        }
+    }
+
+    /**
+     * Probes and calls, summed over every invocation of an iteration.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class ProbeCounters {
+        public long probes;
+        public long calls;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            probes = calls = 0;
+        }
+    }
+
+    /**
+     * Hashes the next key.
+     * @param k The keys and the function.
+     * @param bh Consumes the hash codes, so that the JIT cannot elide the calls.
+     */
+    @Benchmark
+    public void hash(Keys k, Blackhole bh) {
+        bh.consume(k.hashFunction.hash(k.nextKey()));
+    }
+
+    /**
+     * Searches for the next key, which is stored in the table half of the time.
+     * @param t The table and its keys.
+     * @param counters The probe counters of the current iteration.
+     * @param bh Consumes the results, so that the JIT cannot elide the calls.
+     */
+    @Benchmark
+    public void get(Table t, ProbeCounters counters, Blackhole bh) {
+        Probes p = t.filled.get(t.nextKey());
+        counters.probes += p.getProbes();
+        counters.calls++;
+        bh.consume(p);
+    }
+
+    /**
+     * Runs every benchmark.
+     * @param args Ignored.
+     * @throws RunnerException If JMH fails to run.
+     */
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(HashFunctionBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,163 @@
+package phonebook;
+
+import phonebook.hashes.*;
+
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+/**
+ * <p>{@link ConcurrentPhonebook} is a <b>thread-safe</b> {@link Phonebook}: any number of threads can look entries up
+ * and add or delete entries at the same time, and an entry is always seen either entirely or not at all, in both
+ * directions.</p>
+ *
+ * <p>Like {@link Phonebook}, it keeps one hash table from names to numbers and one from numbers to names. Writers
+ * update both of them under the write lock of a {@link StampedLock}, so that writers are applied one at a time, and
+ * every write is a transaction over the two tables. Readers do not lock at all: they take an <em>optimistic</em> stamp,
+ * run their lookups and validate the stamp afterwards; if a writer got in between, the lookups are retried. Only after
+ * {@link #OPTIMISTIC_ATTEMPTS} failed attempts, i.e under a steady stream of writes, does a reader fall back to the
+ * read lock so that it cannot starve. The internal tables must therefore be safe for readers running concurrently with a
+ * writer, which {@link ConcurrentSeparateChainingHashTable} and {@link ConcurrentOpenAddressingHashTable} are.</p>
+ *
+ * <p>Contrary to {@link Phonebook}, adding an entry whose name or number is already in the phonebook <b>replaces</b>
+ * the old entry in both tables, so that the two tables always hold the same entries.</p>
+ *
+ * @author Cheolhong Ahn
+ * @see Phonebook
+ * @see ConcurrentSeparateChainingHashTable
+ * @see ConcurrentOpenAddressingHashTable
+ */
+public class ConcurrentPhonebook {
+
+    /**
+     * The number of optimistic reads a lookup tries before falling back to the read lock.
+     */
+    public static final int OPTIMISTIC_ATTEMPTS = 4;
+
+    private final HashTable namesToNumbers;
+    private final HashTable numbersToNames;
+    private final StampedLock lock = new StampedLock();
+
+    /**
+     * Instantiates a new {@link ConcurrentPhonebook} over two {@link ConcurrentOpenAddressingHashTable} instances, which
+     * grow with the phonebook without bound and drop the cells of deleted entries when they do.
+     */
+    public ConcurrentPhonebook() {
+        this(new ConcurrentOpenAddressingHashTable(), new ConcurrentOpenAddressingHashTable());
+    }
+
+    /**
+     * Instantiates a new {@link ConcurrentPhonebook} over the given tables.
+     * @param namesToNumbers An empty {@link HashTable} for the lookups by name, safe for reads concurrent with a write.
+     * @param numbersToNames An empty {@link HashTable} for the lookups by number, safe for reads concurrent with a write.
+     * @throws IllegalArgumentException if either table is {@code null} or not empty, or if they are the same table.
+     */
+    public ConcurrentPhonebook(HashTable namesToNumbers, HashTable numbersToNames) {
+        if(namesToNumbers == null || numbersToNames == null || namesToNumbers == numbersToNames)
+            throw new IllegalArgumentException("Need two distinct tables.");
+        if(namesToNumbers.size() != 0 || numbersToNames.size() != 0)
+            throw new IllegalArgumentException("Tables must be empty.");
+        this.namesToNumbers = namesToNumbers;
+        this.numbersToNames = numbersToNames;
+    }
+
+    // Runs lookup without locking, unless writers keep invalidating it. lookup must not modify the tables.
+    private <T> T read(Supplier<T> lookup) {
+        for(int attempt = 0; attempt < OPTIMISTIC_ATTEMPTS; attempt++) {
+            long stamp = lock.tryOptimisticRead();
+            if(stamp != 0) { // 0 while a writer holds the lock.
+                T result = lookup.get();
+                if(lock.validate(stamp))
+                    return result;
+            }
+            Thread.onSpinWait();
+        }
+        long stamp = lock.readLock();
+        try {
+            return lookup.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /** Retrieves the phone number associated with the provided full name. If the name is not in the database,
+     * this method returns {@code null}.
+     * @param name The full name of the owner of the phone number that is being searched for.
+     * @return The phone number associated with name, or {@code null} if name is {@code null} or if name
+     * is not in the {@link ConcurrentPhonebook}.
+     */
+    public String getNumberOf(String name) {
+        return (name == null) ? null : read(() -> namesToNumbers.get(name).getValue());
+    }
+
+    /** Retrieves the full name of the owner of the provided phone number. If the phone number is not in the database,
+     * this method returns {@code null}.
+     * @param number The phone number whose owner is being searched for.
+     * @return The full name of the owner of number, or {@code null} if number is {@code null} or if number
+     * is not in the {@link ConcurrentPhonebook}.
+     */
+    public String getOwnerOf(String number) {
+        return (number == null) ? null : read(() -> numbersToNames.get(number).getValue());
+    }
+
+    /** Adds the tuple &lt; name, number &gt; in the {@link ConcurrentPhonebook}. If name already had a number, or number
+     * already had an owner, those entries are removed first, atomically with the addition.
+     * @param name The full name of the number's owner.
+     * @param number The phone number of the person.
+     * @throws IllegalArgumentException if either name or number is {@code null}.
+     */
+    public void addEntry(String name, String number) {
+        if(name == null || number == null)
+            throw new IllegalArgumentException("Provided: name=" + name + " and number= " + number);
+        long stamp = lock.writeLock();
+        try {
+            String oldNumber = namesToNumbers.get(name).getValue();
+            String oldOwner = numbersToNames.get(number).getValue();
+            if(oldNumber != null && !oldNumber.equals(number))
+                numbersToNames.remove(oldNumber);
+            if(oldOwner != null && !oldOwner.equals(name))
+                namesToNumbers.remove(oldOwner);
+            namesToNumbers.put(name, number);
+            numbersToNames.put(number, name);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /** Deletes the entry characterized by the arguments provided. If the entry is <b>not</b> contained by this
+     * {@link ConcurrentPhonebook} instance, i.e if name is not the owner of number, this method has <b>no effect</b>.
+     * @param name The &quot;owner&quot; part of the &lt; owner, phone number &gt; tuple.
+     * @param number The &quot;number&quot; part of the &lt; owner, phone number &gt; tuple.
+     * @throws IllegalArgumentException if either name or number is {@code null}.
+     */
+    public void deleteEntry(String name, String number) {
+        if(number == null || name == null)
+            throw new IllegalArgumentException("Provided: name=" + name + " and number= " + number);
+        long stamp = lock.writeLock();
+        try {
+            if(number.equals(namesToNumbers.get(name).getValue())) {
+                namesToNumbers.remove(name);
+                numbersToNames.remove(number);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /** Returns the number of entries in the phonebook.
+     * @return the number of entries in the phonebook.
+     */
+    public int size() {
+        int[] sizes = read(() -> new int[] {namesToNumbers.size(), numbersToNames.size()}); // both from the same state.
+        assert sizes[0] == sizes[1] :
+                "Mismatch in internal hash table counts. Names->Numbers has count: " +
+                        sizes[0] + ", while Numbers->Names has count:  " + sizes[1] + ".";
+        return sizes[0];
+    }
+
+    /** Queries the phonebook for emptiness.
+     * @return {@code true} if, and only if, there are 0 entries in this {@link ConcurrentPhonebook}, {@code false} otherwise.
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+}
@@ -0,0 +1,320 @@
+package phonebook;
+
+import phonebook.hashes.CollisionResolver;
+import phonebook.hashes.MappedHashTable;
+import phonebook.utils.KVPair;
+import phonebook.utils.WriteAheadLog;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * <p>{@link DurablePhonebook} is a {@link ConcurrentPhonebook} which survives crashes: every call to
+ * {@link #addEntry(String, String)} and {@link #deleteEntry(String, String)} is recorded in a {@link WriteAheadLog}
+ * before it returns, so that reopening the directory of the phonebook after a crash brings back every entry of every
+ * call that returned. Durability thus costs a sequential append, and writers that run at the same time share its
+ * {@code fsync} through the group commit of {@link WriteAheadLog}.</p>
+ *
+ * <p>A mutation is applied to the entries only once it is durable, so that {@link #getNumberOf(String)},
+ * {@link #getOwnerOf(String)} and {@link #size()} never see an entry that a crash could take back. Mutations are applied
+ * in the order of the log, which is the order they are recovered in: a write is visible from the moment it and every
+ * write logged before it are durable, and at the latest when the call that made it returns. A mutation whose record
+ * could not be written is never applied.</p>
+ *
+ * <p>So that recovery does not have to replay every mutation ever made, the log is split in <em>generations</em>:
+ * every {@link #DEFAULT_CHECKPOINT_INTERVAL} records (or whenever {@link #checkpoint()} is called), the current
+ * generation is closed and a new one started, and the closed one is folded, together with the previous checkpoint, into a
+ * new checkpoint: a {@link MappedHashTable} of every entry, which replaces the older checkpoint and logs. Checkpoints
+ * are built from the files alone, so writers keep going while one is written. On startup, the latest checkpoint is read
+ * back in a single pass, and only the logs of the generations after it are replayed.</p>
+ *
+ * <p>The directory holds files {@code checkpoint-<i>g</i>.tbl} and {@code wal-<i>g</i>.log}, where <i>g</i> is a
+ * generation. A checkpoint of generation <i>g</i> holds every mutation of the logs up to, and including, <i>g</i>.</p>
+ *
+ * @author Cheolhong Ahn
+ * @see ConcurrentPhonebook
+ * @see WriteAheadLog
+ * @see MappedHashTable
+ */
+public class DurablePhonebook implements Closeable {
+
+    /**
+     * The default number of log records between two checkpoints.
+     */
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 1 << 16;
+
+    private static final Pattern WAL = Pattern.compile("wal-(\\d+)\\.log"), CHECKPOINT = Pattern.compile("checkpoint-(\\d+)\\.tbl");
+
+    // The entries of a phonebook as of some generation, with the semantics of ConcurrentPhonebook.
+    private static final class State implements WriteAheadLog.Mutation {
+        final Map<String, String> numbersOf = new LinkedHashMap<>();
+        final Map<String, String> ownersOf = new HashMap<>();
+
+        @Override
+        public void apply(byte op, String name, String number) {
+            if(op == WriteAheadLog.PUT) {
+                String oldNumber = numbersOf.remove(name), oldOwner = ownersOf.remove(number);
+                if(oldNumber != null)
+                    ownersOf.remove(oldNumber);
+                if(oldOwner != null)
+                    numbersOf.remove(oldOwner);
+                numbersOf.put(name, number);
+                ownersOf.put(number, name);
+            } else if(number.equals(numbersOf.get(name))) {
+                numbersOf.remove(name);
+                ownersOf.remove(number);
+            }
+        }
+    }
+
+    private final Path directory;
+    private final int checkpointInterval;
+    private final ConcurrentPhonebook entries = new ConcurrentPhonebook();
+    private final Object mutex = new Object(); // guards the log and the order of the mutations in it.
+    private final Object applyOrder = new Object(); // guards applied.
+    private long logged, applied; // mutations appended to the log, and applied to entries or dropped, in log order.
+    private final ReentrantLock checkpointLock = new ReentrantLock();
+    private WriteAheadLog log;
+    private long generation;
+    private int records; // appended to the current generation.
+
+    /**
+     * Opens the phonebook stored in directory with the default checkpoint interval, recovering every entry it held.
+     * @param directory An existing directory, empty for a new phonebook.
+     * @throws IOException if the files of the phonebook cannot be read.
+     */
+    public DurablePhonebook(Path directory) throws IOException {
+        this(directory, DEFAULT_CHECKPOINT_INTERVAL);
+    }
+
+    /**
+     * Opens the phonebook stored in directory, recovering every entry it held.
+     * @param directory An existing directory, empty for a new phonebook.
+     * @param checkpointInterval The number of log records after which a checkpoint is made.
+     * @throws IOException if the files of the phonebook cannot be read.
+     * @throws IllegalArgumentException if checkpointInterval is not positive.
+     */
+    public DurablePhonebook(Path directory, int checkpointInterval) throws IOException {
+        if(checkpointInterval <= 0)
+            throw new IllegalArgumentException("Checkpoint interval must be positive, got " + checkpointInterval + ".");
+        this.directory = directory;
+        this.checkpointInterval = checkpointInterval;
+        TreeMap<Long, Path> logs = generations(WAL);
+        State state = recover(logs.isEmpty() ? Long.MAX_VALUE : logs.lastKey());
+        state.numbersOf.forEach(entries::addEntry);
+        generation = logs.isEmpty() ? latestCheckpoint() + 1 : logs.lastKey() + 1; // never append behind a torn record.
+        log = new WriteAheadLog(walFile(generation));
+    }
+
+    private Path walFile(long generation) {
+        return directory.resolve("wal-" + generation + ".log");
+    }
+
+    private Path checkpointFile(long generation) {
+        return directory.resolve("checkpoint-" + generation + ".tbl");
+    }
+
+    // The files of the directory that match pattern, by generation.
+    private TreeMap<Long, Path> generations(Pattern pattern) throws IOException {
+        TreeMap<Long, Path> files = new TreeMap<>();
+        try(Stream<Path> list = Files.list(directory)) {
+            list.forEach(file -> {
+                Matcher m = pattern.matcher(file.getFileName().toString());
+                if(m.matches())
+                    files.put(Long.parseLong(m.group(1)), file);
+            });
+        }
+        return files;
+    }
+
+    private long latestCheckpoint() throws IOException {
+        TreeMap<Long, Path> checkpoints = generations(CHECKPOINT);
+        return checkpoints.isEmpty() ? -1 : checkpoints.lastKey();
+    }
+
+    // Reads the latest checkpoint back and replays the logs after it, up to the given generation.
+    private State recover(long upTo) throws IOException {
+        State state = new State();
+        long checkpoint = latestCheckpoint();
+        if(checkpoint >= 0)
+            MappedHashTable.open(checkpointFile(checkpoint)).forEach(state.numbersOf::put);
+        state.numbersOf.forEach((name, number) -> state.ownersOf.put(number, name));
+        for(Map.Entry<Long, Path> wal : generations(WAL).entrySet()) {
+            if(wal.getKey() > checkpoint && wal.getKey() <= upTo)
+                WriteAheadLog.replay(wal.getValue(), state);
+        }
+        return state;
+    }
+
+    // Logs a mutation, waits until it is durable and then applies it, after every mutation logged before it.
+    private void commit(byte op, String name, String number) {
+        WriteAheadLog log;
+        long position, turn;
+        boolean full;
+        synchronized(mutex) {
+            log = this.log;
+            try {
+                position = log.append(op, name, number);
+            } catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            turn = logged++;
+            full = ++records == checkpointInterval;
+        }
+        IOException error = null;
+        try {
+            log.sync(position); // a log closed by a checkpoint is already durable.
+        } catch(IOException e) {
+            error = e;
+        }
+        boolean interrupted = false;
+        synchronized(applyOrder) {
+            while(applied != turn) {
+                try {
+                    applyOrder.wait();
+                } catch(InterruptedException e) {
+                    interrupted = true; // the turn has to be taken, or every later mutation waits forever.
+                }
+            }
+            if(error == null) {
+                if(op == WriteAheadLog.PUT)
+                    entries.addEntry(name, number);
+                else
+                    entries.deleteEntry(name, number);
+            }
+            applied++;
+            applyOrder.notifyAll();
+        }
+        if(interrupted)
+            Thread.currentThread().interrupt();
+        try {
+            if(error != null)
+                throw error;
+            if(full)
+                checkpoint();
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Retrieves the phone number associated with the provided full name.
+     * @param name The full name of the owner of the phone number that is being searched for.
+     * @return The phone number associated with name, or {@code null} if name is {@code null} or if name
+     * is not in the {@link DurablePhonebook}.
+     * @see ConcurrentPhonebook#getNumberOf(String)
+     */
+    public String getNumberOf(String name) {
+        return entries.getNumberOf(name);
+    }
+
+    /** Retrieves the full name of the owner of the provided phone number.
+     * @param number The phone number whose owner is being searched for.
+     * @return The full name of the owner of number, or {@code null} if number is {@code null} or if number
+     * is not in the {@link DurablePhonebook}.
+     * @see ConcurrentPhonebook#getOwnerOf(String)
+     */
+    public String getOwnerOf(String number) {
+        return entries.getOwnerOf(number);
+    }
+
+    /** Adds the tuple &lt; name, number &gt; in the {@link DurablePhonebook}, and returns once it is durable. Readers see it
+     * once it is durable, and not before.
+     * @param name The full name of the number's owner.
+     * @param number The phone number of the person.
+     * @throws IllegalArgumentException if either name or number is {@code null}.
+     * @throws UncheckedIOException if the log cannot be written, in which case no entry has changed. Once a write has
+     * failed, every later mutation fails too.
+     * @see ConcurrentPhonebook#addEntry(String, String)
+     */
+    public void addEntry(String name, String number) {
+        if(name == null || number == null)
+            throw new IllegalArgumentException("Provided: name=" + name + " and number= " + number);
+        commit(WriteAheadLog.PUT, name, number);
+    }
+
+    /** Deletes the entry characterized by the arguments provided, and returns once the deletion is durable. Readers see
+     * it once it is durable, and not before.
+     * @param name The &quot;owner&quot; part of the &lt; owner, phone number &gt; tuple.
+     * @param number The &quot;number&quot; part of the &lt; owner, phone number &gt; tuple.
+     * @throws IllegalArgumentException if either name or number is {@code null}.
+     * @throws UncheckedIOException if the log cannot be written, in which case no entry has changed. Once a write has
+     * failed, every later mutation fails too.
+     * @see ConcurrentPhonebook#deleteEntry(String, String)
+     */
+    public void deleteEntry(String name, String number) {
+        if(number == null || name == null)
+            throw new IllegalArgumentException("Provided: name=" + name + " and number= " + number);
+        commit(WriteAheadLog.REMOVE, name, number);
+    }
+
+    /** Returns the number of entries in the phonebook.
+     * @return the number of entries in the phonebook.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /** Queries the phonebook for emptiness.
+     * @return {@code true} if, and only if, there are 0 entries in this {@link DurablePhonebook}, {@code false} otherwise.
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Starts a new generation of the log, and folds the previous one into a new checkpoint. Writers are only held
+     * back while the generations are switched.
+     * @throws IOException if the log or the checkpoint cannot be written.
+     */
+    public void checkpoint() throws IOException {
+        checkpointLock.lock();
+        try {
+            long closed;
+            synchronized(mutex) {
+                closed = generation;
+                log.close();
+                log = new WriteAheadLog(walFile(++generation));
+                records = 0;
+            }
+            State state = recover(closed);
+            List<KVPair> pairs = new ArrayList<>(state.numbersOf.size());
+            state.numbersOf.forEach((name, number) -> pairs.add(new KVPair(name, number)));
+            MappedHashTable.write(pairs, CollisionResolver.LINEAR_PROBING, checkpointFile(closed));
+            try(FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+                dir.force(true); // the rename of the checkpoint must be durable before the logs it replaces are gone.
+            }
+            for(Path old : generations(CHECKPOINT).headMap(closed).values())
+                Files.delete(old);
+            for(Path old : generations(WAL).headMap(closed, true).values())
+                Files.delete(old);
+        } finally {
+            checkpointLock.unlock();
+        }
+    }
+
+    /**
+     * Makes every mutation durable and closes the log. The entries can still be looked up, but not modified.
+     * @throws IOException if the log cannot be written.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized(mutex) {
+            log.close();
+        }
+    }
+}
@@ -1,6 +1,13 @@
 package phonebook;
 
 import phonebook.hashes.*;
+import phonebook.utils.KVPair;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * <p>{@link Phonebook} is an abstraction over phonebooks: databases of &lt; Full Name,
@@ -25,6 +32,7 @@ import phonebook.hashes.*;
  * @see SeparateChainingHashTable
  * @see LinearProbingHashTable
  * @see QuadraticProbingHashTable
+ * @see CuckooHashTable
  */
 public class Phonebook {
 
@@ -43,6 +51,23 @@ public class Phonebook {
      * @see CollisionResolver
      */
     public Phonebook(CollisionResolver namesToNumbersHash, CollisionResolver numbersToNamesHash) {
+        this(namesToNumbersHash, numbersToNamesHash, false);
+    }
+
+    /**
+     * Instantiates a new {@link Phonebook}, optionally <b>instrumented</b>: both internal hash tables are then wrapped
+     * in an {@link InstrumentedHashTable}, whose metrics {@link #getNamesToNumbersMetrics()} and
+     * {@link #getNumbersToNamesMetrics()} return.
+     *
+     * @param namesToNumbersHash A {@link CollisionResolver} that will govern which subtype of {@link HashTable} will be used to
+     *                           create our hash table with <b>peoples' names</b> as keys.
+     * @param numbersToNamesHash A {@link CollisionResolver} that will govern which subtype of {@link HashTable} will be used to
+     *                           create our hash table with <b>phone numbers</b> as keys.
+     * @param instrumented {@code true} if and only if we want metrics on the internal hash tables.
+     * @see CollisionResolver
+     * @see InstrumentedHashTable
+     */
+    public Phonebook(CollisionResolver namesToNumbersHash, CollisionResolver numbersToNamesHash, boolean instrumented) {
 
         switch(namesToNumbersHash){
             case SEPARATE_CHAINING:
@@ -57,6 +82,9 @@ public class Phonebook {
             case QUADRATIC_PROBING:
                 namesToNumbers = new QuadraticProbingHashTable(false);
                 break;
+            case CUCKOO_HASHING:
+                namesToNumbers = new CuckooHashTable();
+                break;
             default:
                 throw new RuntimeException("Encountered unsupported CollisionResolver argument: " + namesToNumbersHash  + "." );
         }
@@ -74,9 +102,102 @@ public class Phonebook {
             case QUADRATIC_PROBING:
                 numbersToNames = new QuadraticProbingHashTable(false);
                 break;
+            case CUCKOO_HASHING:
+                numbersToNames = new CuckooHashTable();
+                break;
             default:
                 throw new RuntimeException("Encountered unsupported Collision Resolver " + numbersToNamesHash + ".");
         }
+
+        if(instrumented){
+            namesToNumbers = new InstrumentedHashTable(namesToNumbers);
+            numbersToNames = new InstrumentedHashTable(numbersToNames);
+        }
+    }
+
+    /**
+     * Instantiates a new {@link Phonebook} over a single {@link BidirectionalHashIndex}, which stores every entry
+     * once instead of once per internal hash table. Lookups by name and by number go through its two views.
+     *
+     * @param index An empty {@link BidirectionalHashIndex}.
+     * @throws IllegalArgumentException if index is {@code null} or not empty.
+     * @see BidirectionalHashIndex
+     */
+    public Phonebook(BidirectionalHashIndex index) {
+        if(index == null || index.size() != 0)
+            throw new IllegalArgumentException("Need an empty index.");
+        namesToNumbers = index.forward();
+        numbersToNames = index.backward();
+    }
+
+    private Phonebook(HashTable namesToNumbers, HashTable numbersToNames) {
+        this.namesToNumbers = namesToNumbers;
+        this.numbersToNames = numbersToNames;
+    }
+
+    private static final String NAMES_TO_NUMBERS_SNAPSHOT = "namesToNumbers.tbl", NUMBERS_TO_NAMES_SNAPSHOT = "numbersToNames.tbl";
+
+    /**
+     * Writes the entries as a snapshot of a {@link Phonebook}: one {@link MappedHashTable} file per internal hash table,
+     * in directory. Meant to be done once, so that later runs can {@link #openSnapshot(Path)} it instead of adding every
+     * entry again.
+     *
+     * @param entries The entries, as pairs with the full name as key and the phone number as value.
+     * @param namesToNumbersHash The {@link CollisionResolver} whose layout the table with <b>peoples' names</b> as keys follows.
+     * @param numbersToNamesHash The {@link CollisionResolver} whose layout the table with <b>phone numbers</b> as keys follows.
+     * @param directory An existing directory for the snapshot files.
+     * @throws IOException if the snapshot cannot be written.
+     * @throws IllegalArgumentException if some entry has a {@code null} name or number.
+     * @see MappedHashTable#write(Collection, CollisionResolver, Path)
+     */
+    public static void writeSnapshot(Collection<KVPair> entries, CollisionResolver namesToNumbersHash,
+                                     CollisionResolver numbersToNamesHash, Path directory) throws IOException {
+        List<KVPair> reversed = new ArrayList<>(entries.size());
+        for(KVPair entry : entries) {
+            if(entry.getKey() == null || entry.getValue() == null)
+                throw new IllegalArgumentException("Provided: name=" + entry.getKey() + " and number= " + entry.getValue());
+            reversed.add(new KVPair(entry.getValue(), entry.getKey()));
+        }
+        MappedHashTable.write(entries, namesToNumbersHash, directory.resolve(NAMES_TO_NUMBERS_SNAPSHOT));
+        MappedHashTable.write(reversed, numbersToNamesHash, directory.resolve(NUMBERS_TO_NAMES_SNAPSHOT));
+    }
+
+    /**
+     * Opens a snapshot written by {@link #writeSnapshot(Collection, CollisionResolver, CollisionResolver, Path)}. The
+     * returned {@link Phonebook} is <b>read-only</b>: its lookups are served straight from the mapped files, and
+     * {@link #addEntry(String, String)} and {@link #deleteEntry(String, String)} throw an
+     * {@link UnsupportedOperationException}.
+     *
+     * @param directory The directory of the snapshot files.
+     * @return A read-only {@link Phonebook} over the snapshot.
+     * @throws IOException if the snapshot files cannot be mapped.
+     * @see MappedHashTable#open(Path)
+     */
+    public static Phonebook openSnapshot(Path directory) throws IOException {
+        return new Phonebook(MappedHashTable.open(directory.resolve(NAMES_TO_NUMBERS_SNAPSHOT)),
+                MappedHashTable.open(directory.resolve(NUMBERS_TO_NAMES_SNAPSHOT)));
+    }
+
+    private static InstrumentedHashTable instrumented(HashTable table) {
+        if(!(table instanceof InstrumentedHashTable))
+            throw new IllegalStateException("This phonebook was not created instrumented.");
+        return (InstrumentedHashTable) table;
+    }
+
+    /** Returns the metrics of the hash table with peoples' names as keys.
+     * @return A snapshot of the metrics of the names-to-numbers table.
+     * @throws IllegalStateException if this {@link Phonebook} was not created instrumented.
+     */
+    public HashTableMetrics getNamesToNumbersMetrics() {
+        return instrumented(namesToNumbers).getMetrics();
+    }
+
+    /** Returns the metrics of the hash table with phone numbers as keys.
+     * @return A snapshot of the metrics of the numbers-to-names table.
+     * @throws IllegalStateException if this {@link Phonebook} was not created instrumented.
+     */
+    public HashTableMetrics getNumbersToNamesMetrics() {
+        return instrumented(numbersToNames).getMetrics();
     }
 
     /** Retrieves the phone number associated with the provided full name. If the name is not in the database,
@@ -112,6 +233,23 @@ public class Phonebook {
         numbersToNames.put(number, name);
     }
 
+    /** Adds every &lt; name, number &gt; pair of entries in the {@link Phonebook}, as if by {@link #addEntry(String, String)}
+     * but with a single call to {@link HashTable#putAll(Collection)} per internal hash table, so that each of them is sized
+     * once for the whole batch. Meant for loading large dumps.
+     * @param entries The entries to add, as pairs with the full name as key and the phone number as value.
+     * @throws IllegalArgumentException if some entry has a {@code null} name or number, in which case nothing is added.
+     */
+    public void addEntries(Collection<KVPair> entries) {
+        List<KVPair> reversed = new ArrayList<>(entries.size());
+        for(KVPair entry : entries) {
+            if(entry.getKey() == null || entry.getValue() == null)
+                throw new IllegalArgumentException("Provided: name=" + entry.getKey() + " and number= " + entry.getValue());
+            reversed.add(new KVPair(entry.getValue(), entry.getKey()));
+        }
+        namesToNumbers.putAll(entries);
+        numbersToNames.putAll(reversed);
+    }
+
     /** Deletes the entry characterized by the arguments provided. If either argument is {@code null}, or if the
      * entry is <b>not</b> contained by this {@link Phonebook} instance, this method has <b>no effect</b>.
      * @param name The &quot;owner&quot; part of the &lt; owner, phone number &gt; tuple.
@@ -4,11 +4,33 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import phonebook.hashes.*;
+import phonebook.utils.KVPair;
 import phonebook.utils.NoMorePrimesException;
+import phonebook.utils.Probes;
+import phonebook.utils.StringArena;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.Assert.*;
 import static phonebook.hashes.CollisionResolver.*;
@@ -29,7 +51,7 @@ import static phonebook.hashes.CollisionResolver.*;
 public class StudentTests {
 
     private Phonebook pb;
-    private CollisionResolver[] resolvers = {SEPARATE_CHAINING, LINEAR_PROBING, ORDERED_LINEAR_PROBING, QUADRATIC_PROBING};
+    private CollisionResolver[] resolvers = {SEPARATE_CHAINING, LINEAR_PROBING, ORDERED_LINEAR_PROBING, QUADRATIC_PROBING, CUCKOO_HASHING};
     private HashMap<String, String> testingPhoneBook;
     private static final long SEED = 47;
     private static final Random RNG = new Random(SEED);
@@ -255,4 +277,1158 @@ public class StudentTests {
 
     }
 
+    @Test
+    public void testRobinHoodLinearProbing() {
+        LinearProbingHashTable rh = new LinearProbingHashTable(false, true);
+        HashMap<String, String> expected = new HashMap<>();
+
+        for (int i = 0; i < 6; i++) {
+            rh.put("key" + i, "value" + i);
+        }
+        assertEquals("Robin Hood table should fit 6 elements in a capacity of 7.", 7, rh.capacity());
+        rh.put("key6", "value6");
+        assertEquals("Robin Hood table should resize when going over 90% full.", 13, rh.capacity());
+        rh.put("key6", "updated");
+        assertEquals("Robin Hood table should update existing keys instead of inserting them twice.", 7, rh.size());
+        assertEquals("updated", rh.get("key6").getValue());
+
+        for (int i = 0; i < NUMS; i++) {
+            String key = Integer.toString(RNG.nextInt(UPPER_BOUND));
+            if (RNG.nextBoolean()) {
+                rh.put(key, key + i);
+                expected.put(key, key + i);
+            } else {
+                assertEquals("Robin Hood remove returned the wrong value for key " + key + ".",
+                        expected.remove(key), rh.remove(key).getValue());
+            }
+        }
+        rh.remove("key6");
+        for (int i = 0; i < 6; i++) {
+            rh.remove("key" + i);
+        }
+        assertEquals(expected.size(), rh.size());
+        for (int i = 0; i < UPPER_BOUND; i++) {
+            String key = Integer.toString(i);
+            assertEquals("Robin Hood get returned the wrong value for key " + key + ".", expected.get(key), rh.get(key).getValue());
+        }
+    }
+
+    // "Aa" and "BB" have the same String.hashCode(), so the cached hash codes match and the keys have to be compared.
+    @Test
+    public void testEqualHashCodesOpenAddressing() {
+        HashTable[] tables = {new LinearProbingHashTable(false), new LinearProbingHashTable(true, true),
+                new OrderedLinearProbingHashTable(false), new QuadraticProbingHashTable(false)};
+        for (HashTable table : tables) {
+            table.put("Aa", "1");
+            table.put("BB", "2");
+            table.put("AaBB", "3");
+            table.put("BBAa", "4");
+            assertEquals("1", table.get("Aa").getValue());
+            assertEquals("2", table.get("BB").getValue());
+            assertEquals("4", table.get("BBAa").getValue());
+            assertEquals("1", table.remove("Aa").getValue());
+            assertNull(table.get("Aa").getValue());
+            assertEquals("2", table.get("BB").getValue());
+            assertEquals("3", table.get("AaBB").getValue());
+        }
+    }
+
+    @Test
+    public void testIncrementalResizing() {
+        LinearProbingHashTable lp = new LinearProbingHashTable(false);
+        IncrementalLinearProbingHashTable ilp = new IncrementalLinearProbingHashTable(false);
+        int lpWorst = 0, ilpWorst = 0;
+        for (int i = 0; i < 500; i++) {
+            lpWorst = Math.max(lpWorst, lp.put("key" + i, "value" + i).getProbes());
+            ilpWorst = Math.max(ilpWorst, ilp.put("key" + i, "value" + i).getProbes());
+            assertEquals(i + 1, ilp.size());
+        }
+        assertTrue("Incremental resizing should not pay for a whole rehash in one put(): worst put() took " + ilpWorst +
+                " probes, versus " + lpWorst + " for LinearProbingHashTable.", ilpWorst < lpWorst / 2);
+        assertEquals(lp.capacity(), ilp.capacity());
+
+        for (int i = 0; i < 500; i += 2) {
+            assertEquals("value" + i, ilp.remove("key" + i).getValue());
+        }
+        for (int i = 0; i < 500; i++) {
+            assertEquals(i % 2 == 0 ? null : "value" + i, ilp.get("key" + i).getValue());
+        }
+        assertEquals(250, ilp.size());
+        assertTrue(ilp.containsValue("value499"));
+        assertFalse(ilp.containsValue("value498"));
+    }
+
+    @Test
+    public void testConcurrentSeparateChaining() throws InterruptedException {
+        ConcurrentSeparateChainingHashTable table = new ConcurrentSeparateChainingHashTable(4);
+        assertEquals("Four stripes should start with a capacity of 4 * 7.", 28, table.capacity());
+        Thread[] writers = new Thread[4];
+        Throwable[] errors = new Throwable[writers.length];
+        for (int t = 0; t < writers.length; t++) {
+            final int offset = t;
+            writers[t] = new Thread(() -> {
+                try {
+                    for (int i = offset; i < 4 * NUMS; i += writers.length) {
+                        table.put("key" + i, "value" + i);
+                        if (i == 500 * (offset + 1)) { // Every writer resizes once, while the others keep going.
+                            table.enlarge();
+                        }
+                        assertEquals("value" + i, table.get("key" + i).getValue());
+                    }
+                } catch (Throwable e) {
+                    errors[offset] = e;
+                }
+            });
+            writers[t].start();
+        }
+        for (int t = 0; t < writers.length; t++) {
+            writers[t].join();
+            if (errors[t] != null) {
+                fail("Writer #" + t + " failed. " + errorData(errors[t]));
+            }
+        }
+        assertEquals(4 * NUMS, table.size());
+        for (int i = 0; i < 4 * NUMS; i++) {
+            assertEquals("value" + i, table.get("key" + i).getValue());
+        }
+        table.shrink();
+        for (int i = 0; i < 4 * NUMS; i += 2) {
+            assertEquals("value" + i, table.remove("key" + i).getValue());
+        }
+        assertEquals(2 * NUMS, table.size());
+        assertNull(table.get("key0").getValue());
+        assertTrue(table.containsKey("key1"));
+        assertTrue(table.containsValue("value1"));
+
+        // Stripes grow on their own as keys come in, up to the largest prime, and then only their chains get longer.
+        ConcurrentSeparateChainingHashTable growing = new ConcurrentSeparateChainingHashTable();
+        for (int i = 0; i < 150000; i++) {
+            growing.put("key" + i, "value" + i);
+            if (i == 20000) {
+                assertTrue("Capacity " + growing.capacity() + " for " + growing.size() + " keys.", growing.capacity() >= growing.size());
+            }
+        }
+        growing.enlarge(); // every stripe already has the largest prime.
+        assertEquals(150000, growing.size());
+        for (int i = 0; i < 150000; i += 7) {
+            assertEquals("value" + i, growing.get("key" + i).getValue());
+        }
+    }
+
+    @Test
+    public void testConcurrentOpenAddressing() throws InterruptedException {
+        ConcurrentOpenAddressingHashTable table = new ConcurrentOpenAddressingHashTable();
+        Thread[] threads = new Thread[6];
+        Throwable[] errors = new Throwable[threads.length];
+        for (int t = 0; t < threads.length; t++) {
+            final int offset = t;
+            threads[t] = new Thread(() -> {
+                try {
+                    if (offset % 2 == 0) { // Writers insert, update and delete their own keys while the table resizes.
+                        for (int i = offset / 2; i < 2 * NUMS; i += threads.length / 2) {
+                            table.put("key" + i, "old" + i);
+                            table.put("key" + i, "value" + i);
+                            if (i % 3 == 0) {
+                                assertEquals("value" + i, table.remove("key" + i).getValue());
+                            }
+                        }
+                    } else { // Readers never see a value that was not written for a key.
+                        for (int i = 0; i < 2 * NUMS; i++) {
+                            String value = table.get("key" + i).getValue();
+                            assertTrue("Read " + value + " for key" + i + ".",
+                                    value == null || value.equals("old" + i) || value.equals("value" + i));
+                        }
+                    }
+                } catch (Throwable e) {
+                    errors[offset] = e;
+                }
+            });
+            threads[t].start();
+        }
+        for (int t = 0; t < threads.length; t++) {
+            threads[t].join();
+            if (errors[t] != null) {
+                fail("Thread #" + t + " failed. " + errorData(errors[t]));
+            }
+        }
+        int expectedSize = 0;
+        for (int i = 0; i < 2 * NUMS; i++) {
+            String expected = (i % 3 == 0) ? null : "value" + i;
+            assertEquals(expected, table.get("key" + i).getValue());
+            if (expected != null) {
+                expectedSize++;
+            }
+        }
+        assertEquals(expectedSize, table.size());
+        assertTrue(table.containsValue("value1"));
+        assertFalse(table.containsValue("value0"));
+    }
+
+    // Removed keys keep their cells, so churn keeps filling the table: resizes must drop them instead of growing for ever.
+    @Test
+    public void testConcurrentOpenAddressingChurn() {
+        ConcurrentOpenAddressingHashTable table = new ConcurrentOpenAddressingHashTable();
+        for (int i = 0; i < 200000; i++) {
+            table.put("key" + i, "value" + i);
+            if (i >= 100) {
+                assertEquals("value" + (i - 100), table.remove("key" + (i - 100)).getValue());
+            }
+        }
+        assertEquals(100, table.size());
+        assertTrue("Capacity grew to " + table.capacity() + " for 100 keys.", table.capacity() <= 1024);
+        assertEquals(1, Integer.bitCount(table.capacity()));
+        for (int i = 0; i < 20000; i++) { // far more keys than PrimeGenerator has primes for.
+            table.put("name" + i, "301-405-" + i);
+        }
+        assertEquals(20100, table.size());
+        for (int i = 0; i < 20000; i++) {
+            assertEquals("301-405-" + i, table.get("name" + i).getValue());
+        }
+        assertEquals("value199999", table.get("key199999").getValue());
+        assertNull(table.get("key0").getValue());
+    }
+
+    // PrimeGenerator runs out of primes at 7907, so none of these could hold 20000 keys with prime capacities.
+    @Test
+    public void testPowerOfTwoCapacity() {
+        HashTable[] tables = {new SeparateChainingHashTable(CapacityPolicy.POWER_OF_TWO),
+                new LinearProbingHashTable(false, false, CapacityPolicy.POWER_OF_TWO),
+                new LinearProbingHashTable(false, true, CapacityPolicy.POWER_OF_TWO),
+                new OrderedLinearProbingHashTable(true, CapacityPolicy.POWER_OF_TWO),
+                new QuadraticProbingHashTable(true, CapacityPolicy.POWER_OF_TWO),
+                new IncrementalLinearProbingHashTable(false, CapacityPolicy.POWER_OF_TWO)};
+        for (HashTable table : tables) {
+            String name = table.getClass().getSimpleName();
+            assertEquals(name + " should start with 8 cells.", 8, table.capacity());
+            for (int i = 0; i < 20000; i++) {
+                table.put("key" + i, "value" + i);
+                if (table instanceof SeparateChainingHashTable && table.size() > table.capacity()) {
+                    ((SeparateChainingHashTable) table).enlarge();
+                }
+            }
+            assertEquals(name, 20000, table.size());
+            assertEquals(name + " capacity should be a power of two.", 1, Integer.bitCount(table.capacity()));
+            for (int i = 0; i < 20000; i += 10) {
+                assertEquals(name, "value" + i, table.remove("key" + i).getValue());
+            }
+            for (int i = 0; i < 20000; i++) {
+                assertEquals(name, i % 10 == 0 ? null : "value" + i, table.get("key" + i).getValue());
+            }
+        }
+
+        // Keys with equal hash codes share their whole probe sequence, which has to reach every cell.
+        QuadraticProbingHashTable qp = new QuadraticProbingHashTable(false, CapacityPolicy.POWER_OF_TWO);
+        for (int i = 0; i < 64; i++) {
+            StringBuilder key = new StringBuilder();
+            for (int bit = 0; bit < 6; bit++) {
+                key.append(((i >> bit) & 1) == 0 ? "Aa" : "BB");
+            }
+            qp.put(key.toString(), "value" + i);
+        }
+        assertEquals(64, qp.size());
+        assertEquals("value63", qp.remove("BBBBBBBBBBBB").getValue());
+        assertEquals("value0", qp.get("AaAaAaAaAaAa").getValue());
+        assertEquals(63, qp.size());
+    }
+
+    @Test
+    public void testBulkLoad() {
+        List<KVPair> pairs = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            pairs.add(new KVPair("key" + i, "value" + i));
+        }
+        HashTable[] bulk = {new SeparateChainingHashTable(), new LinearProbingHashTable(false),
+                new LinearProbingHashTable(false, true), new OrderedLinearProbingHashTable(false),
+                new QuadraticProbingHashTable(true), new IncrementalLinearProbingHashTable(false)};
+        HashTable[] oneByOne = {new SeparateChainingHashTable(), new LinearProbingHashTable(false),
+                new LinearProbingHashTable(false, true), new OrderedLinearProbingHashTable(false),
+                new QuadraticProbingHashTable(true), new IncrementalLinearProbingHashTable(false)};
+        for (int t = 0; t < bulk.length; t++) {
+            String name = bulk[t].getClass().getSimpleName();
+            bulk[t].put("key0", "value0");
+            bulk[t].remove("key0");
+            int bulkProbes = bulk[t].putAll(pairs).getProbes();
+            int probes = 0;
+            for (KVPair pair : pairs) {
+                probes += oneByOne[t].put(pair.getKey(), pair.getValue()).getProbes();
+            }
+            assertEquals(name, 2000, bulk[t].size());
+            if (!(bulk[t] instanceof SeparateChainingHashTable)) { // which has to be enlarged by hand otherwise.
+                assertEquals(name, oneByOne[t].capacity(), bulk[t].capacity());
+                assertTrue(name + " bulk load took " + bulkProbes + " probes, against " + probes + " one by one.",
+                        bulkProbes < probes);
+            }
+            for (KVPair pair : pairs) {
+                assertEquals(name, pair.getValue(), bulk[t].get(pair.getKey()).getValue());
+            }
+        }
+
+        for (CollisionResolver namesToPhones : resolvers) {
+            for (CollisionResolver phonesToNames : resolvers) {
+                pb = new Phonebook(namesToPhones, phonesToNames);
+                List<KVPair> entries = new ArrayList<>();
+                testingPhoneBook.forEach((name, number) -> entries.add(new KVPair(name + number, number + name)));
+                pb.addEntries(entries);
+                assertEquals(format("Wrong size after bulk load. ", namesToPhones, phonesToNames), entries.size(), pb.size());
+                for (KVPair entry : entries) {
+                    assertEquals(entry.getValue(), pb.getNumberOf(entry.getKey()));
+                    assertEquals(entry.getKey(), pb.getOwnerOf(entry.getValue()));
+                }
+            }
+        }
+    }
+
+    // Without compaction, tombstones of a soft-deleting table are only dropped when it grows, so endless churn over the
+    // same keys keeps growing it until PrimeGenerator runs out of primes.
+    @Test
+    public void testTombstoneCompaction() {
+        OpenAddressingHashTable[] tables = {new LinearProbingHashTable(true), new OrderedLinearProbingHashTable(true),
+                new QuadraticProbingHashTable(true), new IncrementalLinearProbingHashTable(true)};
+        for (OpenAddressingHashTable table : tables) {
+            String name = table.getClass().getSimpleName();
+            table.setCompactionRatio(0.1);
+            for (int i = 0; i < 100; i++) {
+                table.put("key" + i, "value" + i);
+            }
+            int capacity = table.capacity();
+            for (int round = 0; round < 20000; round++) {
+                String key = "key" + RNG.nextInt(100);
+                assertEquals(name, key.replace("key", "value"), table.remove(key).getValue());
+                table.put(key, key.replace("key", "value"));
+            }
+            assertEquals(name + " should not have grown.", capacity, table.capacity());
+            assertEquals(name, 100, table.size());
+            assertTrue(name + " should have been compacted.", table.getCompactions() > 0);
+            assertTrue(name, table.getCompactionProbes() >= table.getCompactions() * (long) capacity);
+            for (int i = 0; i < 100; i++) {
+                assertEquals(name, "value" + i, table.get("key" + i).getValue());
+            }
+        }
+        try {
+            new LinearProbingHashTable(true).setCompactionRatio(0);
+            fail("A compaction ratio of 0 should be rejected.");
+        } catch (IllegalArgumentException ignored) {
+        }
+        assertEquals(OpenAddressingHashTable.NO_COMPACTION, new QuadraticProbingHashTable(true).getCompactionRatio(), 0);
+    }
+
+    @Test
+    public void testInstrumentation() throws Exception {
+        InstrumentedHashTable table = new InstrumentedHashTable(new LinearProbingHashTable(true));
+        LinearProbingHashTable plain = new LinearProbingHashTable(true);
+        long probes = 0;
+        for (int i = 0; i < 100; i++) {
+            assertEquals(plain.put("key" + i, "value" + i).getProbes(), table.put("key" + i, "value" + i).getProbes());
+        }
+        for (int i = 0; i < 100; i++) {
+            probes += table.get("key" + i).getProbes();
+        }
+        for (int i = 0; i < 30; i++) {
+            table.remove("key" + i);
+        }
+        HashTableMetrics metrics = table.getMetrics();
+        assertEquals(100, Arrays.stream(metrics.getPutProbes()).sum());
+        assertEquals(100, Arrays.stream(metrics.getGetProbes()).sum());
+        assertEquals(30, Arrays.stream(metrics.getRemoveProbes()).sum());
+        assertEquals(probes / 100.0, HashTableMetrics.mean(metrics.getGetProbes()), 1e-9);
+        assertTrue(HashTableMetrics.quantile(metrics.getGetProbes(), 0.99) >= HashTableMetrics.quantile(metrics.getGetProbes(), 0.5));
+        assertEquals("7 -> 13 -> 23 -> 43 -> 83 -> 163 -> 317", 6, metrics.getResizes());
+        assertTrue(metrics.getMaxResizeNanos() > 0 && metrics.getResizeNanos() >= metrics.getMaxResizeNanos());
+        assertEquals(70, metrics.getSize());
+        assertEquals(30, metrics.getTombstones());
+        assertEquals(30.0 / 317, metrics.getTombstoneRatio(), 1e-9);
+        assertEquals(70.0 / 317, metrics.getLoadFactor(), 1e-9);
+
+        table.register("testInstrumentation");
+        try {
+            ObjectName name = new ObjectName("phonebook:type=HashTable,name=\"testInstrumentation\"");
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            assertEquals(6L, server.getAttribute(name, "Resizes"));
+            CompositeData exported = (CompositeData) server.getAttribute(name, "Metrics");
+            assertEquals(70, exported.get("size"));
+            server.invoke(name, "reset", null, null);
+            assertEquals(0, Arrays.stream(table.getMetrics().getGetProbes()).sum());
+        } finally {
+            table.unregister();
+        }
+
+        pb = new Phonebook(SEPARATE_CHAINING, QUADRATIC_PROBING, true);
+        pb.addEntry("Arnold", "894-59-0011");
+        assertEquals("894-59-0011", pb.getNumberOf("Arnold"));
+        assertEquals(1, Arrays.stream(pb.getNamesToNumbersMetrics().getGetProbes()).sum());
+        assertEquals(1, pb.getNumbersToNamesMetrics().getSize());
+        try {
+            new Phonebook(LINEAR_PROBING, LINEAR_PROBING).getNamesToNumbersMetrics();
+            fail("An uninstrumented phonebook has no metrics.");
+        } catch (IllegalStateException ignored) {
+        }
+    }
+
+    @Test
+    public void testConcurrentPhonebook() throws Exception {
+        ConcurrentPhonebook cpb = new ConcurrentPhonebook(new ConcurrentOpenAddressingHashTable(),
+                new ConcurrentSeparateChainingHashTable());
+        cpb.addEntry("Arnold", "894-59-0011");
+        cpb.addEntry("Tiffany", "894-59-0011"); // takes the number over from Arnold.
+        assertNull(cpb.getNumberOf("Arnold"));
+        assertEquals("Tiffany", cpb.getOwnerOf("894-59-0011"));
+        cpb.deleteEntry("Tiffany", "705-12-7500"); // not an entry, no effect.
+        assertEquals(1, cpb.size());
+
+        // Writers shuffle names over numbers, while readers check that both tables always hold as many entries.
+        int writers = 2, readers = 2, rounds = 20000, people = 50;
+        Thread[] threads = new Thread[writers + readers];
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicBoolean done = new AtomicBoolean();
+        for (int t = 0; t < writers; t++) {
+            Random rng = new Random(SEED + t);
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < rounds; i++) {
+                    String name = "Name" + rng.nextInt(people), number = "301-405-" + rng.nextInt(people);
+                    if (rng.nextInt(3) == 0)
+                        cpb.deleteEntry(name, number);
+                    else
+                        cpb.addEntry(name, number);
+                }
+            });
+        }
+        for (int t = writers; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                try {
+                    while (!done.get())
+                        assertTrue(cpb.size() <= people + 1); // size() asserts that the tables agree.
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+        }
+        for (Thread thread : threads)
+            thread.start();
+        for (int t = 0; t < writers; t++)
+            threads[t].join();
+        done.set(true);
+        for (int t = writers; t < threads.length; t++)
+            threads[t].join();
+        if (failure.get() != null)
+            throw new AssertionError("Reader saw a half-applied entry: " + errorData(failure.get()), failure.get());
+
+        int entries = cpb.getOwnerOf("894-59-0011") == null ? 0 : 1;
+        for (int i = 0; i < people; i++) {
+            String number = cpb.getNumberOf("Name" + i);
+            if (number != null) {
+                assertEquals("Name" + i, cpb.getOwnerOf(number));
+                entries++;
+            }
+        }
+        assertEquals(entries, cpb.size());
+
+        // The default tables grow with the phonebook, and under churn.
+        ConcurrentPhonebook large = new ConcurrentPhonebook();
+        for (int i = 0; i < 100000; i++) {
+            large.addEntry("Name" + i, "301-405-" + i);
+            if (i % 2 == 1)
+                large.deleteEntry("Name" + (i - 1), "301-405-" + (i - 1));
+        }
+        assertEquals(50000, large.size());
+        for (int i = 1; i < 100000; i += 2) {
+            assertEquals("301-405-" + i, large.getNumberOf("Name" + i));
+            assertEquals("Name" + i, large.getOwnerOf("301-405-" + i));
+        }
+        assertNull(large.getNumberOf("Name0"));
+    }
+
+    @Test
+    public void testBidirectionalIndex() {
+        BidirectionalHashIndex index = new BidirectionalHashIndex();
+        HashTable names = index.forward(), numbers = index.backward();
+        names.put("Arnold", "894-59-0011");
+        assertEquals("Arnold", numbers.get("894-59-0011").getValue());
+        numbers.put("894-59-0011", "Tiffany"); // takes the number over from Arnold.
+        assertFalse(names.containsKey("Arnold"));
+        assertEquals("894-59-0011", names.get("Tiffany").getValue());
+        assertTrue(names.containsValue("894-59-0011"));
+        assertEquals("Tiffany", numbers.remove("894-59-0011").getValue());
+        assertEquals(0, index.size());
+
+        // Random churn against two HashMaps, through both views, across several resizings.
+        Map<String, String> forward = new HashMap<>(), backward = new HashMap<>();
+        Random rng = new Random(SEED);
+        for (int i = 0; i < 50000; i++) {
+            String name = "Name" + rng.nextInt(2000), number = "301-405-" + rng.nextInt(2000);
+            boolean byName = rng.nextBoolean();
+            if (rng.nextInt(3) == 0) {
+                String removed = byName ? forward.remove(name) : backward.remove(number);
+                if (removed != null)
+                    (byName ? backward : forward).remove(removed);
+                assertEquals(removed, (byName ? names.remove(name) : numbers.remove(number)).getValue());
+            } else {
+                String oldNumber = forward.remove(name), oldOwner = backward.remove(number);
+                if (oldNumber != null)
+                    backward.remove(oldNumber);
+                if (oldOwner != null)
+                    forward.remove(oldOwner);
+                forward.put(name, number);
+                backward.put(number, name);
+                if (byName)
+                    names.put(name, number);
+                else
+                    numbers.put(number, name);
+            }
+            assertEquals(forward.size(), index.size());
+        }
+        for (Map.Entry<String, String> entry : forward.entrySet()) {
+            assertEquals(entry.getValue(), names.get(entry.getKey()).getValue());
+            assertEquals(entry.getKey(), numbers.get(entry.getValue()).getValue());
+        }
+        assertTrue(names.capacity() >= 2 * index.size() && Integer.bitCount(names.capacity()) == 1);
+
+        pb = new Phonebook(new BidirectionalHashIndex());
+        pb.addEntry("Jessie", "705-12-7500");
+        pb.addEntry("Mary", "888-1212-3340");
+        assertEquals("Mary", pb.getOwnerOf("888-1212-3340"));
+        pb.deleteEntry("Jessie", "705-12-7500");
+        assertNull(pb.getNumberOf("Jessie"));
+        assertEquals(1, pb.size());
+    }
+
+    @Test
+    public void testMappedSnapshot() throws Exception {
+        Path dir = Files.createTempDirectory("snapshot");
+        try {
+            List<KVPair> pairs = new ArrayList<>();
+            Map<String, String> expected = new HashMap<>();
+            for (int i = 0; i < 3000; i++) {
+                String key = "N\u00e4me" + RNG.nextInt(2500), value = "301-405-" + i; // repeated keys keep the last value.
+                pairs.add(new KVPair(key, value));
+                expected.put(key, value);
+            }
+            for (CollisionResolver resolver : resolvers) {
+                Path file = dir.resolve(resolver + ".tbl");
+                MappedHashTable.write(pairs, resolver, file);
+                MappedHashTable table = MappedHashTable.open(file);
+                assertEquals(resolver, table.getCollisionResolver());
+                assertEquals(expected.size(), table.size());
+                for (Map.Entry<String, String> entry : expected.entrySet())
+                    assertEquals(resolver.toString(), entry.getValue(), table.get(entry.getKey()).getValue());
+                assertNull(table.get("Jerry").getValue());
+                assertFalse(table.containsKey("N\u00e4me2500"));
+                assertTrue(table.containsValue("301-405-2999"));
+                try {
+                    table.put("Jerry", "301-405-0000");
+                    fail("Snapshots are read-only.");
+                } catch (UnsupportedOperationException ignored) {
+                }
+            }
+
+            Files.write(dir.resolve("junk.tbl"), new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20, 21, 22, 23, 24});
+            try {
+                MappedHashTable.open(dir.resolve("junk.tbl"));
+                fail("Opened a file which is not a snapshot.");
+            } catch (IOException ignored) {
+            }
+
+            List<KVPair> entries = new ArrayList<>();
+            testingPhoneBook.forEach((name, number) -> entries.add(new KVPair(name, number + name)));
+            Phonebook.writeSnapshot(entries, ORDERED_LINEAR_PROBING, SEPARATE_CHAINING, dir);
+            pb = Phonebook.openSnapshot(dir);
+            assertEquals(testingPhoneBook.size(), pb.size());
+            assertEquals("705-12-7500Jessie", pb.getNumberOf("Jessie"));
+            assertEquals("Mary", pb.getOwnerOf("888-1212-3340Mary"));
+        } finally {
+            try (Stream<Path> files = Files.list(dir)) {
+                files.forEach(file -> file.toFile().delete());
+            }
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    public void testDurablePhonebook() throws Exception {
+        Path dir = Files.createTempDirectory("wal");
+        try {
+            Map<String, String> expected = new HashMap<>();
+            DurablePhonebook dpb = new DurablePhonebook(dir, 100);
+            Random rng = new Random(SEED); // not RNG, so that the number of records does not depend on the other tests.
+            for (int i = 0; i < 1000; i++) {
+                String name = "Name" + rng.nextInt(300), number = "301-405-" + rng.nextInt(300);
+                if (rng.nextInt(4) == 0) {
+                    dpb.deleteEntry(name, number);
+                    if (number.equals(expected.get(name)))
+                        expected.remove(name);
+                } else {
+                    dpb.addEntry(name, number);
+                    expected.values().remove(number);
+                    expected.put(name, number);
+                }
+            }
+            // Writers running together share their fsyncs, and their updates of a shared name are applied in log order.
+            Thread[] writers = new Thread[4];
+            for (int t = 0; t < writers.length; t++) {
+                int id = t;
+                writers[t] = new Thread(() -> {
+                    for (int i = 0; i < 50; i++) {
+                        dpb.addEntry("Writer" + id + "-" + i, "555-" + id + "-" + i);
+                        dpb.addEntry("Shared", "556-" + id + "-" + i);
+                    }
+                });
+                writers[t].start();
+            }
+            for (int t = 0; t < writers.length; t++) {
+                writers[t].join();
+                for (int i = 0; i < 50; i++)
+                    expected.put("Writer" + t + "-" + i, "555-" + t + "-" + i);
+            }
+            expected.put("Shared", dpb.getNumberOf("Shared")); // recovery replays the log, so it must agree.
+            assertEquals(expected.size(), dpb.size());
+
+            // Crash: dpb is never closed, and the last record of the log is torn.
+            dpb.checkpoint(); // leaves a single, empty log, so that the next record cannot trigger a checkpoint.
+            dpb.addEntry("Torn", "000-00-0000");
+            Path wal;
+            try (Stream<Path> files = Files.list(dir)) { // the latest generation, compared as a number: wal-9 < wal-10.
+                wal = files.filter(f -> f.toString().endsWith(".log"))
+                        .max(Comparator.comparingLong(f -> Long.parseLong(f.getFileName().toString().replaceAll("\\D", ""))))
+                        .orElseThrow();
+            }
+            long length = Files.size(wal);
+            try (FileChannel channel = FileChannel.open(wal, StandardOpenOption.WRITE)) {
+                channel.truncate(length - 3);
+            }
+
+            DurablePhonebook recovered = new DurablePhonebook(dir, 100);
+            assertEquals(expected.size(), recovered.size());
+            for (Map.Entry<String, String> entry : expected.entrySet()) {
+                assertEquals(entry.getValue(), recovered.getNumberOf(entry.getKey()));
+                assertEquals(entry.getKey(), recovered.getOwnerOf(entry.getValue()));
+            }
+            assertNull(recovered.getNumberOf("Torn"));
+            recovered.checkpoint();
+            recovered.addEntry("Jessie", "705-12-7500");
+            recovered.close();
+            try (Stream<Path> files = Files.list(dir)) {
+                assertEquals(1, files.filter(f -> f.toString().endsWith(".tbl")).count());
+            }
+            assertEquals("705-12-7500", new DurablePhonebook(dir).getNumberOf("Jessie"));
+        } finally {
+            try (Stream<Path> files = Files.list(dir)) {
+                files.forEach(file -> file.toFile().delete());
+            }
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    public void testCuckooHashing() {
+        CuckooHashTable cuckoo = new CuckooHashTable();
+        Map<String, String> expected = new HashMap<>();
+        for (int i = 0; i < 20000; i++) {
+            String key = "Name" + RNG.nextInt(5000);
+            if (RNG.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), cuckoo.remove(key).getValue());
+            } else {
+                cuckoo.put(key, "301-405-" + i);
+                expected.put(key, "301-405-" + i);
+            }
+            assertEquals(expected.size(), cuckoo.size());
+        }
+        for (Map.Entry<String, String> entry : expected.entrySet()) {
+            Probes found = cuckoo.get(entry.getKey());
+            assertEquals(entry.getValue(), found.getValue());
+            assertTrue(found.getProbes() <= 2 + CuckooHashTable.STASH); // two buckets and the stash, at most.
+        }
+        assertTrue(cuckoo.get("Jerry").getProbes() <= 2 + CuckooHashTable.STASH);
+        assertTrue(cuckoo.size() <= 0.9 * cuckoo.capacity());
+        assertEquals(1, Integer.bitCount(cuckoo.capacity()));
+
+        // Keys with equal hash codes share both of their buckets, so the stash and rehashes have to absorb them.
+        CuckooHashTable colliding = new CuckooHashTable();
+        String[] keys = {"AaAa", "AaBB", "BBAa", "BBBB", "AaAaAa", "AaAaBB"};
+        for (String key : keys)
+            colliding.put(key, key);
+        for (String key : keys)
+            assertEquals(key, colliding.get(key).getValue());
+
+        // 32 keys with the very same hash code, more than two buckets and the stash can hold: growing cannot separate
+        // them, so the table has to hash them again with a seeded function.
+        CuckooHashTable same = new CuckooHashTable();
+        List<String> sameHash = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            StringBuilder key = new StringBuilder();
+            for (int bit = 0; bit < 5; bit++)
+                key.append((i >> bit & 1) == 0 ? "Aa" : "BB");
+            sameHash.add(key.toString());
+            assertEquals(sameHash.get(0).hashCode(), key.toString().hashCode());
+            same.put(key.toString(), "301-405-" + i);
+        }
+        assertEquals(32, same.size());
+        assertTrue(same.getHashFunction() != HashFunction.STRING_HASH_CODE);
+        for (int i = 0; i < 32; i++)
+            assertEquals("301-405-" + i, same.get(sameHash.get(i)).getValue());
+        for (int i = 0; i < 32; i += 2)
+            assertEquals("301-405-" + i, same.remove(sameHash.get(i)).getValue());
+        for (int i = 0; i < 32; i++)
+            assertEquals(i % 2 == 0 ? null : "301-405-" + i, same.get(sameHash.get(i)).getValue());
+    }
+
+    @Test
+    public void testSwissTable() {
+        SwissHashTable swiss = new SwissHashTable();
+        Map<String, String> expected = new HashMap<>();
+        for (int i = 0; i < 50000; i++) {
+            String key = "Name" + RNG.nextInt(4000);
+            if (RNG.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), swiss.remove(key).getValue());
+            } else {
+                assertEquals("301-405-" + i, swiss.put(key, "301-405-" + i).getValue());
+                expected.put(key, "301-405-" + i);
+            }
+        }
+        assertEquals(expected.size(), swiss.size());
+        for (Map.Entry<String, String> entry : expected.entrySet())
+            assertEquals(entry.getValue(), swiss.get(entry.getKey()).getValue());
+        assertTrue(swiss.containsValue(expected.values().iterator().next()));
+
+        // Well past 50% load, most searches still read a single group and compare a single key.
+        SwissHashTable full = new SwissHashTable();
+        int n = 0;
+        while (n < 7 * 1024) {
+            full.put("301-405-" + n, "Name" + n);
+            n++;
+        }
+        assertEquals(8192, full.capacity());
+        long probes = 0;
+        for (int i = 0; i < n; i++)
+            probes += full.get("301-405-" + i).getProbes();
+        assertTrue("Mean probes " + (double) probes / n, probes < 2.5 * n);
+        assertNull(full.get("Jerry").getValue());
+    }
+
+    @Test
+    public void testTreeifiedChains() {
+        // "Aa" and "BB" share their hash code, so all 2^11 strings made of 11 of them land in the same bucket.
+        List<String> flood = new ArrayList<>();
+        for (int bits = 0; bits < 1 << 11; bits++) {
+            StringBuilder key = new StringBuilder();
+            for (int b = 0; b < 11; b++)
+                key.append((bits >>> b & 1) == 0 ? "Aa" : "BB");
+            flood.add(key.toString());
+        }
+        assertEquals(1, flood.stream().map(String::hashCode).distinct().count());
+        SeparateChainingHashTable sc = new SeparateChainingHashTable();
+        for (String key : flood)
+            sc.put(key, "#" + key);
+        sc.put("Jerry", "301-405-0000");
+        assertEquals(flood.size() + 1, sc.size());
+        for (String key : flood) {
+            Probes probes = sc.get(key);
+            assertEquals("#" + key, probes.getValue());
+            assertTrue("Probes " + probes.getProbes(), probes.getProbes() <= 2 * 11 + 2); // red-black height bound.
+        }
+        assertTrue(sc.containsKey(flood.get(100)));
+        assertTrue(sc.containsValue("#" + flood.get(100)));
+        assertNull(sc.get("AaAa").getValue());
+
+        // Duplicates keep their order, and the bucket survives shrinking back to a chain.
+        sc.put(flood.get(0), "second");
+        assertEquals("#" + flood.get(0), sc.remove(flood.get(0)).getValue());
+        assertEquals("second", sc.get(flood.get(0)).getValue());
+        for (int i = 2; i < flood.size(); i++)
+            assertEquals("#" + flood.get(i), sc.remove(flood.get(i)).getValue());
+        assertEquals(3, sc.size());
+        assertEquals("second", sc.get(flood.get(0)).getValue());
+        assertEquals("#" + flood.get(1), sc.get(flood.get(1)).getValue());
+        sc.enlarge();
+        assertEquals("301-405-0000", sc.get("Jerry").getValue());
+        assertEquals("#" + flood.get(1), sc.get(flood.get(1)).getValue());
+        assertFalse(sc.containsValue("#" + flood.get(5)));
+    }
+
+    @Test
+    public void testHashFunctions() {
+        HashFunction seeded = HashFunction.seeded(SEED);
+        assertEquals(seeded.hash("301-405-0011"), HashFunction.seeded(SEED).hash("301-405-0011"));
+        assertNotEquals(seeded.hash("301-405-0011"), HashFunction.seeded(SEED + 1).hash("301-405-0011"));
+        assertNotEquals(seeded.hash("Aa"), seeded.hash("Aa\u0000"));
+
+        // The keys that all collide under String.hashCode() spread over the table under a seeded function.
+        List<String> flood = new ArrayList<>();
+        for (int bits = 0; bits < 1 << 10; bits++) {
+            StringBuilder key = new StringBuilder();
+            for (int b = 0; b < 10; b++)
+                key.append((bits >>> b & 1) == 0 ? "Aa" : "BB");
+            flood.add(key.toString());
+        }
+        assertTrue(flood.stream().map(seeded::hash).distinct().count() > flood.size() - 2);
+
+        // A block of 4 characters equal to a constant of the function must not zero it: these keys spread under any seed.
+        List<String> zeroing = new ArrayList<>();
+        for (int i = 0; i < 1000; i++)
+            zeroing.add("\u28db\ua0b4\u7ed1\ue703" + String.format("%04d", i));
+        HashFunction other = HashFunction.seeded(SEED + 1);
+        assertTrue(zeroing.stream().map(seeded::hash).distinct().count() > zeroing.size() - 2);
+        assertTrue(zeroing.stream().map(other::hash).distinct().count() > zeroing.size() - 2);
+        assertTrue(zeroing.stream().filter(key -> seeded.hash(key) == other.hash(key)).count() < 2);
+        for (CollisionResolver resolver : new CollisionResolver[]{LINEAR_PROBING, QUADRATIC_PROBING}) {
+            OpenAddressingHashTable table = resolver == LINEAR_PROBING ? new LinearProbingHashTable(true, false, CapacityPolicy.POWER_OF_TWO)
+                    : new QuadraticProbingHashTable(true, CapacityPolicy.POWER_OF_TWO);
+            table.setHashFunction(seeded);
+            for (String key : flood)
+                table.put(key, "#" + key);
+            long probes = 0;
+            for (String key : flood) {
+                Probes found = table.get(key);
+                assertEquals("#" + key, found.getValue());
+                probes += found.getProbes();
+            }
+            assertTrue(resolver + ": " + probes, probes < 2L * flood.size()); // about n * n / 2 under String.hashCode().
+            try {
+                table.setHashFunction(HashFunction.STRING_HASH_CODE);
+                fail(resolver + ": the hash function of a non-empty table should not change.");
+            } catch (IllegalStateException ignored) {
+            }
+            for (String key : flood)
+                table.remove(key);
+            table.setHashFunction(HashFunction.STRING_HASH_CODE); // only tombstones left.
+            table.put("Jerry", "301-405-0000");
+            assertEquals("301-405-0000", table.get("Jerry").getValue());
+            assertSame(HashFunction.STRING_HASH_CODE, table.getHashFunction());
+        }
+
+        SeparateChainingHashTable sc = new SeparateChainingHashTable();
+        sc.setHashFunction(seeded);
+        for (String key : flood)
+            sc.put(key, "#" + key);
+        sc.enlarge();
+        for (String key : flood)
+            assertEquals("#" + key, sc.get(key).getValue());
+        try {
+            sc.setHashFunction(HashFunction.STRING_HASH_CODE);
+            fail("The hash function of a non-empty table should not change.");
+        } catch (IllegalStateException ignored) {
+        }
+    }
+
+    @Test
+    public void testSeededTables() throws Exception {
+        HashFunction seeded = HashFunction.seeded(SEED);
+        List<String> flood = new ArrayList<>(); // all collide under String.hashCode().
+        for (int bits = 0; bits < 1 << 9; bits++) {
+            StringBuilder key = new StringBuilder();
+            for (int b = 0; b < 9; b++)
+                key.append((bits >>> b & 1) == 0 ? "Aa" : "BB");
+            flood.add(key.toString());
+        }
+        OffHeapHashTable offHeap = new OffHeapHashTable(0, seeded);
+        BidirectionalHashIndex index = new BidirectionalHashIndex(seeded);
+        OpenAddressingHashTable probing = new LinearProbingHashTable(true, false, CapacityPolicy.POWER_OF_TWO);
+        probing.setHashFunction(seeded);
+        ValueIndexedHashTable indexed = new ValueIndexedHashTable(probing, seeded);
+        SwissHashTable swiss = new SwissHashTable(seeded);
+        HashTable[] tables = {new ArenaHashTable(seeded), offHeap, index.forward(), indexed, swiss,
+                new ConcurrentOpenAddressingHashTable(seeded), new ConcurrentSeparateChainingHashTable(4, seeded)};
+        for (HashTable table : tables) {
+            String name = table.getClass().getSimpleName();
+            for (String key : flood)
+                table.put(key, "#" + key);
+            long probes = 0;
+            for (String key : flood) {
+                Probes found = table.get(key);
+                assertEquals(name, "#" + key, found.getValue());
+                probes += found.getProbes();
+            }
+            assertTrue(name + ": " + probes, probes < 3L * flood.size()); // about n * n / 2 under String.hashCode().
+            assertTrue(name, table.containsValue("#" + flood.get(7)));
+            assertEquals(name, "#" + flood.get(3), table.remove(flood.get(3)).getValue());
+            assertFalse(name, table.containsKey(flood.get(3)));
+        }
+        assertEquals(flood.get(5), index.backward().get("#" + flood.get(5)).getValue());
+        assertSame(seeded, index.getHashFunction());
+        assertSame(seeded, indexed.getValueHash());
+        assertSame(seeded, swiss.getHashFunction());
+        offHeap.close();
+
+        Path dir = Files.createTempDirectory("seeded");
+        try {
+            List<KVPair> pairs = flood.stream().map(key -> new KVPair(key, "#" + key)).collect(Collectors.toList());
+            Path file = dir.resolve("flood.tbl");
+            MappedHashTable.write(pairs, LINEAR_PROBING, file, seeded);
+            MappedHashTable table = MappedHashTable.open(file, seeded);
+            long probes = 0;
+            for (String key : flood) {
+                Probes found = table.get(key);
+                assertEquals("#" + key, found.getValue());
+                probes += found.getProbes();
+            }
+            assertTrue("MappedHashTable: " + probes, probes < 3L * flood.size());
+            try {
+                new ArenaHashTable(null);
+                fail("Created a table without a hash function.");
+            } catch (IllegalArgumentException ignored) {
+            }
+        } finally {
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Path file : files.collect(Collectors.toList()))
+                    Files.delete(file);
+            }
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    public void testArenaHashTable() {
+        StringArena arena = new StringArena();
+        String[] strings = {"", "Jerry", "301-405-0011", "\u00c5sa \u00d6berg", "\u5f20\u4f1f", new String(new char[5000]).replace('\0', 'x'),
+                "x\uD800y", "\uDC00\uD83D"}; // lone surrogates are not valid UTF-16, but valid Strings.
+        long[] refs = new long[strings.length];
+        for (int i = 0; i < strings.length; i++)
+            refs[i] = arena.add(strings[i]);
+        for (int i = 0; i < strings.length; i++) {
+            assertEquals(strings[i], arena.get(refs[i]));
+            assertTrue(arena.equals(refs[i], strings[i]));
+            assertFalse(arena.equals(refs[i], strings[i] + "0"));
+        }
+        assertFalse(arena.equals(refs[3], "\u00c5sa \u00d6bers"));
+        StringArena copy = new StringArena();
+        assertEquals(strings[4], copy.get(arena.copyTo(refs[4], copy)));
+
+        ArenaHashTable table = new ArenaHashTable();
+        Map<String, String> expected = new HashMap<>();
+        for (int i = 0; i < 40000; i++) {
+            String key = (i % 7 == 0 ? "\u00c5" : "Name") + RNG.nextInt(3000);
+            if (RNG.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), table.remove(key).getValue());
+            } else {
+                assertEquals("301-405-" + i, table.put(key, "301-405-" + i).getValue());
+                expected.put(key, "301-405-" + i);
+            }
+        }
+        assertEquals(expected.size(), table.size());
+        long live = 0;
+        for (Map.Entry<String, String> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), table.get(entry.getKey()).getValue());
+            assertTrue(table.containsKey(entry.getKey()));
+            live += 2 + entry.getKey().length() + entry.getValue().length();
+        }
+        assertTrue(table.containsValue(expected.values().iterator().next()));
+        assertFalse(table.containsValue("Jerry"));
+        // Updates and removals leave garbage behind, but the arena is compacted before it takes up most of it.
+        assertTrue(table.getArenaBytes() + " bytes for " + live, table.getArenaBytes() <= Math.max(2 * live, live + (1 << 12)));
+    }
+
+    @Test
+    public void testOffHeapHashTable() {
+        OffHeapHashTable table = new OffHeapHashTable();
+        Map<String, String> expected = new HashMap<>();
+        for (int i = 0; i < 60000; i++) {
+            String key = (i % 5 == 0 ? "\u5f20" : "Name") + RNG.nextInt(4000);
+            if (RNG.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), table.remove(key).getValue());
+            } else {
+                String value = (i % 3 == 0 ? "\u00e4" : "301-405-") + i;
+                assertEquals(value, table.put(key, value).getValue());
+                expected.put(key, value);
+            }
+        }
+        assertEquals(expected.size(), table.size());
+        for (Map.Entry<String, String> entry : expected.entrySet())
+            assertEquals(entry.getValue(), table.get(entry.getKey()).getValue());
+        assertTrue(table.containsValue(expected.values().iterator().next()));
+        assertFalse(table.containsKey("Jerry"));
+        assertTrue(table.getOffHeapBytes() >= (long) table.capacity() * 12);
+        table.put("x\uD800y", "\uDC00"); // lone surrogates come back as they went in.
+        assertEquals("\uDC00", table.get("x\uD800y").getValue());
+        assertTrue(table.stream().anyMatch(pair -> pair.getKey().equals("x\uD800y")));
+        table.remove("x\uD800y");
+
+        // A presized table never resizes on its way to its expected size.
+        OffHeapHashTable presized = new OffHeapHashTable(3000);
+        int capacity = presized.capacity();
+        assertEquals(8192, capacity);
+        for (int i = 0; i < 3000; i++)
+            presized.put("301-405-" + i, "Name" + i);
+        assertEquals(capacity, presized.capacity());
+        assertEquals("Name2999", presized.get("301-405-2999").getValue());
+        presized.close();
+        assertEquals(0, presized.getOffHeapBytes());
+        try {
+            presized.get("301-405-0");
+            fail("A closed table should not be searched.");
+        } catch (IllegalStateException ignored) {
+        }
+    }
+
+    @Test
+    public void testShrinkingResizePolicy() {
+        for (CollisionResolver resolver : resolvers) {
+            for (boolean soft : new boolean[]{false, true}) {
+                HashTable table;
+                if (resolver == SEPARATE_CHAINING) {
+                    SeparateChainingHashTable sc = new SeparateChainingHashTable();
+                    sc.setResizePolicy(ResizePolicy.shrinkBelow(0.25));
+                    table = sc;
+                } else {
+                    OpenAddressingHashTable oa = resolver == LINEAR_PROBING ? new LinearProbingHashTable(soft)
+                            : resolver == QUADRATIC_PROBING ? new QuadraticProbingHashTable(soft)
+                            : resolver == ORDERED_LINEAR_PROBING ? new OrderedLinearProbingHashTable(soft) : new CuckooHashTable();
+                    try {
+                        oa.setResizePolicy(ResizePolicy.shrinkBelow(0.25));
+                        fail(resolver + ": a minimum load factor this close to the maximum one should be rejected.");
+                    } catch (IllegalArgumentException ignored) {
+                    }
+                    oa.setResizePolicy(ResizePolicy.shrinkBelow(0.1));
+                    table = oa;
+                }
+                String name = resolver + (soft ? " soft" : " hard");
+                List<KVPair> pairs = new ArrayList<>();
+                for (int i = 0; i < 1500; i++)
+                    pairs.add(new KVPair("Name" + i, "301-405-" + i));
+                table.putAll(pairs);
+                int grown = table.capacity();
+                for (int i = 10; i < 1500; i++)
+                    assertEquals(name, "301-405-" + i, table.remove("Name" + i).getValue());
+                assertEquals(name, 10, table.size());
+                assertTrue(name + ": capacity " + table.capacity(), table.capacity() <= 128 && table.capacity() < grown / 16);
+                for (int i = 0; i < 10; i++)
+                    assertEquals(name, "301-405-" + i, table.get("Name" + i).getValue());
+
+                // Going back and forth around the threshold does not resize the table. Under soft deletion, tombstones
+                // still make the table grow, and shrink back, once in a while.
+                if (soft)
+                    continue;
+                int capacity = table.capacity();
+                int shrinks = table instanceof OpenAddressingHashTable ? ((OpenAddressingHashTable) table).getShrinks() : 0;
+                for (int i = 0; i < 100; i++) {
+                    table.put("Jerry", "301-405-0000");
+                    table.remove("Jerry");
+                }
+                assertEquals(name, capacity, table.capacity());
+                if (table instanceof OpenAddressingHashTable)
+                    assertEquals(name, shrinks, ((OpenAddressingHashTable) table).getShrinks());
+                assertEquals(name, 10, table.size());
+            }
+        }
+    }
+
+    @Test
+    public void testValueIndex() {
+        HashTable[] tables = {new SeparateChainingHashTable(), new LinearProbingHashTable(false), new LinearProbingHashTable(true),
+                new LinearProbingHashTable(false, true), new QuadraticProbingHashTable(true), new OrderedLinearProbingHashTable(false),
+                new CuckooHashTable(), new SwissHashTable()};
+        for (HashTable raw : tables) {
+            ValueIndexedHashTable indexed = new ValueIndexedHashTable(raw);
+            String name = raw.getClass().getSimpleName();
+            for (int i = 0; i < 3000; i++) {
+                String key = "Name" + RNG.nextInt(300), value = "301-405-" + RNG.nextInt(100);
+                if (RNG.nextInt(3) == 0)
+                    indexed.remove(key);
+                else if (!indexed.containsKey(key) || RNG.nextBoolean())
+                    indexed.put(key, value); // some tables keep both pairs of a key inserted twice, others update it.
+                String probe = "301-405-" + RNG.nextInt(110);
+                assertEquals(name + " " + probe, raw.containsValue(probe), indexed.containsValue(probe));
+            }
+            assertFalse(name, indexed.containsValue(""));
+            assertFalse(name, indexed.containsValue(null));
+        }
+
+        ValueIndexedHashTable indexed = new ValueIndexedHashTable(new SwissHashTable());
+        indexed.put("Arnold", "894-59-0011");
+        indexed.put("Tiffany", "894-59-0011");
+        assertEquals(2, indexed.getValueCount("894-59-0011"));
+        indexed.put("Arnold", "301-405-0000");
+        assertEquals(1, indexed.getValueCount("894-59-0011"));
+        indexed.remove("Tiffany");
+        assertEquals(0, indexed.getValueCount("894-59-0011"));
+        assertTrue(indexed.containsValue("301-405-0000"));
+        try {
+            new ValueIndexedHashTable(indexed.unwrap());
+            fail("A non-empty table should not be indexed.");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    @Test
+    public void testParallelRehash() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            LinearProbingHashTable parallel = new LinearProbingHashTable(false, false, CapacityPolicy.POWER_OF_TWO);
+            LinearProbingHashTable sequential = new LinearProbingHashTable(false, false, CapacityPolicy.POWER_OF_TWO);
+            parallel.setRehashPool(pool);
+            sequential.setRehashPool(null);
+            int n = 200000;
+            for(int i = 0; i < n; i++) {
+                parallel.put("key" + i, "value" + i);
+                sequential.put("key" + i, "value" + i);
+            }
+            assertEquals("Parallel rehash lost or duplicated pairs.", n, parallel.size());
+            assertEquals("Parallel rehash should grow the table like a sequential one.", sequential.capacity(), parallel.capacity());
+            for(int i = 0; i < n; i += 2) {
+                assertEquals("key" + i + " should be removable after a parallel rehash.", "value" + i, parallel.remove("key" + i).getValue());
+            }
+            for(int i = 0; i < n; i++) {
+                assertEquals("Wrong value for key" + i + " after a parallel rehash.", i % 2 == 0 ? null : "value" + i, parallel.get("key" + i).getValue());
+            }
+
+            SeparateChainingHashTable chains = new SeparateChainingHashTable(CapacityPolicy.POWER_OF_TWO);
+            chains.setRehashPool(pool);
+            for(int i = 0; i < n; i++) {
+                chains.put("key" + i, "first" + i);
+            }
+            for(int i = 0; i < 1000; i++) {
+                chains.put("key" + i, "second" + i); // duplicates, which searches must not find first.
+            }
+            while(chains.capacity() < n) {
+                chains.enlarge();
+            }
+            assertEquals("Parallel resize lost or duplicated pairs.", n + 1000, chains.size());
+            for(int i = 0; i < n; i++) {
+                assertEquals("Wrong value for key" + i + " after a parallel resize.", "first" + i, chains.get("key" + i).getValue());
+            }
+            assertTrue("Duplicates should survive a parallel resize.", chains.containsValue("second999"));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testTableTraversal() {
+        OffHeapHashTable offHeap = new OffHeapHashTable();
+        HashTable[] tables = {new SeparateChainingHashTable(), new LinearProbingHashTable(true), new LinearProbingHashTable(false, true),
+                new QuadraticProbingHashTable(true), new OrderedLinearProbingHashTable(false), new IncrementalLinearProbingHashTable(true),
+                new CuckooHashTable(), new SwissHashTable(), new ArenaHashTable(), offHeap, new ConcurrentOpenAddressingHashTable(),
+                new ConcurrentSeparateChainingHashTable(), new InstrumentedHashTable(new LinearProbingHashTable(false)),
+                new ValueIndexedHashTable(new QuadraticProbingHashTable(false)), new BidirectionalHashIndex().forward()};
+        Map<String, String> expected = new HashMap<>();
+        for(int i = 0; i < 1500; i++) {
+            expected.put("key" + i, "value" + i);
+        }
+        for(int i = 0; i < 16; i++) { // keys with the same hash code, enough to treeify a chain.
+            StringBuilder key = new StringBuilder();
+            for(int b = 0; b < 4; b++) {
+                key.append((i >> b & 1) == 0 ? "Aa" : "BB");
+            }
+            expected.put(key.toString(), "colliding" + i);
+        }
+        try {
+            for(HashTable table : tables) {
+                String name = table.getClass().getSimpleName();
+                expected.forEach(table::put);
+                for(int i = 0; i < 1500; i += 3) {
+                    table.remove("key" + i); // tombstones must not be traversed.
+                }
+                Map<String, String> live = new HashMap<>(expected);
+                live.keySet().removeIf(k -> k.startsWith("key") && Integer.parseInt(k.substring(3)) % 3 == 0);
+                assertEquals(name + ": wrong pairs in a sequential traversal.", live,
+                        table.stream().collect(Collectors.toMap(KVPair::getKey, KVPair::getValue)));
+                assertEquals(name + ": wrong pairs in a parallel traversal.", live,
+                        table.parallelStream().collect(Collectors.toMap(KVPair::getKey, KVPair::getValue)));
+                int n = 0;
+                for(Iterator<KVPair> it = table.iterator(); it.hasNext(); it.next()) {
+                    n++;
+                }
+                assertEquals(name + ": iterator should see every pair once.", live.size(), n);
+            }
+        } finally {
+            offHeap.close();
+        }
+    }
 }
@@ -0,0 +1,255 @@
+package phonebook.hashes;
+
+import phonebook.utils.KVPair;
+import phonebook.utils.PowerOfTwoGenerator;
+import phonebook.utils.Probes;
+import phonebook.utils.StringArena;
+
+import java.util.Arrays;
+import java.util.Spliterator;
+
+/**
+ * <p>{@link ArenaHashTable} is a <b>Linear Probing</b> {@link HashTable} which does not hold on to the {@link String}s it
+ * is given: their characters are copied into a {@link StringArena}, and the table only stores, in parallel primitive
+ * arrays, the arena references of every key and value and the hash code of every key. A pair thus costs 20 bytes of table
+ * and its characters, instead of a {@link phonebook.utils.KVPair}, two {@link String}s and their arrays, which, for
+ * phone numbers and names, take several times as much, and leaves the garbage collector three arrays and a few slabs to
+ * trace instead of millions of small objects. The price is paid by {@link #get(String)} and {@link #remove(String)},
+ * which build a new {@link String} for the value they return; searches compare the key they are given with the arena
+ * directly.</p>
+ *
+ * <p>Capacities follow {@link CapacityPolicy#POWER_OF_TWO}, and the table is kept at most 50&#37; full. Removals shift
+ * the rest of their cluster back instead of leaving tombstones behind. The arena is append-only, so the {@link String}s
+ * of removed or updated pairs stay in it as garbage until the table is rehashed, which copies the live ones to a new
+ * arena; besides resizings, the table is also rehashed in place when garbage takes up more than half of the arena.
+ * Inserting a key that is already in the table <b>updates</b> its value.</p>
+ *
+ * @author Cheolhong Ahn
+ *
+ * @see StringArena
+ * @see LinearProbingHashTable
+ * @see CapacityPolicy
+ */
+public class ArenaHashTable implements HashTable {
+
+    /* ********************************************************************/
+    /* ** INSERT ANY PRIVATE METHODS OR FIELDS YOU WANT TO USE HERE: ******/
+    /* ********************************************************************/
+
+    private static final long EMPTY = -1; // arena references are never negative.
+    private static final int MIN_GARBAGE = 1 << 12; // bytes of garbage below which the arena is never compacted.
+
+    private final PowerOfTwoGenerator powerOfTwoGenerator = new PowerOfTwoGenerator();
+    private StringArena arena = new StringArena();
+    private long[] keys, values;
+    private int[] hashes;
+    private int count;
+
+    private final HashFunction hashFunction;
+
+    private int hash(String key) {
+        return CapacityPolicy.keyHash(hashFunction, key);
+    }
+
+    private int home(int h) {
+        return CapacityPolicy.POWER_OF_TWO.indexOf(h, keys.length);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        hashes = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    // Searches for key. Returns its cell, or -1 if the search failed, with the probes used added to probes[0].
+    private int find(String key, int h, int[] probes) {
+        int mask = keys.length - 1;
+        int idx = home(h);
+        probes[0]++;
+        while(keys[idx] != EMPTY) {
+            if(hashes[idx] == h && arena.equals(keys[idx], key)) {
+                return idx;
+            }
+            probes[0]++;
+            idx = (idx + 1) & mask;
+        }
+        return -1;
+    }
+
+    // Stores the references of a pair whose key is not in the table in the first empty cell of its cluster. Returns the probes it took.
+    private int insert(long key, long value, int h) {
+        int mask = keys.length - 1;
+        int idx = home(h);
+        int probeC = 1;
+        while(keys[idx] != EMPTY) {
+            probeC++;
+            idx = (idx + 1) & mask;
+        }
+        keys[idx] = key;
+        values[idx] = value;
+        hashes[idx] = h;
+        return probeC;
+    }
+
+    // Moves every pair into new arrays of the given capacity, and their strings into a new arena. Returns the probes it took.
+    private int rehash(int capacity) {
+        long[] oldKeys = keys, oldValues = values;
+        int[] oldHashes = hashes;
+        StringArena oldArena = arena;
+        arena = new StringArena();
+        allocate(capacity);
+        int probeC = 0;
+        for(int i = 0; i < oldKeys.length; i++) {
+            if(oldKeys[i] != EMPTY) {
+                probeC += 1 + insert(oldArena.copyTo(oldKeys[i], arena), oldArena.copyTo(oldValues[i], arena), oldHashes[i]);
+            }
+        }
+        return probeC;
+    }
+
+    // Rehashes the table in place if garbage takes up most of the arena. Returns the probes it took.
+    private int compactIfNeeded() {
+        long garbage = arena.getGarbageBytes();
+        return garbage > MIN_GARBAGE && 2 * garbage > arena.getAllocatedBytes() ? rehash(keys.length) : 0;
+    }
+
+    /* ******************************************/
+    /*  IMPLEMENT THE FOLLOWING PUBLIC METHODS: */
+    /* **************************************** */
+
+    /**
+     * Default constructor. Initializes the internal storage with a size equal to the starting value of
+     * {@link PowerOfTwoGenerator}. The arena gets its first slab with the first pair.
+     */
+    public ArenaHashTable() {
+        this(HashFunction.STRING_HASH_CODE);
+    }
+
+    /**
+     * Constructor with the function keys are hashed with. Initializes the internal storage like {@link #ArenaHashTable()}.
+     * @param hashFunction The {@link HashFunction} to hash every key with.
+     * @throws IllegalArgumentException if hashFunction is {@code null}.
+     */
+    public ArenaHashTable(HashFunction hashFunction) {
+        if(hashFunction == null) {
+            throw new IllegalArgumentException("Hash function cannot be null.");
+        }
+        this.hashFunction = hashFunction;
+        allocate(powerOfTwoGenerator.getCurrPower());
+    }
+
+    /**
+     * Returns the function keys are hashed with.
+     * @return The {@link HashFunction} given to the constructor, {@link HashFunction#STRING_HASH_CODE} by default.
+     */
+    public HashFunction getHashFunction() {
+        return hashFunction;
+    }
+
+    @Override
+    public Probes put(String key, String value) {
+        if (key == null || value == null) {
+            throw new IllegalArgumentException();
+        }
+        int h = hash(key);
+        int[] probes = {0};
+        int idx = find(key, h, probes);
+        if(idx >= 0) { // update in place.
+            arena.release(values[idx]);
+            values[idx] = arena.add(value);
+            return new Probes(value, probes[0] + compactIfNeeded());
+        }
+        if(count + 1 > 0.5 * keys.length) {
+            probes[0] += rehash(powerOfTwoGenerator.getNextPower());
+        }
+        probes[0] += insert(arena.add(key), arena.add(value), h);
+        count++;
+        return new Probes(value, probes[0]);
+    }
+
+    @Override
+    public Probes get(String key) {
+        if(key == null) {
+            return new Probes(null, 0);
+        }
+        int[] probes = {0};
+        int idx = find(key, hash(key), probes);
+        return new Probes(idx < 0 ? null : arena.get(values[idx]), probes[0]);
+    }
+
+    @Override
+    public Probes remove(String key) {
+        if(key == null) {
+            return new Probes(null, 0);
+        }
+        int[] probes = {0};
+        int hole = find(key, hash(key), probes);
+        if(hole < 0) {
+            return new Probes(null, probes[0]);
+        }
+        String value = arena.get(values[hole]);
+        arena.release(keys[hole]);
+        arena.release(values[hole]);
+        count--;
+        int mask = keys.length - 1;
+        for(int idx = (hole + 1) & mask; keys[idx] != EMPTY; idx = (idx + 1) & mask) { // shift the rest of the cluster back.
+            probes[0]++;
+            int home = home(hashes[idx]);
+            if(((idx - home) & mask) >= ((idx - hole) & mask)) { // home is not between hole and idx.
+                keys[hole] = keys[idx];
+                values[hole] = values[idx];
+                hashes[hole] = hashes[idx];
+                hole = idx;
+            }
+        }
+        keys[hole] = EMPTY;
+        probes[0]++; // probe that found the end of the cluster.
+        return new Probes(value, probes[0] + compactIfNeeded());
+    }
+
+    @Override
+    public boolean containsKey(String key) {
+        return key != null && find(key, hash(key), new int[1]) >= 0;
+    }
+
+    @Override
+    public boolean containsValue(String value) {
+        for(int i = 0; i < keys.length; i++) {
+            if(keys[i] != EMPTY && arena.equals(values[i], value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public int capacity() {
+        return keys.length;
+    }
+
+    /**
+     * Walks the full cells of the table. Keys and values are decoded from the arena, so every pair is a new {@link KVPair}.
+     * @return A {@link Spliterator} that splits the table in ranges of cells.
+     */
+    @Override
+    public Spliterator<KVPair> spliterator() {
+        StringArena strings = arena;
+        long[] k = keys, v = values;
+        return SlotSpliterator.ofCells(k.length, count, true, i -> k[i] == EMPTY ? null : new KVPair(strings.get(k[i]), strings.get(v[i])));
+    }
+
+    /**
+     * Returns the bytes the arena of this takes up, i.e the characters and headers of every key and value stored, and of
+     * those released since the last rehash.
+     * @return {@link StringArena#getAllocatedBytes()} of the current arena.
+     */
+    public long getArenaBytes() {
+        return arena.getAllocatedBytes();
+    }
+}
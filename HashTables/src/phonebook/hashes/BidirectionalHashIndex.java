@@ -0,0 +1,309 @@
+package phonebook.hashes;
+
+import phonebook.utils.KVPair;
+import phonebook.utils.PowerOfTwoGenerator;
+import phonebook.utils.Probes;
+
+import java.util.Arrays;
+import java.util.Spliterator;
+
+/**
+ * <p>{@link BidirectionalHashIndex} is a one-to-one map between keys and values which can be searched in <b>both</b>
+ * directions in amortized constant time, while storing every entry <b>once</b>. It is meant to replace the pair of
+ * {@link HashTable} instances of {@link phonebook.Phonebook}, which hold two {@link phonebook.utils.KVPair} objects, two
+ * table cells and two cached hash codes for every entry.</p>
+ *
+ * <p>The entries live in <em>records</em>: parallel arrays of keys, values and their hash codes, packed at the front of
+ * the arrays so that they need no tombstones or free list. Two <b>Linear Probing</b> tables of {@code int} cells, one
+ * searched by key and one by value, point at the records; a cell holds the index of its record plus one, and 0 when it is
+ * empty. Capacities are powers of two, following {@link CapacityPolicy#POWER_OF_TWO}, and both tables are kept at most
+ * 50&#37; full. Removals shift the rest of a cluster back instead of leaving tombstones behind, and move the last record
+ * into the freed one. Resizings re-link the records from their cached hash codes, without hashing the strings again.
+ * Keys and values are hashed with the same {@link HashFunction}, {@link HashFunction#STRING_HASH_CODE} by default.</p>
+ *
+ * <p>Both directions are exposed as {@link HashTable} views, {@link #forward()} and {@link #backward()}, which share
+ * the records, so that a pair inserted or removed through one view is inserted or removed from the other as well. To
+ * keep the map one-to-one, inserting a pair whose key or value is already in the index <b>replaces</b> the entries that
+ * held them.</p>
+ *
+ * @author Cheolhong Ahn
+ *
+ * @see HashTable
+ * @see CapacityPolicy
+ * @see PowerOfTwoGenerator
+ */
+public class BidirectionalHashIndex {
+
+    /* ********************************************************************/
+    /* ** INSERT ANY PRIVATE METHODS OR FIELDS YOU WANT TO USE HERE: ******/
+    /* ********************************************************************/
+
+    // One direction of the index: a field of the records and the probing table over it.
+    private final class Side {
+        String[] strings;   // field of every record.
+        int[] hashes;       // hash codes of strings.
+        int[] cells;        // record index + 1, 0 if empty.
+
+        // Searches the cells for s. Returns the cell, or -1 if the search failed, with the probes used added to probes[0].
+        int find(String s, int h, int[] probes) {
+            int mask = cells.length - 1;
+            int idx = CapacityPolicy.POWER_OF_TWO.indexOf(h, cells.length);
+            probes[0]++;
+            while(cells[idx] != 0) {
+                int r = cells[idx] - 1;
+                if(hashes[r] == h && strings[r].equals(s)) {
+                    return idx;
+                }
+                probes[0]++;
+                idx = (idx + 1) & mask;
+            }
+            return -1;
+        }
+
+        // Finds the cell which points at record r, which must be linked.
+        int cellOf(int r) {
+            int mask = cells.length - 1;
+            int idx = CapacityPolicy.POWER_OF_TWO.indexOf(hashes[r], cells.length);
+            while(cells[idx] != r + 1) {
+                idx = (idx + 1) & mask;
+            }
+            return idx;
+        }
+
+        // Points the first empty cell of the cluster of record r at it. Returns the probes it took.
+        int link(int r) {
+            int mask = cells.length - 1;
+            int idx = CapacityPolicy.POWER_OF_TWO.indexOf(hashes[r], cells.length);
+            int probeC = 1;
+            while(cells[idx] != 0) {
+                probeC++;
+                idx = (idx + 1) & mask;
+            }
+            cells[idx] = r + 1;
+            return probeC;
+        }
+
+        // Empties cell hole, then shifts back every cell of the rest of its cluster which may move closer to its home.
+        int unlink(int hole) {
+            int mask = cells.length - 1;
+            int probeC = 0;
+            for(int idx = (hole + 1) & mask; cells[idx] != 0; idx = (idx + 1) & mask) {
+                probeC++;
+                int home = CapacityPolicy.POWER_OF_TWO.indexOf(hashes[cells[idx] - 1], cells.length);
+                if(((idx - home) & mask) >= ((idx - hole) & mask)) { // home is not between hole and idx.
+                    cells[hole] = cells[idx];
+                    hole = idx;
+                }
+            }
+            cells[hole] = 0;
+            return probeC + 1; // probe that found the end of the cluster.
+        }
+
+        void allocate(int records, int capacity) {
+            strings = Arrays.copyOf(strings, records);
+            hashes = Arrays.copyOf(hashes, records);
+            cells = new int[capacity];
+            for(int r = 0; r < count; r++) {
+                link(r);
+            }
+        }
+    }
+
+    private final Side keys = new Side(), values = new Side();
+    private final PowerOfTwoGenerator powerOfTwoGenerator = new PowerOfTwoGenerator();
+    private final HashTable forward = new View(keys, values), backward = new View(values, keys);
+    private final HashFunction hashFunction;
+    private int count;
+
+    private int hash(String s) {
+        return CapacityPolicy.keyHash(hashFunction, s);
+    }
+
+    // Doubles both tables, if a new record would make them more than 50% full.
+    private void ensureRoom() {
+        if(count < keys.strings.length) {
+            return;
+        }
+        int capacity = powerOfTwoGenerator.getNextPower();
+        keys.allocate(capacity / 2, capacity);
+        values.allocate(capacity / 2, capacity);
+    }
+
+    // Unlinks record r from both tables and fills its place with the last record. Returns the probes it took.
+    private int removeRecord(int r) {
+        int probeC = keys.unlink(keys.cellOf(r)) + values.unlink(values.cellOf(r));
+        int last = --count;
+        if(r != last) { // re-point the cells of the last record at r.
+            keys.cells[keys.cellOf(last)] = r + 1;
+            values.cells[values.cellOf(last)] = r + 1;
+            keys.strings[r] = keys.strings[last];
+            keys.hashes[r] = keys.hashes[last];
+            values.strings[r] = values.strings[last];
+            values.hashes[r] = values.hashes[last];
+            probeC += 2;
+        }
+        keys.strings[last] = values.strings[last] = null;
+        return probeC;
+    }
+
+    // A direction of the index: searched by the strings of primary, returning the strings of secondary.
+    private final class View implements HashTable {
+        private final Side primary, secondary;
+
+        View(Side primary, Side secondary) {
+            this.primary = primary;
+            this.secondary = secondary;
+        }
+
+        @Override
+        public Probes put(String key, String value) {
+            if (key == null || value == null) {
+                throw new IllegalArgumentException();
+            }
+            int[] probes = {0};
+            int hk = hash(key), hv = hash(value);
+            int cell = primary.find(key, hk, probes);
+            if(cell >= 0) {
+                int r = primary.cells[cell] - 1;
+                if(secondary.strings[r].equals(value)) { // already there, e.g through the other view.
+                    return new Probes(value, probes[0]);
+                }
+                probes[0] += removeRecord(r);
+            }
+            cell = secondary.find(value, hv, probes);
+            if(cell >= 0) { // value belonged to another key.
+                probes[0] += removeRecord(secondary.cells[cell] - 1);
+            }
+            ensureRoom();
+            int r = count++;
+            primary.strings[r] = key;
+            primary.hashes[r] = hk;
+            secondary.strings[r] = value;
+            secondary.hashes[r] = hv;
+            probes[0] += primary.link(r) + secondary.link(r);
+            return new Probes(value, probes[0]);
+        }
+
+        @Override
+        public Probes get(String key) {
+            if(key == null) {
+                return new Probes(null, 0);
+            }
+            int[] probes = {0};
+            int cell = primary.find(key, hash(key), probes);
+            return new Probes(cell < 0 ? null : secondary.strings[primary.cells[cell] - 1], probes[0]);
+        }
+
+        @Override
+        public Probes remove(String key) {
+            if(key == null) {
+                return new Probes(null, 0);
+            }
+            int[] probes = {0};
+            int cell = primary.find(key, hash(key), probes);
+            if(cell < 0) {
+                return new Probes(null, probes[0]);
+            }
+            int r = primary.cells[cell] - 1;
+            String value = secondary.strings[r];
+            probes[0] += removeRecord(r);
+            return new Probes(value, probes[0]);
+        }
+
+        @Override
+        public boolean containsKey(String key) {
+            return key != null && primary.find(key, hash(key), new int[1]) >= 0;
+        }
+
+        /**
+         * Unlike the other {@link HashTable} instances, this only searches the other direction of the index, in
+         * amortized constant time.
+         */
+        @Override
+        public boolean containsValue(String value) {
+            return value != null && secondary.find(value, hash(value), new int[1]) >= 0;
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+
+        @Override
+        public int capacity() {
+            return primary.cells.length;
+        }
+
+        /**
+         * Walks the records of the index, which are kept contiguous, so every one of them is a pair of this view.
+         */
+        @Override
+        public Spliterator<KVPair> spliterator() {
+            String[] k = primary.strings, v = secondary.strings;
+            return SlotSpliterator.ofCells(count, count, true, r -> new KVPair(k[r], v[r]));
+        }
+    }
+
+    /* ******************************************/
+    /*  IMPLEMENT THE FOLLOWING PUBLIC METHODS: */
+    /* **************************************** */
+
+    /**
+     * Default constructor. Initializes both tables with a capacity equal to the starting value of
+     * {@link PowerOfTwoGenerator}.
+     */
+    public BidirectionalHashIndex() {
+        this(HashFunction.STRING_HASH_CODE);
+    }
+
+    /**
+     * Constructor with the function keys and values are hashed with. Initializes both tables like
+     * {@link #BidirectionalHashIndex()}.
+     * @param hashFunction The {@link HashFunction} to hash every key and value with.
+     * @throws IllegalArgumentException if hashFunction is {@code null}.
+     */
+    public BidirectionalHashIndex(HashFunction hashFunction) {
+        if(hashFunction == null) {
+            throw new IllegalArgumentException("Hash function cannot be null.");
+        }
+        this.hashFunction = hashFunction;
+        int capacity = powerOfTwoGenerator.getCurrPower();
+        for(Side side : new Side[] {keys, values}) {
+            side.strings = new String[capacity / 2];
+            side.hashes = new int[capacity / 2];
+            side.cells = new int[capacity];
+        }
+    }
+
+    /**
+     * Returns the view of this index searched by key.
+     * @return A {@link HashTable} from the keys to the values of this index.
+     */
+    public HashTable forward() {
+        return forward;
+    }
+
+    /**
+     * Returns the view of this index searched by value.
+     * @return A {@link HashTable} from the values to the keys of this index.
+     */
+    public HashTable backward() {
+        return backward;
+    }
+
+    /**
+     * Returns the number of entries of this index, which both views share.
+     * @return The number of entries stored in this.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns the function keys and values are hashed with.
+     * @return The {@link HashFunction} given to the constructor, {@link HashFunction#STRING_HASH_CODE} by default.
+     */
+    public HashFunction getHashFunction() {
+        return hashFunction;
+    }
+}
@@ -0,0 +1,72 @@
+package phonebook.hashes;
+
+import phonebook.utils.PowerOfTwoGenerator;
+import phonebook.utils.PrimeGenerator;
+
+/**
+ * <p>{@link CapacityPolicy} is an enum which provides named constants for the two ways our hash tables can choose their
+ * capacities and reduce hash codes to cells: </p>
+ * <ol>
+ *     <li><i>Prime</i>, the scheme talked about in class: capacities are primes provided by {@link PrimeGenerator}, and a
+ *     hash code is reduced to a cell with an integer modulo. The prime makes the modulo use every bit of the hash code, but
+ *     divisions are slow, and {@link PrimeGenerator} runs out of primes after a few thousand cells.</li>
+ *     <li><i>Power of two</i>, where capacities are powers of two provided by {@link PowerOfTwoGenerator}, and a hash code is
+ *     reduced to a cell by masking its low bits. Since the mask alone would throw away the high bits, which is where
+ *     {@link String#hashCode()} differs the most for keys with a common suffix, the hash code first goes through the
+ *     finalizer of MurmurHash3, which makes every bit of the result depend on every bit of its input. Capacities can grow
+ *     up to 2^30 cells.</li>
+ * </ol>
+ *
+ * @author Cheolhong Ahn
+ *
+ * @see PrimeGenerator
+ * @see PowerOfTwoGenerator
+ * @see OpenAddressingHashTable
+ * @see SeparateChainingHashTable
+ */
+public enum CapacityPolicy {
+    PRIME {
+        @Override
+        public int indexOf(int keyHash, int capacity) {
+            return keyHash % capacity;
+        }
+    },
+    POWER_OF_TWO {
+        @Override
+        public int indexOf(int keyHash, int capacity) {
+            return mix(keyHash) & (capacity - 1);
+        }
+    };
+
+    /**
+     * Reduces a non-negative hash code to a cell of a table with the given capacity.
+     * @param keyHash A hash code with its top bit masked.
+     * @param capacity The capacity of the table, which must follow this policy.
+     * @return An index between 0 (inclusive) and capacity (exclusive).
+     */
+    public abstract int indexOf(int keyHash, int capacity);
+
+    /**
+     * Hashes key with function and masks the top bit of the result, which is what every table reduces to a cell.
+     * @param function The {@link HashFunction} of the table.
+     * @param key A non-{@code null} key.
+     * @return A non-negative hash code, to be given to {@link #indexOf(int, int)}.
+     */
+    static int keyHash(HashFunction function, String key) {
+        return function.hash(key) & 0x7fffffff;
+    }
+
+    /**
+     * The 32-bit finalizer of MurmurHash3: an invertible function which spreads every bit of h over all bits of the result.
+     * @param h The hash code to mix.
+     * @return The mixed hash code.
+     */
+    public static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
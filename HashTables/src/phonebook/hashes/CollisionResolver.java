@@ -2,7 +2,7 @@ package phonebook.hashes;
 
 /**
  * <p>{@link CollisionResolver} is an enum which provides named constants for
- * four of the most widely used collision resolution techniques in hash tables: </p>
+ * five of the most widely used collision resolution techniques in hash tables: </p>
  * <ol>
  *     <li><i>Separate Chaining</i>, a simple collision resolver which allocates a linked list for every cell of the hash table.
  *          All keys hashed to the same cell are put in the back of a linked list which containsKVPair all same-hash keys. Enlarging this hash table
@@ -14,6 +14,9 @@ package phonebook.hashes;
  *     making searches destined to fail, fail <b>faster!</b></li>
  *     <li><i>Quadratic Probing</i>, a  modification of Linear Probing where collisions are resolved by having the key make quadratically - increased &quot; jumps &quot;
  *     until it finds an empty cell. See writeup for more details.</li>
+ *     <li><i>Cuckoo Hashing</i>, where every key can only be in one of two buckets of a few cells, chosen by two hash
+ *     functions, or in a small stash. Searches read at most two buckets, so their worst case is constant; insertions
+ *     make room by kicking keys out to their other bucket.</li>
  * </ol>
  *
  * <p><b>**** DO NOT EDIT THIS ENUM! ****** </b></p>
@@ -24,10 +27,12 @@ package phonebook.hashes;
  * @see SeparateChainingHashTable
  * @see LinearProbingHashTable
  * @see QuadraticProbingHashTable
+ * @see CuckooHashTable
  */
 public enum CollisionResolver {
     SEPARATE_CHAINING,
     LINEAR_PROBING,
     ORDERED_LINEAR_PROBING,
-    QUADRATIC_PROBING
+    QUADRATIC_PROBING,
+    CUCKOO_HASHING
 }
@@ -0,0 +1,472 @@
+package phonebook.hashes;
+
+import phonebook.utils.KVPair;
+import phonebook.utils.PowerOfTwoGenerator;
+import phonebook.utils.Probes;
+
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * <p>{@link ConcurrentOpenAddressingHashTable} is a <b>lock-free</b>, Openly Addressed {@link HashTable} which uses
+ * <b>Linear Probing</b> as its collision resolution strategy. It is meant for read-mostly workloads: {@link #get(String)}
+ * never locks, never writes and never waits for a writer, and writers only synchronize with each other through
+ * compare-and-set operations on individual cells.</p>
+ *
+ * <p>Every cell of the table is claimed <b>once</b> by a key, through a compare-and-set from {@code null}. After that, the
+ * key of the cell never changes, and only its value is updated, again through compare-and-set. A removed key keeps its
+ * cell with a special deleted value, which plays the role of the tombstone of {@link LinearProbingHashTable}, and which
+ * lets the key be inserted again in the same cell.</p>
+ *
+ * <p>Capacities are powers of two, and keys are spread over them as {@link CapacityPolicy#POWER_OF_TWO} does. When more
+ * than half of the cells of a table are claimed, a new table with four cells per live key is allocated and linked from
+ * the old one: removed keys are not copied, so a table mostly claimed by them is replaced by one that is no larger,
+ * rather than one twice as large.</p>
+ *
+ * <p>The old table is copied over <em>cooperatively</em>: every writer copies a chunk of cells before doing its own
+ * work, and writers that meet a cell still to be copied copy it themselves. Copying a cell first <em>freezes</em> its
+ * value, so that no write to the old table can be lost, then inserts it in the new table if the key isn't there yet,
+ * and finally marks it as moved. Empty cells are sealed, so that no key can be inserted behind the copy. Readers
+ * simply read through a frozen value, and follow moved cells and misses to the new table. Once all cells are copied, the
+ * new table replaces the old one.</p>
+ *
+ * <p>The only lock of this class is taken by the single writer that allocates the new table of a resizing.
+ * Like {@link ConcurrentSeparateChainingHashTable}, inserting a key that is already in the table <b>updates</b>
+ * its value.</p>
+ *
+ * @author Cheolhong Ahn
+ *
+ * @see HashTable
+ * @see LinearProbingHashTable
+ * @see ConcurrentSeparateChainingHashTable
+ * @see CollisionResolver
+ */
+public class ConcurrentOpenAddressingHashTable implements HashTable {
+
+    /* ********************************************************************/
+    /* ** INSERT ANY PRIVATE METHODS OR FIELDS YOU WANT TO USE HERE: ******/
+    /* ********************************************************************/
+
+    private static final Object DELETED = new Object(); // value of a removed key.
+    private static final Object MOVED = new Object();   // value of a cell copied to the next table.
+    private static final int COPY_CHUNK = 16;           // cells copied by every writer while a resizing is in progress.
+
+    // Value of a cell being copied to the next table. No write can succeed on it anymore.
+    private static final class Frozen {
+        final Object value;
+
+        Frozen(Object value){
+            this.value = value;
+        }
+    }
+
+    // A key claiming a cell. The value is a String, DELETED, a Frozen or MOVED.
+    private static final class Entry {
+        final String key;
+        final int hash;
+        volatile Object value;
+
+        Entry(String key, int hash, Object value){
+            this.key = key;
+            this.hash = hash;
+            this.value = value;
+        }
+
+        boolean casValue(Object expected, Object update){
+            return VALUE.compareAndSet(this, expected, update);
+        }
+    }
+
+    private static final AtomicReferenceFieldUpdater<Entry, Object> VALUE =
+            AtomicReferenceFieldUpdater.newUpdater(Entry.class, Object.class, "value");
+
+    // Claims an empty cell during a resizing, so that no key is inserted in it behind the copy.
+    private static final Entry SEALED = new Entry(null, -1, MOVED);
+
+    private static final class Table {
+        final AtomicReferenceArray<Entry> cells;
+        final AtomicInteger claimed = new AtomicInteger();   // cells claimed by keys, deleted ones included.
+        final AtomicInteger copyIndex = new AtomicInteger(); // first cell of the next chunk to copy.
+        final AtomicInteger copied = new AtomicInteger();    // cells whose copy is complete.
+        volatile Table next;
+
+        Table(int length){
+            cells = new AtomicReferenceArray<>(length);
+        }
+    }
+
+    private volatile Table current;
+    private static final AtomicReferenceFieldUpdater<ConcurrentOpenAddressingHashTable, Table> CURRENT =
+            AtomicReferenceFieldUpdater.newUpdater(ConcurrentOpenAddressingHashTable.class, Table.class, "current");
+    private final AtomicInteger count = new AtomicInteger();
+    private static final int MIN_CAPACITY = new PowerOfTwoGenerator().getCurrPower();
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private final HashFunction hashFunction;
+
+    private int hash(String key){
+        return CapacityPolicy.keyHash(hashFunction, key);
+    }
+
+    // Cell of a key in a table of the given length, a power of two, as CapacityPolicy.POWER_OF_TWO does it.
+    private static int home(int h, int length){
+        return CapacityPolicy.mix(h) & (length - 1);
+    }
+
+    // Length of the next table: four times as many cells as live keys, so that the
+    // next table is at most a quarter full after the copy. Tombstones are not copied, so a table claimed mostly by
+    // removed keys is replaced by one of the same length, or a shorter one.
+    private int nextLength(){
+        long target = 4L * (count.get() + 1);
+        int length = MIN_CAPACITY;
+        while(length < target && length < MAX_CAPACITY){
+            length <<= 1;
+        }
+        return length;
+    }
+
+    private static String liveValue(Object value){
+        return value instanceof String ? (String) value : null;
+    }
+
+    // Allocates the next table of t, unless someone else did. Resizings of older tables have to complete first,
+    // so that at most two tables are alive.
+    private void resize(Table t){
+        Table c;
+        while(t.next == null && (c = current) != t){ // finish the older resizing.
+            helpCopy(c, c.cells.length());
+            Thread.onSpinWait(); // chunks still owned by other writers.
+        }
+        synchronized(this){
+            if(t.next == null){
+                t.next = new Table(nextLength());
+            }
+        }
+    }
+
+    // Copies up to maxCells cells of t, a chunk at a time, and promotes the next table once the copy is complete.
+    private void helpCopy(Table t, int maxCells){
+        int length = t.cells.length();
+        while(maxCells > 0 && t.next != null && t.copied.get() < length){
+            int start = t.copyIndex.getAndAdd(COPY_CHUNK);
+            if(start >= length){ // every chunk is taken.
+                return;
+            }
+            int end = Math.min(start + COPY_CHUNK, length);
+            for(int i = start; i < end; i++){
+                copyCell(t, i);
+            }
+            maxCells -= end - start;
+            if(t.copied.addAndGet(end - start) == length){
+                // copy complete: from now on, everyone starts from the next table.
+                boolean promoted = CURRENT.compareAndSet(this, t, t.next);
+                assert promoted : "Promoted a table which was not the current one.";
+            }
+        }
+    }
+
+    // Copies cell idx of t to t.next. Idempotent, so any number of threads can copy the same cell.
+    private void copyCell(Table t, int idx){
+        Entry e = t.cells.get(idx);
+        if(e == null){
+            if(t.cells.compareAndSet(idx, null, SEALED)){
+                return;
+            }
+            e = t.cells.get(idx); // claimed by a key in the meantime.
+        }
+        if(e == SEALED){
+            return;
+        }
+        while(true){
+            Object value = e.value;
+            if(value == MOVED){
+                return;
+            }
+            if(value instanceof Frozen){ // someone else is copying, help them out.
+                install(t.next, e, ((Frozen) value).value);
+                e.casValue(value, MOVED);
+                return;
+            }
+            Frozen frozen = new Frozen(value);
+            if(e.casValue(value, frozen)){
+                install(t.next, e, value);
+                e.casValue(frozen, MOVED);
+                return;
+            }
+        }
+    }
+
+    // Inserts the copy of e in n, unless its key has been claimed there already: either an earlier copy of
+    // the same cell did it, or a writer wrote a newer value after the cell was moved.
+    private static void install(Table n, Entry e, Object value){
+        if(value == DELETED){
+            return;
+        }
+        int length = n.cells.length();
+        int idx = home(e.hash, length);
+        for(int i = 0; i < length; i++){
+            Entry other = n.cells.get(idx);
+            if(other == null){
+                if(n.cells.compareAndSet(idx, null, new Entry(e.key, e.hash, value))){
+                    n.claimed.incrementAndGet();
+                    return;
+                }
+                other = n.cells.get(idx);
+            }
+            if(other != SEALED && other.hash == e.hash && other.key.equals(e.key)){
+                return;
+            }
+            idx = (idx + 1) & (length - 1);
+        }
+        throw new AssertionError("No free cell to copy " + e.key + " into: resizing fell behind.");
+    }
+
+    // Writes value (a String, or DELETED for removals) for key and returns the previous live value, with the probes in probes[0].
+    private String write(String key, Object value, int[] probes){
+        int h = hash(key);
+        Table t = current;
+        outer:
+        while(true){
+            if(t.next != null){
+                helpCopy(t, COPY_CHUNK); // cooperative resizing.
+            }
+            int length = t.cells.length();
+            int idx = home(h, length);
+            for(int i = 0; i < length; i++){
+                probes[0]++;
+                Entry e = t.cells.get(idx);
+                if(e == null){
+                    if(value == DELETED){ // key not in t.
+                        if(t.next == null){
+                            return null;
+                        }
+                        t = t.next;
+                        continue outer;
+                    }
+                    if(t.next == null && t.claimed.get() + 1 > 0.5 * length){ // resize needed.
+                        resize(t);
+                    }
+                    if(t.next != null){ // key belongs to the next table. Seal the cell so that it can't land in t later.
+                        if(t.cells.compareAndSet(idx, null, SEALED) || t.cells.get(idx) == SEALED){
+                            t = t.next;
+                            continue outer;
+                        }
+                    } else if(t.cells.compareAndSet(idx, null, new Entry(key, h, value))){
+                        t.claimed.incrementAndGet();
+                        count.incrementAndGet();
+                        return null;
+                    }
+                    e = t.cells.get(idx); // lost the race for the cell, look at the winner.
+                }
+                if(e == SEALED){
+                    t = t.next;
+                    continue outer;
+                }
+                if(e.hash == h && e.key.equals(key)){
+                    while(true){
+                        Object old = e.value;
+                        if(old instanceof Frozen || old == MOVED){ // cell is being copied, write to the next table.
+                            copyCell(t, idx);
+                            t = t.next;
+                            continue outer;
+                        }
+                        if(old == DELETED && value == DELETED){
+                            return null;
+                        }
+                        if(e.casValue(old, value)){
+                            if(old == DELETED){
+                                count.incrementAndGet();
+                            }else if(value == DELETED){
+                                count.decrementAndGet();
+                            }
+                            return liveValue(old);
+                        }
+                    }
+                }
+                idx = (idx + 1) & (length - 1);
+            }
+            if(t.next == null){ // full scan, key not in t.
+                if(value == DELETED){
+                    return null;
+                }
+                resize(t); // every cell is claimed.
+            }
+            t = t.next;
+        }
+    }
+
+    /* ******************************************/
+    /*  IMPLEMENT THE FOLLOWING PUBLIC METHODS: */
+    /* **************************************** */
+
+    /**
+     * Default constructor. Initializes the internal storage with a size equal to the starting value of {@link PowerOfTwoGenerator}.
+     */
+    public ConcurrentOpenAddressingHashTable(){
+        this(HashFunction.STRING_HASH_CODE);
+    }
+
+    /**
+     * Constructor with the function keys are hashed with. Initializes the internal storage like
+     * {@link #ConcurrentOpenAddressingHashTable()}.
+     * @param hashFunction The {@link HashFunction} to hash every key with. It must be safe to call from several threads.
+     * @throws IllegalArgumentException if hashFunction is {@code null}.
+     */
+    public ConcurrentOpenAddressingHashTable(HashFunction hashFunction){
+        if(hashFunction == null){
+            throw new IllegalArgumentException("Hash function cannot be null.");
+        }
+        this.hashFunction = hashFunction;
+        current = new Table(MIN_CAPACITY);
+    }
+
+    /**
+     * Returns the function keys are hashed with.
+     * @return The {@link HashFunction} given to the constructor, {@link HashFunction#STRING_HASH_CODE} by default.
+     */
+    public HashFunction getHashFunction(){
+        return hashFunction;
+    }
+
+    /**
+     * Inserts the pair &lt;key, value&gt; into this, or updates the value of key if it is already in this.
+     * The container does <b>not</b> allow for {@code null} keys and values.
+     * @param key The record's key.
+     * @param value The record's value.
+     * @return The {@link phonebook.utils.Probes} with the value added and the number of probes it makes.
+     * @throws IllegalArgumentException if either argument is {@code null}.
+     */
+    @Override
+    public Probes put(String key, String value) {
+        if(key == null || value == null){
+            throw new IllegalArgumentException();
+        }
+        int[] probes = new int[1];
+        write(key, value, probes);
+        return new Probes(value, probes[0]);
+    }
+
+    /**
+     * Get the value associated with key. This method never blocks: it reads through cells that are being copied,
+     * and follows cells that have been copied to the next table.
+     * @param key The key to search for.
+     * @return The {@link phonebook.utils.Probes} with associated value and the number of probe used. If the key is {@code null}, return value {@code null}
+     * and 0 as number of probes; if the key dones't exists in the database, return {@code null} and the number of probes used.
+     */
+    @Override
+    public Probes get(String key) {
+        if(key == null){
+            return new Probes(null, 0);
+        }
+        int h = hash(key);
+        int probeC = 0;
+        Table t = current;
+        outer:
+        while(t != null){
+            int length = t.cells.length();
+            int idx = home(h, length);
+            for(int i = 0; i < length; i++){
+                probeC++;
+                Entry e = t.cells.get(idx);
+                if(e == null || e == SEALED){ // not in t.
+                    break;
+                }
+                if(e.hash == h && e.key.equals(key)){
+                    Object value = e.value;
+                    if(value == MOVED){
+                        t = t.next;
+                        continue outer;
+                    }
+                    if(value instanceof Frozen){ // nothing newer can exist until the cell is moved.
+                        value = ((Frozen) value).value;
+                    }
+                    return new Probes(liveValue(value), probeC);
+                }
+                idx = (idx + 1) & (length - 1);
+            }
+            t = t.next;
+        }
+        return new Probes(null, probeC);
+    }
+
+    @Override
+    public Probes remove(String key) {
+        if(key == null){
+            return new Probes(null, 0);
+        }
+        int[] probes = new int[1];
+        String old = write(key, DELETED, probes);
+        return new Probes(old, probes[0]);
+    }
+
+    @Override
+    public boolean containsKey(String key) {
+        return key != null && get(key).getValue() != null;
+    }
+
+    /**
+     * Queries this for value. Under concurrent modification, the answer is only an estimate.
+     * @param value The value to search for.
+     * @return {@code true} if value was found in this, {@code false} otherwise.
+     */
+    @Override
+    public boolean containsValue(String value) {
+        for(Table t = current; t != null; t = t.next){
+            for(int i = 0; i < t.cells.length(); i++){
+                Entry e = t.cells.get(i);
+                if(e == null || e == SEALED){
+                    continue;
+                }
+                Object v = e.value;
+                if(v instanceof Frozen){
+                    v = ((Frozen) v).value;
+                }
+                if(value.equals(v)){
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int size() {
+        return count.get();
+    }
+
+    /**
+     * Returns the length of the table that new keys are inserted into, i.e the larger table while a resizing is in progress.
+     * @return the number of cells in the table.
+     */
+    @Override
+    public int capacity() {
+        Table t = current;
+        while(t.next != null){
+            t = t.next;
+        }
+        return t.cells.length();
+    }
+
+    /**
+     * Walks the cells of the current table, without locking and without helping any resizing. The traversal is
+     * <em>weakly consistent</em>: it sees every key that was in the table when it started and was not removed since, with
+     * its value at the time it reads it, and may or may not see keys inserted since. The value of a key whose cell was
+     * moved to the next table is read from there.
+     * @return A {@link Spliterator} that splits the table in ranges of cells.
+     */
+    @Override
+    public Spliterator<KVPair> spliterator() {
+        AtomicReferenceArray<Entry> cells = current.cells;
+        return SlotSpliterator.ofCells(cells.length(), count.get(), false, i -> {
+            Entry e = cells.get(i);
+            if(e == null || e == SEALED){
+                return null;
+            }
+            Object value = e.value;
+            String live = value instanceof Frozen ? liveValue(((Frozen) value).value) : value == MOVED ? get(e.key).getValue() : liveValue(value);
+            return live == null ? null : new KVPair(e.key, live);
+        });
+    }
+}
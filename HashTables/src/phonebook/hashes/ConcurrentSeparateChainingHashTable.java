@@ -0,0 +1,361 @@
+package phonebook.hashes;
+
+import phonebook.utils.KVPair;
+import phonebook.utils.NoMorePrimesException;
+import phonebook.utils.PrimeGenerator;
+import phonebook.utils.Probes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**<p>{@link ConcurrentSeparateChainingHashTable} is a <b>thread-safe</b> {@link HashTable} that implements <b>Separate Chaining</b>
+ * as its collision resolution strategy. The table is split into a fixed number of <em>stripes</em>, every one of which owns
+ * its own array of collision chains, its own lock and its own {@link PrimeGenerator}. A key is always stored in the same stripe,
+ * so writers only contend with writers of the same stripe, and {@link #enlarge()} and {@link #shrink()} resize one stripe
+ * at a time instead of stopping the whole table. {@link #put(String, String)} also enlarges the stripe it inserts into,
+ * under the lock it already holds, once the stripe holds more pairs than it has chains, so that chains stay short
+ * without anyone calling {@link #enlarge()}, up to the largest prime of {@link PrimeGenerator} per stripe.</p>
+ *
+ * <p>Reads never lock. The nodes of a chain have {@code final} keys and links, so a chain can only change by publishing a
+ * new head (insertions) or by re-creating the nodes in front of a removed one (deletions). A reader therefore always walks
+ * a consistent chain, even while a writer of the same stripe is busy. Resizings build the chains of a stripe in a new array
+ * and then publish it.</p>
+ *
+ * <p>Contrary to {@link SeparateChainingHashTable}, inserting a key that is already in the table <b>updates</b> its value,
+ * since two threads inserting the same key would otherwise race to create duplicates.</p>
+ *
+ * @author Cheolhong Ahn
+ * @see HashTable
+ * @see SeparateChainingHashTable
+ * @see CollisionResolver
+ */
+public class ConcurrentSeparateChainingHashTable implements HashTable{
+
+    /* ********************************************************************/
+    /* ** INSERT ANY PRIVATE METHODS OR FIELDS YOU WANT TO USE HERE: ******/
+    /* ********************************************************************/
+
+    private static final int DEFAULT_STRIPES = 16;
+
+    // Immutable except for the value, which can be updated in place.
+    private static final class Node {
+        final String key;
+        volatile String value;
+        final Node next;
+
+        Node(String key, String value, Node next){
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+    }
+
+    // A lock together with the collision chains it guards. Only buckets is read without holding the lock.
+    private static final class Stripe {
+        final ReentrantLock lock = new ReentrantLock();
+        volatile AtomicReferenceArray<Node> buckets;
+        volatile int count;
+        final PrimeGenerator primeGenerator = new PrimeGenerator();
+        boolean largest; // primeGenerator has no larger prime, so put stops growing the stripe.
+
+        Stripe(){
+            buckets = new AtomicReferenceArray<>(primeGenerator.getCurrPrime());
+        }
+    }
+
+    private final Stripe[] stripes;
+
+    private final HashFunction hashFunction;
+
+    private int hash(String key){
+        return CapacityPolicy.keyHash(hashFunction, key);
+    }
+
+    private Stripe stripeFor(int h){
+        return stripes[h % stripes.length];
+    }
+
+    // Bucket of a hash code within its stripe. The stripe index is divided away so that it doesn't skew the bucket index.
+    private int bucketFor(int h, int buckets){
+        return (h / stripes.length) % buckets;
+    }
+
+    // Rebuilds the chains of stripe into an array of the given length. The caller must hold the stripe's lock.
+    private void rehash(Stripe stripe, int newLength){
+        AtomicReferenceArray<Node> old = stripe.buckets;
+        AtomicReferenceArray<Node> buckets = new AtomicReferenceArray<>(newLength);
+        for(int i = 0; i < old.length(); i++){
+            for(Node n = old.get(i); n != null; n = n.next){
+                int idx = bucketFor(hash(n.key), newLength);
+                buckets.set(idx, new Node(n.key, n.value, buckets.get(idx)));
+            }
+        }
+        stripe.buckets = buckets; // readers switch over from here on.
+    }
+
+    // Rehashes stripe into the next prime of its generator, unless it has none left. The caller must hold the stripe's lock.
+    private void grow(Stripe stripe){
+        if(stripe.largest){
+            return;
+        }
+        try {
+            rehash(stripe, stripe.primeGenerator.getNextPrime());
+        } catch(NoMorePrimesException ignored){
+            stripe.largest = true; // chains get longer from now on, but every key still fits.
+        }
+    }
+
+    /* **************************************** */
+    /*  IMPLEMENT THE FOLLOWING PUBLIC METHODS:  */
+    /* **************************************** */
+
+    /**
+     *  Default constructor. Initializes 16 stripes, every one of them with a size equal to the default of {@link PrimeGenerator}.
+     */
+    public ConcurrentSeparateChainingHashTable(){
+        this(DEFAULT_STRIPES);
+    }
+
+    /**
+     * Constructor with the number of stripes. More stripes allow for more writers to proceed in parallel.
+     * @param numStripes The number of independently locked stripes of this.
+     * @throws IllegalArgumentException if numStripes is not positive.
+     */
+    public ConcurrentSeparateChainingHashTable(int numStripes){
+        this(numStripes, HashFunction.STRING_HASH_CODE);
+    }
+
+    /**
+     * Constructor with the number of stripes and the function keys are hashed with.
+     * @param numStripes The number of independently locked stripes of this.
+     * @param hashFunction The {@link HashFunction} to hash every key with. It must be safe to call from several threads.
+     * @throws IllegalArgumentException if numStripes is not positive or hashFunction is {@code null}.
+     */
+    public ConcurrentSeparateChainingHashTable(int numStripes, HashFunction hashFunction){
+        if(hashFunction == null){
+            throw new IllegalArgumentException("Hash function cannot be null.");
+        }
+        this.hashFunction = hashFunction;
+        if(numStripes <= 0){
+            throw new IllegalArgumentException("Number of stripes must be positive, got " + numStripes + ".");
+        }
+        stripes = new Stripe[numStripes];
+        for(int i = 0; i < numStripes; i++){
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Returns the function keys are hashed with.
+     * @return The {@link HashFunction} given to the constructor, {@link HashFunction#STRING_HASH_CODE} by default.
+     */
+    public HashFunction getHashFunction(){
+        return hashFunction;
+    }
+
+    @Override
+    public Probes put(String key, String value) {
+        if (key == null || value == null) {
+            throw new IllegalArgumentException();
+        }
+        int h = hash(key);
+        Stripe stripe = stripeFor(h);
+        stripe.lock.lock();
+        try {
+            AtomicReferenceArray<Node> buckets = stripe.buckets;
+            int idx = bucketFor(h, buckets.length());
+            Node head = buckets.get(idx);
+            int probeC = 1;
+            for(Node n = head; n != null; n = n.next){
+                if(n.key.equals(key)){ // update in place.
+                    n.value = value;
+                    return new Probes(value, probeC);
+                }
+                probeC++;
+            }
+            buckets.set(idx, new Node(key, value, head)); // publish new head.
+            stripe.count++;
+            if(stripe.count > buckets.length()){ // more pairs than chains: grow this stripe only.
+                grow(stripe);
+            }
+            return new Probes(value, probeC);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    @Override
+    public Probes get(String key) {
+        if(key == null) {
+            return new Probes(null, 0);
+        }
+        int h = hash(key);
+        AtomicReferenceArray<Node> buckets = stripeFor(h).buckets;
+        int probeC = 1;
+        for(Node n = buckets.get(bucketFor(h, buckets.length())); n != null; n = n.next){
+            if(n.key.equals(key)){
+                return new Probes(n.value, probeC);
+            }
+            probeC++;
+        }
+        return new Probes(null, probeC);
+    }
+
+    @Override
+    public Probes remove(String key) {
+        if(key == null) {
+            return new Probes(null, 0);
+        }
+        int h = hash(key);
+        Stripe stripe = stripeFor(h);
+        stripe.lock.lock();
+        try {
+            AtomicReferenceArray<Node> buckets = stripe.buckets;
+            int idx = bucketFor(h, buckets.length());
+            Node head = buckets.get(idx);
+            int probeC = 1;
+            Node target = head;
+            while(target != null && !target.key.equals(key)){
+                target = target.next;
+                probeC++;
+            }
+            if(target == null){ // search failed.
+                return new Probes(null, probeC);
+            }
+            Node newHead = target.next; // nodes are immutable, so the ones in front of target are copied.
+            for(Node n = head; n != target; n = n.next){
+                newHead = new Node(n.key, n.value, newHead);
+            }
+            buckets.set(idx, newHead);
+            stripe.count--;
+            return new Probes(target.value, probeC);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean containsKey(String key) {
+        return key != null && get(key).getValue() != null;
+    }
+
+    @Override
+    public boolean containsValue(String value) {
+        for(Stripe stripe : stripes){
+            AtomicReferenceArray<Node> buckets = stripe.buckets;
+            for(int i = 0; i < buckets.length(); i++){
+                for(Node n = buckets.get(i); n != null; n = n.next){
+                    if(n.value.equals(value)){
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of records in this {@link HashTable}. Under concurrent modification, the result is only an estimate,
+     * since stripes are counted one after the other.
+     * @return The number of records stored in this.
+     */
+    @Override
+    public int size() {
+        int size = 0;
+        for(Stripe stripe : stripes){
+            size += stripe.count;
+        }
+        return size;
+    }
+
+    /**
+     * Returns the total number of collision chains over all stripes.
+     * @return the number of cells in the table.
+     */
+    @Override
+    public int capacity() {
+        int capacity = 0;
+        for(Stripe stripe : stripes){
+            capacity += stripe.buckets.length();
+        }
+        return capacity;
+    }
+
+    /**
+     * Walks the chains of every stripe, as published when this method is called, without locking. The traversal is
+     * <em>weakly consistent</em>: chains are never modified in place, so it sees every key of a chain at most once, with
+     * its value at the time it reads it, and may or may not see the changes made to the table since.
+     * @return A {@link Spliterator} that splits the chains of all stripes in ranges.
+     */
+    @Override
+    public Spliterator<KVPair> spliterator() {
+        List<AtomicReferenceArray<Node>> chains = new ArrayList<>(stripes.length);
+        int[] starts = new int[stripes.length + 1]; // first slot of every stripe.
+        for(int i = 0; i < stripes.length; i++){
+            chains.add(stripes[i].buckets);
+            starts[i + 1] = starts[i] + chains.get(i).length();
+        }
+        return SlotSpliterator.ofChains(starts[stripes.length], size(), false, slot -> {
+            int i = Arrays.binarySearch(starts, slot);
+            i = i >= 0 ? i : -i - 2; // the stripe whose range holds slot; empty stripes don't exist.
+            Node head = chains.get(i).get(slot - starts[i]);
+            return new Iterator<KVPair>() {
+                private Node n = head;
+
+                @Override
+                public boolean hasNext() {
+                    return n != null;
+                }
+
+                @Override
+                public KVPair next() {
+                    if(n == null){
+                        throw new NoSuchElementException();
+                    }
+                    KVPair pair = new KVPair(n.key, n.value);
+                    n = n.next;
+                    return pair;
+                }
+            };
+        });
+    }
+
+    /**
+     * Enlarges this hash table, one stripe at a time: while a stripe is being rehashed, only writers of that stripe wait,
+     * and readers keep using its old chains until the new ones are published. Every stripe gets the next prime of its
+     * {@link PrimeGenerator} as its new size, unless it already has the largest one.
+     * @see PrimeGenerator#getNextPrime()
+     */
+    public void enlarge() {
+        for(Stripe stripe : stripes){
+            stripe.lock.lock();
+            try {
+                grow(stripe);
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Shrinks this hash table, one stripe at a time, in the same manner as {@link #enlarge()}.
+     * @see PrimeGenerator#getPreviousPrime()
+     */
+    public void shrink(){
+        for(Stripe stripe : stripes){
+            stripe.lock.lock();
+            try {
+                rehash(stripe, stripe.primeGenerator.getPreviousPrime());
+                stripe.largest = false;
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,447 @@
+package phonebook.hashes;
+
+import phonebook.utils.KVPair;
+import phonebook.utils.PowerOfTwoGenerator;
+import phonebook.utils.Probes;
+
+import java.util.Spliterator;
+
+/**
+ * <p>{@link CuckooHashTable} is an Openly Addressed {@link HashTable} implemented with <b>bucketized Cuckoo Hashing</b>
+ * as its collision resolution strategy. The table is split into buckets of {@link #SLOTS} consecutive cells, and every
+ * key can only live in one of <b>two</b> buckets, chosen by two independent hash functions, or in a small
+ * <em>stash</em> of {@link #STASH} cells on the side. A search therefore reads at most two buckets and the stash, no
+ * matter how full the table is or how keys collide: unlike the other resolvers, the worst case of a search is constant.
+ * Since the cached hash codes of a bucket take 16 bytes, the scan of a bucket stays within one cache line; only the
+ * cells whose hash code matches are dereferenced.</p>
+ *
+ * <p>All of the work happens on insertion. When both buckets of a key are full, the key takes the cell of one of their
+ * keys, picked at random, which is <em>kicked out</em> to its other bucket, possibly kicking out another key, and so
+ * on. If this goes on for {@link #MAX_KICKS} steps, the homeless key goes to the stash, and if the stash is full as well
+ * the kicks are undone and the table is rehashed into twice as many buckets. With two choices of buckets of four cells,
+ * the table can be kept 90&#37; full, against 50&#37; for the other open addressing tables.</p>
+ *
+ * <p>Keys with equal hash codes always share their buckets, so no more than {@code 2 * SLOTS + STASH} of them fit in the
+ * table, whatever its capacity. A rehash therefore gives up on more buckets after {@link #MAX_REHASHES} tries, and
+ * hashes every key again with a {@link HashFunction#randomlySeeded() randomly seeded} {@link HashFunction}, which
+ * replaces the one of {@link #setHashFunction(HashFunction)}. If {@link #MAX_REHASHES} seeds fail as well, the operation
+ * throws an {@link IllegalStateException} and leaves the table as it was.</p>
+ *
+ * <p>Capacities always follow {@link CapacityPolicy#POWER_OF_TWO}. Deletions simply empty the cell of the key, since no
+ * probe sequence goes through it, so there is no soft deletion and no tombstone. Like
+ * {@link ConcurrentSeparateChainingHashTable}, inserting a key that is already in the table <b>updates</b> its value,
+ * since a key can only be in one of its two buckets. The {@link Probes} of an operation count the buckets and stash
+ * cells it reads, and the cells it moves pairs to.</p>
+ *
+ * @author Cheolhong Ahn
+ *
+ * @see HashTable
+ * @see CapacityPolicy
+ * @see CollisionResolver
+ */
+public class CuckooHashTable extends OpenAddressingHashTable {
+
+	/**
+	 * The number of cells of a bucket.
+	 */
+	public static final int SLOTS = 4;
+
+	/**
+	 * The number of cells of the stash.
+	 */
+	public static final int STASH = 4;
+
+	/**
+	 * The number of keys an insertion can kick out before it gives up and uses the stash.
+	 */
+	public static final int MAX_KICKS = 128;
+
+	/**
+	 * The number of times a rehash doubles the number of buckets, and then tries new hash functions, before it gives up.
+	 */
+	public static final int MAX_REHASHES = 4;
+
+	/* ********************************************************************/
+	/* ** INSERT ANY PRIVATE METHODS OR FIELDS YOU WANT TO USE HERE: ******/
+	/* ********************************************************************/
+	private static final double MAX_LOAD = 0.9;
+	private static final int SECOND_SEED = 0x9e3779b9; //makes the second hash independent of the first.
+
+	private KVPair[] stash = new KVPair[STASH];
+	private int[] stashHashCodes = new int[STASH];
+	private int stashCount;
+	private int random = 0x2545f491; //xorshift state for picking victims.
+
+	//first bucket of a key.
+	private int bucket1(int h){
+		return CapacityPolicy.mix(h) & (this.table.length / SLOTS - 1);
+	}
+
+	//second bucket of a key.
+	private int bucket2(int h){
+		return CapacityPolicy.mix(h ^ SECOND_SEED) & (this.table.length / SLOTS - 1);
+	}
+
+	//searches bucket b for key. Returns its cell, or -1.
+	private int findIn(int b, String key, int h){
+		for(int idx = b * SLOTS; idx < (b + 1) * SLOTS; idx++){
+			if(this.table[idx] != null && this.matches(idx, key, h)){
+				return idx;
+			}
+		}
+		return -1;
+	}
+
+	//searches the stash for key. Returns its stash cell, or -1.
+	private int findInStash(String key, int h){
+		for(int i = 0; i < this.stashCount; i++){
+			if(this.stashHashCodes[i] == h && this.stash[i].getKey().equals(key)){
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	//stores pair in a free cell of bucket b, if there is one.
+	private boolean storeIn(int b, KVPair pair, int h){
+		for(int idx = b * SLOTS; idx < (b + 1) * SLOTS; idx++){
+			if(this.table[idx] == null){
+				this.store(idx, pair, h);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private int nextRandom(){
+		this.random ^= this.random << 13;
+		this.random ^= this.random >>> 17;
+		this.random ^= this.random << 5;
+		return this.random;
+	}
+
+	//places a pair whose key is not in the table, kicking keys out if needed, and adds the probes it took to probes[0].
+	//If neither the table nor the stash has room, the kicks are undone and it returns false: the table is left as it was.
+	private boolean place(KVPair pair, int h, int[] probes){
+		int b = this.bucket1(h);
+		probes[0] ++;
+		if(this.storeIn(b, pair, h)){
+			this.count ++;
+			return true;
+		}
+		b = this.bucket2(h);
+		probes[0] ++;
+		int[] path = new int[MAX_KICKS]; //cells pairs were kicked out of, in order.
+		for(int kick = 0; kick < MAX_KICKS; kick++){
+			if(this.storeIn(b, pair, h)){
+				this.count ++;
+				return true;
+			}
+			int victim = b * SLOTS + (this.nextRandom() >>> 1) % SLOTS; //bucket b is full, take a random cell.
+			path[kick] = victim;
+			KVPair kicked = this.table[victim];
+			int kickedHash = this.hashCodes[victim];
+			this.store(victim, pair, h);
+			pair = kicked;
+			h = kickedHash;
+			b = (b == this.bucket1(h)) ? this.bucket2(h) : this.bucket1(h); //the other bucket of the kicked pair.
+			probes[0] ++;
+		}
+		if(this.stashCount < STASH){ //give up on pair, it stays in the stash until it finds a bucket.
+			this.stash[this.stashCount] = pair;
+			this.stashHashCodes[this.stashCount ++] = h;
+			this.count ++;
+			probes[0] ++;
+			return true;
+		}
+		for(int kick = MAX_KICKS - 1; kick >= 0; kick--){ //put every kicked pair back, last one first.
+			int victim = path[kick];
+			KVPair back = this.table[victim];
+			int backHash = this.hashCodes[victim];
+			this.store(victim, pair, h);
+			pair = back;
+			h = backHash;
+		}
+		probes[0] += MAX_KICKS;
+		return false;
+	}
+
+	//inserts a pair whose key is not in the table, rebuilding the table around it if it finds no room. Returns the probes it took.
+	private int insert(KVPair pair, int h){
+		int[] probes = {0};
+		if(!this.place(pair, h, probes)){
+			probes[0] += this.rebuild(this.nextCapacity(), pair, h);
+		}
+		return probes[0];
+	}
+
+	//moves every pair, and extra if it is not null, into a new table of the given capacity. If they do not fit, tries
+	//twice as many buckets up to MAX_REHASHES times, and then as many new seeded hash functions. If none of them work,
+	//leaves the table as it was and throws. Returns the probes it took.
+	private int rebuild(int capacity, KVPair extra, int extraHash){
+		KVPair[] oldTable = this.table;
+		int[] oldHashCodes = this.hashCodes;
+		KVPair[] oldStash = this.stash;
+		int[] oldStashHashCodes = this.stashHashCodes;
+		int oldStashCount = this.stashCount;
+		int oldCount = this.count;
+		HashFunction oldFunction = this.hashFunction;
+		int n = oldCount + (extra == null ? 0 : 1);
+		KVPair[] pairs = new KVPair[n];
+		int[] hashes = new int[n];
+		int k = 0;
+		for(int i = 0; i < oldTable.length; i++){
+			if(oldTable[i] != null){
+				pairs[k] = oldTable[i];
+				hashes[k ++] = oldHashCodes[i];
+			}
+		}
+		for(int i = 0; i < oldStashCount; i++){
+			pairs[k] = oldStash[i];
+			hashes[k ++] = oldStashHashCodes[i];
+		}
+		if(extra != null){
+			pairs[k] = extra;
+			hashes[k] = extraHash;
+		}
+		int[] probes = {0};
+		for(int attempt = 0; attempt < 2 * MAX_REHASHES; attempt++){
+			if(attempt >= MAX_REHASHES){ //more buckets do not separate keys with equal hash codes, hash them differently.
+				this.hashFunction = HashFunction.randomlySeeded();
+				for(int i = 0; i < n; i++){
+					hashes[i] = this.keyHash(pairs[i].getKey());
+				}
+			}else if(attempt > 0){
+				capacity = this.nextCapacity();
+			}
+			this.allocate(capacity);
+			this.stash = new KVPair[STASH];
+			this.stashHashCodes = new int[STASH];
+			this.stashCount = 0;
+			this.count = 0;
+			boolean placed = true;
+			for(int i = 0; i < n && placed; i++){
+				probes[0] ++;
+				placed = this.place(pairs[i], hashes[i], probes);
+			}
+			if(placed){
+				return probes[0];
+			}
+		}
+		this.table = oldTable; //give up, nothing was lost.
+		this.hashCodes = oldHashCodes;
+		this.stash = oldStash;
+		this.stashHashCodes = oldStashHashCodes;
+		this.stashCount = oldStashCount;
+		this.count = oldCount;
+		this.hashFunction = oldFunction;
+		while(this.powerOfTwoGenerator.getCurrPower() > oldTable.length){
+			this.powerOfTwoGenerator.getPreviousPower();
+		}
+		while(this.powerOfTwoGenerator.getCurrPower() < oldTable.length){
+			this.powerOfTwoGenerator.getNextPower();
+		}
+		throw new IllegalStateException("Could not place " + n + " keys in a Cuckoo table after " + 2 * MAX_REHASHES + " rehashes.");
+	}
+
+	//moves the pairs of the stash back into the table when one of their buckets has room.
+	private int drainStash(){
+		int probeC = 0;
+		for(int i = this.stashCount - 1; i >= 0; i--){
+			KVPair pair = this.stash[i];
+			int h = this.stashHashCodes[i];
+			probeC += 2;
+			if(this.storeIn(this.bucket1(h), pair, h) || this.storeIn(this.bucket2(h), pair, h)){
+				this.removeFromStash(i);
+			}
+		}
+		return probeC;
+	}
+
+	private void removeFromStash(int i){
+		this.stashCount --;
+		this.stash[i] = this.stash[this.stashCount]; //fill the hole with the last pair.
+		this.stashHashCodes[i] = this.stashHashCodes[this.stashCount];
+		this.stash[this.stashCount] = null;
+	}
+
+	/**
+	 * Moves every pair into a new table of the given capacity, or a larger one if they do not fit.
+	 * @param capacity The length of the new table, a power of two.
+	 * @return The number of probes it took.
+	 * @throws IllegalStateException if the pairs fit in no table after {@link #MAX_REHASHES} larger capacities and as
+	 * many new hash functions.
+	 */
+	@Override
+	protected int rehash(int capacity){
+		return this.rebuild(capacity, null, 0);
+	}
+
+	/**
+	 * Returns the load factor above which {@link #put(String, String)} resizes the table.
+	 * @return 0.9, since every key has two buckets of four cells to choose from.
+	 */
+	@Override
+	protected double maxLoadFactor(){
+		return MAX_LOAD;
+	}
+
+	/* ******************************************/
+	/*  IMPLEMENT THE FOLLOWING PUBLIC METHODS: */
+	/* **************************************** */
+
+	/**
+	 * Default constructor. Initializes the internal storage with a size equal to the starting value of
+	 * {@link PowerOfTwoGenerator}, i.e two buckets.
+	 */
+	public CuckooHashTable(){
+		this.count = 0;
+		this.initCapacity(CapacityPolicy.POWER_OF_TWO);
+	}
+
+	/**
+	 * Inserts the pair &lt;key, value&gt; into this, or updates the value of key if it is already in this. The container
+	 * should <b>not</b> allow for {@code null} keys and values. When the table is more than 90&#37; full, or when the
+	 * pair finds no room in the table nor in the stash, it is rehashed into twice as many buckets.
+	 *
+	 * @param key   The record's key.
+	 * @param value The record's value.
+	 * @return The {@link phonebook.utils.Probes} with the value added and the number of probes it makes.
+	 * @throws IllegalArgumentException if either argument is {@code null}.
+	 * @throws IllegalStateException if no rehash finds room for the pair; the table is then left as it was.
+	 */
+	@Override
+	public Probes put(String key, String value) {
+		if (key == null || value == null) { // should not allow for null key, value
+			throw new IllegalArgumentException();
+		}
+		int h = this.keyHash(key);
+		int idx = this.findIn(this.bucket1(h), key, h);
+		int probeC = 1;
+		if(idx < 0){
+			idx = this.findIn(this.bucket2(h), key, h);
+			probeC ++;
+		}
+		if(idx >= 0){ //update existing
+			this.table[idx].setValue(value);
+			return new Probes(value, probeC);
+		}
+		int stashIdx = this.findInStash(key, h);
+		probeC += this.stashCount;
+		if(stashIdx >= 0){
+			this.stash[stashIdx].setValue(value);
+			return new Probes(value, probeC);
+		}
+		if(this.count + 1 > MAX_LOAD * this.table.length){ // resize needed.
+			probeC += this.rehash(this.nextCapacity());
+		}
+		probeC += this.insert(new KVPair(key, value), h);
+		return new Probes(value, probeC);
+	}
+
+	@Override
+	public Probes get(String key) {
+		if(key == null) {  // key is null
+			return new Probes(null, 0);
+		}
+		int h = this.keyHash(key);
+		int idx = this.findIn(this.bucket1(h), key, h);
+		if(idx >= 0){
+			return new Probes(this.table[idx].getValue(), 1);
+		}
+		idx = this.findIn(this.bucket2(h), key, h);
+		if(idx >= 0){
+			return new Probes(this.table[idx].getValue(), 2);
+		}
+		int stashIdx = this.findInStash(key, h);
+		return new Probes(stashIdx < 0 ? null : this.stash[stashIdx].getValue(), 2 + this.stashCount);
+	}
+
+	/**
+	 * <b>Return</b> the value associated with key in the {@link HashTable}, and <b>remove</b> the {@link phonebook.utils.KVPair} from the table.
+	 * Pairs waiting in the stash are moved into the bucket the removal frees, if it is one of theirs.
+	 *
+	 * @param key The key to search for.
+	 * @return The {@link phonebook.utils.Probes} with associated value and the number of probe used. If the key is {@code null}, return value {@code null}
+	 * and 0 as number of probes; if the key doesn't exist in the database, return {@code null} and the number of probes used.
+	 */
+	@Override
+	public Probes remove(String key) {
+		if (key == null) {  // key is null
+			return new Probes(null, 0);
+		}
+		int h = this.keyHash(key);
+		int idx = this.findIn(this.bucket1(h), key, h);
+		int probeC = 1;
+		if(idx < 0){
+			idx = this.findIn(this.bucket2(h), key, h);
+			probeC ++;
+		}
+		if(idx >= 0){
+			String retVal = this.table[idx].getValue();
+			this.table[idx] = null;
+			this.count --;
+			if(this.stashCount > 0){
+				probeC += this.drainStash();
+			}
+			probeC += this.shrinkIfNeeded(); //give memory back if the table got too empty.
+			return new Probes(retVal, probeC);
+		}
+		int stashIdx = this.findInStash(key, h);
+		probeC += this.stashCount;
+		if(stashIdx < 0){
+			return new Probes(null, probeC);
+		}
+		String retVal = this.stash[stashIdx].getValue();
+		this.removeFromStash(stashIdx);
+		this.count --;
+		probeC += this.shrinkIfNeeded(); //give memory back if the table got too empty.
+		return new Probes(retVal, probeC);
+	}
+
+	@Override
+	public boolean containsKey(String key) {
+		return this.get(key).getValue() != null;
+	}
+
+	@Override
+	public boolean containsValue(String value) {
+		for(int i=0; i < this.table.length; i++) {
+			if(this.table[i] != null && this.table[i].getValue().equals(value))
+				return true;
+		}
+		for(int i=0; i < this.stashCount; i++) {
+			if(this.stash[i].getValue().equals(value))
+				return true;
+		}
+		return false;
+	}
+
+	@Override
+	public int size() {
+		return this.count;
+	}
+
+	@Override
+	public int capacity() {
+		return this.table.length;
+	}
+
+	/**
+	 * Walks the cells of the table, then the stash.
+	 * @return A {@link Spliterator} that splits the table in ranges of cells.
+	 */
+	@Override
+	public Spliterator<KVPair> spliterator() {
+		KVPair[] cells = this.table, stashed = this.stash;
+		return SlotSpliterator.ofCells(cells.length + STASH, this.count, true, i -> i < cells.length ? cells[i] : stashed[i - cells.length]);
+	}
+
+	/**
+	 * Returns the number of pairs waiting in the stash, for which neither of their buckets had room.
+	 * @return A number between 0 and {@link #STASH}.
+	 */
+	public int getStashSize() {
+		return this.stashCount;
+	}
+}
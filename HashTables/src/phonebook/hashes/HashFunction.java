@@ -0,0 +1,91 @@
+package phonebook.hashes;
+
+import java.security.SecureRandom;
+
+/**
+ * <p>{@link HashFunction} is the function an {@link OpenAddressingHashTable} or a {@link SeparateChainingHashTable} hashes
+ * its keys with. The tables mask the top bit of its result, and reduce it to a cell according to their
+ * {@link CapacityPolicy}.</p>
+ *
+ * <p>The default, {@link #STRING_HASH_CODE}, is {@link String#hashCode()}: it is cached by every {@link String}, so it is
+ * only ever computed once per key, but it is a plain polynomial of the characters, the same for everyone. Keys with long
+ * common prefixes, like phone numbers, only differ in the last few terms, and it takes no effort to craft many keys with
+ * the same hash code (e.g all concatenations of &quot;Aa&quot; and &quot;BB&quot;), which turns every search for them
+ * into a linear scan. The <em>seeded</em> functions of {@link #seeded(long)} mix every character of the key with a
+ * 64-bit seed, in the style of wyhash: the key is read 4 characters at a time into {@code long}s, and every pair of them
+ * is folded into the state with a full 64x64 to 128-bit multiplication. The seed enters both of its operands, so that no
+ * block of characters zeroes it whatever the seed. Hash codes of a seeded function cannot be
+ * predicted without its seed, so a {@link #randomlySeeded()} function makes flooding the table impractical.</p>
+ *
+ * <p>Open addressing tables cache the hash code of every key they store, so a key is hashed once when it is inserted and
+ * once per search for it, but never again when the table is resized. Separate chaining tables hash their keys again when
+ * they are enlarged or shrunk, which they only do when asked to.</p>
+ *
+ * @author Cheolhong Ahn
+ *
+ * @see OpenAddressingHashTable#setHashFunction(HashFunction)
+ * @see SeparateChainingHashTable#setHashFunction(HashFunction)
+ */
+@FunctionalInterface
+public interface HashFunction {
+
+    /**
+     * {@link String#hashCode()}, the hash function of every table unless told otherwise.
+     */
+    HashFunction STRING_HASH_CODE = String::hashCode;
+
+    /**
+     * Hashes key.
+     * @param key A non-{@code null} {@link String}.
+     * @return The hash code of key. All 32 bits may be used.
+     */
+    int hash(String key);
+
+    /**
+     * Returns the seeded hash function of the given seed. Two functions of the same seed hash every key in the same way.
+     * @param seed Any 64-bit value.
+     * @return A {@link HashFunction} in the style of wyhash, over the characters of the key.
+     */
+    static HashFunction seeded(long seed) {
+        final long P0 = 0xa0761d6478bd642fL, P1 = 0xe7037ed1a0b428dbL, P2 = 0x8ebc6af09c88c6e3L;
+        final long start = seed ^ P0;
+        // Masks the first operand of every multiplication. Were it a constant, the blocks of 4 characters equal to it
+        // would zero the product, and every key made of them would collide under every seed.
+        final long secret = mum(seed ^ P1, P2) ^ P1;
+        return key -> {
+            int n = key.length(), i = 0;
+            long h = start;
+            for(; i + 8 <= n; i += 8) {
+                h = mum(chars(key, i, 4) ^ secret, chars(key, i + 4, 4) ^ h);
+            }
+            int tail = n - i; // 0 to 7 characters, the length below tells a missing character from a '\0'.
+            long a = chars(key, i, Math.min(tail, 4)), b = tail > 4 ? chars(key, i + 4, tail - 4) : 0;
+            h = mum(a ^ secret, b ^ h);
+            h = mum(h ^ P2, n ^ P1);
+            return (int) (h ^ (h >>> 32));
+        };
+    }
+
+    /**
+     * Returns the seeded hash function of a seed drawn from a {@link SecureRandom}, whose hash codes cannot be guessed.
+     * @return A new seeded {@link HashFunction}.
+     * @see #seeded(long)
+     */
+    static HashFunction randomlySeeded() {
+        return seeded(new SecureRandom().nextLong());
+    }
+
+    // Packs the n (at most 4) characters of key from start into a long, the first one in the low bits.
+    private static long chars(String key, int start, int n) {
+        long word = 0;
+        for(int j = 0; j < n; j++) {
+            word |= (long) key.charAt(start + j) << (16 * j);
+        }
+        return word;
+    }
+
+    // Multiplies a and b to 128 bits and folds the halves together.
+    private static long mum(long a, long b) {
+        return (a * b) ^ Math.multiplyHigh(a, b);
+    }
+}
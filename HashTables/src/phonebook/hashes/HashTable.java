@@ -1,7 +1,15 @@
 package phonebook.hashes;
 
+import phonebook.utils.KVPair;
 import phonebook.utils.Probes;
 
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
 /**
  * <p>{@link HashTable} is an abstraction over hash tables which store {@link String} keys and map to 
  * {@link String} values. Implementing classes should offer <em>amortized constant</em> insertion, search and 
@@ -82,4 +90,53 @@ public interface HashTable {
      * @return the number of cells in the table.
      */
     int capacity();
+
+    /**
+     * Inserts every pair of pairs into this, in iteration order, as if by calling {@link #put(String, String)} on every
+     * one of them. Implementations that resize themselves should override this method so that the table is sized once
+     * for the whole batch, instead of growing step by step in the middle of it.
+     * @param pairs The pairs to insert. None of them can have a {@code null} key or value.
+     * @return A {@link phonebook.utils.Probes} with a {@code null} value and the total number of probes the batch made.
+     * @throws IllegalArgumentException if some pair has a {@code null} key or value. The pairs before it have been inserted.
+     */
+    default Probes putAll(Collection<KVPair> pairs) {
+        int probeC = 0;
+        for (KVPair pair : pairs) {
+            probeC += put(pair.getKey(), pair.getValue()).getProbes();
+        }
+        return new Probes(null, probeC);
+    }
+
+    /**
+     * Returns a {@link Spliterator} over the pairs stored in this, in no particular order. Tables hand out the pairs they
+     * store, without copying them, whenever they store {@link KVPair}s, so a caller should not modify them. Splitting
+     * it splits the storage of the table, so that {@link #parallelStream()} reads every part of it on a different thread.
+     * The table should not be modified during the traversal.
+     * @return A {@link Spliterator} over the pairs of this.
+     */
+    Spliterator<KVPair> spliterator();
+
+    /**
+     * Returns an {@link Iterator} over the pairs stored in this, in the order of {@link #spliterator()}.
+     * @return An {@link Iterator} over the pairs of this.
+     */
+    default Iterator<KVPair> iterator() {
+        return Spliterators.iterator(spliterator());
+    }
+
+    /**
+     * Returns a sequential {@link Stream} of the pairs stored in this, e.g to export them or sort them by key.
+     * @return A {@link Stream} over {@link #spliterator()}.
+     */
+    default Stream<KVPair> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Returns a parallel {@link Stream} of the pairs stored in this.
+     * @return A parallel {@link Stream} over {@link #spliterator()}.
+     */
+    default Stream<KVPair> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
 }
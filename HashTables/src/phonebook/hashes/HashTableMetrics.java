@@ -0,0 +1,177 @@
+package phonebook.hashes;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * <p>{@link HashTableMetrics} is an <b>immutable</b> snapshot of the metrics an {@link InstrumentedHashTable} has
+ * gathered so far. Probe lengths are kept in histograms with one bucket per length, the last bucket gathering every
+ * operation with {@link #OVERFLOW_BUCKET} probes or more.</p>
+ *
+ * <p>The getters follow the conventions of open types, so that the snapshot can also be exported as
+ * {@link javax.management.openmbean.CompositeData} through {@link InstrumentedHashTableMXBean#getMetrics()}.</p>
+ *
+ * @author Cheolhong Ahn
+ * @see InstrumentedHashTable
+ * @see InstrumentedHashTableMXBean
+ */
+public class HashTableMetrics {
+
+    /**
+     * The index of the last bucket of the probe histograms, which counts operations of that many probes or more.
+     */
+    public static final int OVERFLOW_BUCKET = 64;
+
+    private final long[] putProbes, getProbes, removeProbes;
+    private final long resizes, resizeNanos, maxResizeNanos, compactions;
+    private final int size, capacity, tombstones;
+
+    /**
+     * Creates a snapshot. The arrays are not copied.
+     * @param putProbes Histogram of the probes of {@link HashTable#put(String, String)}.
+     * @param getProbes Histogram of the probes of {@link HashTable#get(String)}.
+     * @param removeProbes Histogram of the probes of {@link HashTable#remove(String)}.
+     * @param resizes The number of operations that changed the capacity.
+     * @param resizeNanos The total duration of those operations, in nanoseconds.
+     * @param maxResizeNanos The duration of the longest of them, in nanoseconds.
+     * @param compactions The number of tombstone compactions, 0 for tables that don't compact.
+     * @param size The number of pairs stored.
+     * @param capacity The capacity of the table.
+     * @param tombstones The number of cells taken by tombstones, 0 for tables that don't leave any.
+     */
+    @ConstructorProperties({"putProbes", "getProbes", "removeProbes", "resizes", "resizeNanos", "maxResizeNanos",
+            "compactions", "size", "capacity", "tombstones"})
+    public HashTableMetrics(long[] putProbes, long[] getProbes, long[] removeProbes, long resizes, long resizeNanos,
+                            long maxResizeNanos, long compactions, int size, int capacity, int tombstones) {
+        this.putProbes = putProbes;
+        this.getProbes = getProbes;
+        this.removeProbes = removeProbes;
+        this.resizes = resizes;
+        this.resizeNanos = resizeNanos;
+        this.maxResizeNanos = maxResizeNanos;
+        this.compactions = compactions;
+        this.size = size;
+        this.capacity = capacity;
+        this.tombstones = tombstones;
+    }
+
+    /**
+     * @return The histogram of the probes of {@link HashTable#put(String, String)}: entry i counts the calls that made i probes.
+     */
+    public long[] getPutProbes() {
+        return putProbes.clone();
+    }
+
+    /**
+     * @return The histogram of the probes of {@link HashTable#get(String)}: entry i counts the calls that made i probes.
+     */
+    public long[] getGetProbes() {
+        return getProbes.clone();
+    }
+
+    /**
+     * @return The histogram of the probes of {@link HashTable#remove(String)}: entry i counts the calls that made i probes.
+     */
+    public long[] getRemoveProbes() {
+        return removeProbes.clone();
+    }
+
+    /**
+     * @return The number of operations that changed the capacity of the table.
+     */
+    public long getResizes() {
+        return resizes;
+    }
+
+    /**
+     * @return The total duration of the operations that resized the table, in nanoseconds.
+     */
+    public long getResizeNanos() {
+        return resizeNanos;
+    }
+
+    /**
+     * @return The duration of the longest operation that resized the table, in nanoseconds.
+     */
+    public long getMaxResizeNanos() {
+        return maxResizeNanos;
+    }
+
+    /**
+     * @return The number of tombstone compactions the table went through.
+     * @see OpenAddressingHashTable#getCompactions()
+     */
+    public long getCompactions() {
+        return compactions;
+    }
+
+    /**
+     * @return The number of pairs stored.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return The capacity of the table.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return The number of cells taken by tombstones.
+     */
+    public int getTombstones() {
+        return tombstones;
+    }
+
+    /**
+     * @return The fraction of the capacity taken by pairs.
+     */
+    public double getLoadFactor() {
+        return (double) size / capacity;
+    }
+
+    /**
+     * @return The fraction of the capacity taken by tombstones.
+     */
+    public double getTombstoneRatio() {
+        return (double) tombstones / capacity;
+    }
+
+    /**
+     * Returns the smallest probe length that at least a fraction q of the operations of a histogram did not exceed.
+     * @param histogram One of the histograms of this.
+     * @param q A fraction between 0 and 1, e.g 0.99 for the 99th percentile.
+     * @return The probe length of the q-th quantile, 0 if the histogram is empty. {@link #OVERFLOW_BUCKET} stands for
+     * that many probes or more.
+     */
+    public static int quantile(long[] histogram, double q) {
+        long total = 0;
+        for (long n : histogram) {
+            total += n;
+        }
+        long seen = 0;
+        for (int probes = 0; probes < histogram.length; probes++) {
+            seen += histogram[probes];
+            if (seen > 0 && seen >= q * total) {
+                return probes;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the mean probe length of a histogram, counting the overflow bucket as {@link #OVERFLOW_BUCKET} probes.
+     * @param histogram One of the histograms of this.
+     * @return The mean number of probes per operation, 0 if the histogram is empty.
+     */
+    public static double mean(long[] histogram) {
+        long total = 0, probes = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            total += histogram[i];
+            probes += i * histogram[i];
+        }
+        return total == 0 ? 0 : (double) probes / total;
+    }
+}
@@ -0,0 +1,313 @@
+package phonebook.hashes;
+
+import phonebook.utils.KVPair;
+import phonebook.utils.PrimeGenerator;
+import phonebook.utils.Probes;
+
+import java.util.Spliterator;
+
+/**
+ * <p>{@link IncrementalLinearProbingHashTable} is an Openly Addressed {@link HashTable} which resolves collisions with
+ * <b>Linear Probing</b>, like {@link LinearProbingHashTable}, but whose resizings are <b>incremental</b>. It extends
+ * {@link OpenAddressingHashTable} directly rather than {@link LinearProbingHashTable}, since every operation has to deal
+ * with two tables at once. When the table gets more than 50&#37; full, a larger table is allocated, but the pairs of the old table are not
+ * re-inserted all at once. Instead, the old and the new table coexist, and every call to {@link #put(String, String)},
+ * {@link #get(String)} or {@link #remove(String)} migrates a bounded number of cells of the old table into the new one.
+ * This spreads the cost of a resizing over the operations that follow it, so that no single operation has to pay for
+ * re-inserting the whole table. The {@link Probes} returned by every operation include the probes spent on migration.</p>
+ *
+ * <p>While a migration is in progress, new pairs are always inserted into the new table, and searches look into the new
+ * table first and into the old table second. Cells of the old table that have been migrated or deleted are marked with
+ * {@link #TOMBSTONE}, so that searches in the old table can still walk over them.</p>
+ *
+ * @author Cheolhong Ahn
+ *
+ * @see HashTable
+ * @see LinearProbingHashTable
+ * @see CollisionResolver
+ */
+public class IncrementalLinearProbingHashTable extends OpenAddressingHashTable {
+
+    /* ********************************************************************/
+    /* ** INSERT ANY PRIVATE METHODS OR FIELDS YOU WANT TO USE HERE: ******/
+    /* ********************************************************************/
+	private boolean soft_del;
+	private static final int MIGRATION_STEP = 8; //cells of the old table migrated by every operation.
+
+	private KVPair[] oldTable; //table being drained, null if no migration is in progress.
+	private int[] oldHashCodes;
+	private int migrated; //cells of oldTable already migrated.
+	private int oldCount; //live pairs still in oldTable.
+
+	//migrates up to maxCells cells of the old table into the new one and returns the probes it took.
+	private int migrate(int maxCells){
+		int probeC = 0;
+		while(this.oldTable != null && maxCells > 0){
+			probeC ++; //one probe to check old cell.
+			KVPair pair = this.oldTable[this.migrated];
+			if(pair != null && pair != this.TOMBSTONE){
+				probeC += this.insert(pair, this.oldHashCodes[this.migrated]);
+				this.oldTable[this.migrated] = this.TOMBSTONE; //keep old clusters walkable.
+				this.oldCount --;
+			}
+			this.migrated ++;
+			maxCells --;
+			if(this.migrated == this.oldTable.length){ //migration done, drop the old table.
+				assert this.oldCount == 0 : "Finished migration with " + this.oldCount + " pairs left behind.";
+				this.oldTable = null;
+				this.oldHashCodes = null;
+			}
+		}
+		return probeC;
+	}
+
+	//inserts pair into the first null cell of its cluster in the new table and returns the probes it took.
+	private int insert(KVPair pair, int h){
+		int probeC = 0;
+		int idx = this.indexOf(h);
+		while(this.table[idx] != null){
+			probeC ++;
+			idx = (idx+1)%this.table.length;
+		}
+		probeC ++; //probe for inserting to target cell.
+		this.store(idx, pair, h);
+		this.count ++;
+		return probeC;
+	}
+
+	//makes the current table the old one and allocates a new one of the given capacity. Any migration in progress is
+	//finished first. Returns the probes it took.
+	private int startMigration(int capacity){
+		int probeC = 0;
+		if(this.oldTable != null){ //previous migration fell behind, finish it.
+			probeC += this.migrate(Integer.MAX_VALUE);
+		}
+		this.oldTable = this.table;
+		this.oldHashCodes = this.hashCodes;
+		this.oldCount = this.count - this.tombCount; //tombstones are not migrated.
+		this.migrated = 0;
+		this.allocate(capacity);
+		this.count = 0;
+		this.tombCount = 0;
+		return probeC;
+	}
+
+	/**
+	 * Moves every pair into a new table of the given capacity at once, without going through an incremental migration.
+	 * @param capacity The length of the new table.
+	 * @return The number of probes it took.
+	 */
+	@Override
+	protected int rehash(int capacity){
+		int probeC = this.startMigration(capacity);
+		return probeC + this.migrate(Integer.MAX_VALUE);
+	}
+
+	//searches the old table for key. Returns its index, or -1 if the search failed, with the probes used in probes[0].
+	private int findOld(String key, int h, int[] probes){
+		int address = this.capacityPolicy.indexOf(h, this.oldTable.length);
+		probes[0] ++;
+		while(this.oldTable[address] != null){
+			if(this.oldHashCodes[address] == h && this.oldTable[address] != this.TOMBSTONE && this.oldTable[address].getKey().equals(key)){
+				return address;
+			}
+			probes[0] ++;
+			address = (address+1)% this.oldTable.length;
+		}
+		return -1;
+	}
+
+    /* ******************************************/
+    /*  IMPLEMENT THE FOLLOWING PUBLIC METHODS: */
+    /* **************************************** */
+
+    /**
+     * Constructor with soft deletion option. Initializes the internal storage with a size equal to the starting value of  {@link PrimeGenerator}.
+     *
+     * @param soft A boolean indicator of whether we want to use soft deletion or not. {@code true} if and only if
+     *             we want soft deletion, {@code false} otherwise.
+     */
+    public IncrementalLinearProbingHashTable(boolean soft) {
+    	this(soft, CapacityPolicy.PRIME);
+    }
+
+    /**
+     * Constructor with soft deletion and capacity policy options. Initializes the internal storage with the first capacity
+     * of the policy.
+     *
+     * @param soft A boolean indicator of whether we want to use soft deletion or not. {@code true} if and only if
+     *             we want soft deletion, {@code false} otherwise.
+     * @param capacityPolicy The {@link CapacityPolicy} that decides the capacities of the table and how keys are hashed to them.
+     */
+    public IncrementalLinearProbingHashTable(boolean soft, CapacityPolicy capacityPolicy) {
+    	this.soft_del = soft;
+    	this.count = 0;
+    	this.tombCount = 0;
+    	this.initCapacity(capacityPolicy);
+    }
+
+    /**
+     * Inserts the pair &lt;key, value&gt; into this. The container should <b>not</b> allow for {@code null}
+     * keys and values. When the new table is more than 50&#37; full, a larger one is allocated and the current one
+     * starts being migrated into it. Should a migration still be in progress at that point, it is finished first.
+     *
+     * @param key   The record's key.
+     * @param value The record's value.
+     * @return The {@link phonebook.utils.Probes} with the value added and the number of probes it makes, migration included.
+     * @throws IllegalArgumentException if either argument is {@code null}.
+     */
+    @Override
+    public Probes put(String key, String value) {
+        if (key == null || value == null) { // should not allow for null key, value
+        	throw new IllegalArgumentException();
+        }
+        int probeC = this.migrate(MIGRATION_STEP);
+        if(this.count > (0.5 * this.table.length)){ // resize needed.
+        	probeC += this.startMigration(this.nextCapacity());
+        	probeC += this.migrate(MIGRATION_STEP);
+        }
+        probeC += this.insert(new KVPair(key, value), this.keyHash(key));
+        return new Probes(value, probeC);
+    }
+
+    @Override
+    public Probes get(String key) {
+        if(key == null) {  // key is null
+        	return new Probes(null,0);
+        }
+        int probeC = this.migrate(MIGRATION_STEP);
+        int h = this.keyHash(key);
+        int address = this.indexOf(h);
+        probeC ++;
+        while(this.table[address] != null) {
+        	if(this.matches(address, key, h)){ // found matching
+        		return new Probes(this.table[address].getValue(), probeC);
+        	}
+        	probeC ++;
+        	address = (address+1)% this.table.length;
+        }
+        if(this.oldTable != null){ //not migrated yet?
+        	int[] probes = {probeC};
+        	int oldAddress = this.findOld(key, h, probes);
+        	return new Probes(oldAddress < 0 ? null : this.oldTable[oldAddress].getValue(), probes[0]);
+        }
+        return new Probes(null, probeC);
+    }
+
+    /**
+     * <b>Return</b> the value associated with key in the {@link HashTable}, and <b>remove</b> the {@link phonebook.utils.KVPair} from the table.
+     * Pairs that have not been migrated yet are always soft-deleted from the old table, since it is about to be dropped anyway.
+     *
+     * @param key The key to search for.
+     * @return The {@link phonebook.utils.Probes} with associated value and the number of probe used. If the key is {@code null}, return value {@code null}
+     * and 0 as number of probes; if the key doesn't exist in the database, return {@code null} and the number of probes used.
+     */
+    @Override
+    public Probes remove(String key) {
+        if (key == null) {  // key is null
+        	return new Probes(null, 0);
+        }
+        int probeC = this.migrate(MIGRATION_STEP);
+        int h = this.keyHash(key);
+        int address = this.indexOf(h);
+        probeC ++;
+        while(this.table[address] != null) {
+        	if(this.matches(address, key, h)){ // found matching
+        		String retVal = this.table[address].getValue();
+        		if(this.soft_del){
+        			this.table[address] = this.TOMBSTONE; //mark for deletion
+        			this.tombCount ++;
+        			probeC += this.compactIfNeeded(); //rebuild without tombstones if there are too many of them.
+        			probeC += this.shrinkIfNeeded(); //give memory back if the table got too empty.
+        			return new Probes(retVal, probeC);
+        		}
+        		this.table[address] = null;
+        		this.count --;
+        		address = (address+1)% this.table.length;
+        		while(this.table[address] != null){ //reinsert rest of the cluster
+        			KVPair pair = this.table[address];
+        			int pairHash = this.hashCodes[address];
+        			this.table[address] = null;
+        			this.count --;
+        			probeC ++; //for initial read and writing null
+        			if(pair == this.TOMBSTONE){
+        				this.tombCount --; //cluster is rebuilt without its tombstones.
+        			}else{
+        				probeC += this.insert(pair, pairHash);
+        			}
+        			address = (address+1)% this.table.length;
+        		}
+        		probeC ++; //probe that checked for null to terminate
+        		probeC += this.shrinkIfNeeded(); //give memory back if the table got too empty.
+        		return new Probes(retVal, probeC);
+        	}
+        	probeC ++;
+        	address = (address+1)% this.table.length;
+        }
+        if(this.oldTable != null){
+        	int[] probes = {probeC};
+        	int oldAddress = this.findOld(key, h, probes);
+        	if(oldAddress >= 0){
+        		String retVal = this.oldTable[oldAddress].getValue();
+        		this.oldTable[oldAddress] = this.TOMBSTONE;
+        		this.oldCount --;
+        		probes[0] += this.shrinkIfNeeded(); //give memory back if the table got too empty.
+        		return new Probes(retVal, probes[0]);
+        	}
+        	return new Probes(null, probes[0]);
+        }
+        return new Probes(null, probeC);
+    }
+
+    @Override
+    public boolean containsKey(String key) {
+    	return this.get(key).getValue() != null;
+    }
+
+    @Override
+    public boolean containsValue(String value) {
+    	for(int i=0; i < this.table.length; i++) {
+    		if(this.table[i] != null && this.table[i] != this.TOMBSTONE && this.table[i].getValue().equals(value))
+    			return true;
+    	}
+    	if(this.oldTable != null) {
+    		for(int i=this.migrated; i < this.oldTable.length; i++) { //migrated cells are all tombstones.
+    			if(this.oldTable[i] != null && this.oldTable[i] != this.TOMBSTONE && this.oldTable[i].getValue().equals(value))
+    				return true;
+    		}
+    	}
+    	return false;
+    }
+
+    @Override
+    public int size() {
+    	return this.count - this.tombCount + this.oldCount;
+    }
+
+    @Override
+    public int capacity() {
+    	return this.table.length;
+    }
+
+    /**
+     * Walks the cells of the old table that are left to migrate, if a migration is in progress, then those of the table.
+     * @return A {@link Spliterator} that splits both tables in ranges of cells.
+     */
+    @Override
+    public Spliterator<KVPair> spliterator() {
+    	KVPair[] old = this.oldTable == null ? new KVPair[0] : this.oldTable, cells = this.table;
+    	KVPair tombstone = this.TOMBSTONE;
+    	return SlotSpliterator.ofCells(old.length + cells.length, this.size(), true, i -> {
+    		KVPair pair = i < old.length ? old[i] : cells[i - old.length];
+    		return pair == tombstone ? null : pair;
+    	});
+    }
+
+    /**
+     * Queries this for an ongoing migration.
+     * @return {@code true} if, and only if, the old table of the last resizing still has cells to be migrated.
+     */
+    public boolean isMigrating() {
+    	return this.oldTable != null;
+    }
+}
@@ -0,0 +1,232 @@
+package phonebook.hashes;
+
+import phonebook.utils.KVPair;
+import phonebook.utils.Probes;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>{@link InstrumentedHashTable} is a {@link HashTable} that wraps any other {@link HashTable} and keeps <b>aggregated
+ * metrics</b> about the calls it forwards to it: histograms of the {@link Probes} made by {@link #put(String, String)},
+ * {@link #get(String)} and {@link #remove(String)}, and the number and duration of the operations that resized the
+ * table. The current load factor and tombstone ratio are read from the wrapped table. A snapshot of all of them is
+ * returned by {@link #getMetrics()}, and {@link #register(String)} exports them over JMX.</p>
+ *
+ * <p>Instrumentation is opt-in: a table that isn't wrapped pays nothing for it. Counters are atomic, so a thread-safe
+ * table stays thread-safe once wrapped; resizes are detected by comparing the capacity before and after every call
+ * that can change it, so under concurrent modification they are only estimates.</p>
+ *
+ * @author Cheolhong Ahn
+ * @see HashTable
+ * @see HashTableMetrics
+ * @see InstrumentedHashTableMXBean
+ */
+public class InstrumentedHashTable implements HashTable, InstrumentedHashTableMXBean {
+
+    private static final int BUCKETS = HashTableMetrics.OVERFLOW_BUCKET + 1;
+
+    private final HashTable table;
+    private final AtomicLongArray putProbes = new AtomicLongArray(BUCKETS);
+    private final AtomicLongArray getProbes = new AtomicLongArray(BUCKETS);
+    private final AtomicLongArray removeProbes = new AtomicLongArray(BUCKETS);
+    private final AtomicLong resizes = new AtomicLong();
+    private final AtomicLong resizeNanos = new AtomicLong();
+    private final AtomicLong maxResizeNanos = new AtomicLong();
+    private ObjectName name;
+
+    private static Probes record(AtomicLongArray histogram, Probes probes) {
+        histogram.incrementAndGet(Math.min(probes.getProbes(), HashTableMetrics.OVERFLOW_BUCKET));
+        return probes;
+    }
+
+    // Counts the call that started at start as a resize if the capacity isn't what it was then.
+    private void recordResize(int capacityBefore, long start) {
+        if (table.capacity() != capacityBefore) {
+            long nanos = System.nanoTime() - start;
+            resizes.incrementAndGet();
+            resizeNanos.addAndGet(nanos);
+            maxResizeNanos.accumulateAndGet(nanos, Math::max);
+        }
+    }
+
+    /**
+     * Wraps table. Calls should from now on go through the new instance only, or they will not be accounted for.
+     * @param table The {@link HashTable} to instrument.
+     * @throws IllegalArgumentException if table is {@code null}.
+     */
+    public InstrumentedHashTable(HashTable table) {
+        if (table == null) {
+            throw new IllegalArgumentException("Cannot instrument a null table.");
+        }
+        this.table = table;
+    }
+
+    /**
+     * Returns the wrapped table.
+     * @return The {@link HashTable} given at construction.
+     */
+    public HashTable unwrap() {
+        return table;
+    }
+
+    @Override
+    public Probes put(String key, String value) {
+        int capacity = table.capacity();
+        long start = System.nanoTime();
+        Probes probes = table.put(key, value);
+        recordResize(capacity, start);
+        return record(putProbes, probes);
+    }
+
+    @Override
+    public Probes get(String key) {
+        return record(getProbes, table.get(key));
+    }
+
+    @Override
+    public Probes remove(String key) {
+        int capacity = table.capacity();
+        long start = System.nanoTime();
+        Probes probes = table.remove(key);
+        recordResize(capacity, start);
+        return record(removeProbes, probes);
+    }
+
+    /**
+     * Forwards the batch to the wrapped table, so that it keeps its pre-sizing. The probes of a batch are only known in
+     * total, so they are not added to the histograms; a resize is recorded if the capacity changed.
+     */
+    @Override
+    public Probes putAll(Collection<KVPair> pairs) {
+        int capacity = table.capacity();
+        long start = System.nanoTime();
+        Probes probes = table.putAll(pairs);
+        recordResize(capacity, start);
+        return probes;
+    }
+
+    @Override
+    public boolean containsKey(String key) {
+        return table.containsKey(key);
+    }
+
+    @Override
+    public boolean containsValue(String value) {
+        return table.containsValue(value);
+    }
+
+    @Override
+    public int size() {
+        return table.size();
+    }
+
+    @Override
+    public int capacity() {
+        return table.capacity();
+    }
+
+    @Override
+    public Spliterator<KVPair> spliterator() {
+        return table.spliterator();
+    }
+
+    @Override
+    public HashTableMetrics getMetrics() {
+        int tombstones = 0;
+        long compactions = 0;
+        if (table instanceof OpenAddressingHashTable) {
+            OpenAddressingHashTable oa = (OpenAddressingHashTable) table;
+            tombstones = oa.tombCount;
+            compactions = oa.getCompactions();
+        }
+        return new HashTableMetrics(toArray(putProbes), toArray(getProbes), toArray(removeProbes), resizes.get(),
+                resizeNanos.get(), maxResizeNanos.get(), compactions, table.size(), table.capacity(), tombstones);
+    }
+
+    private static long[] toArray(AtomicLongArray histogram) {
+        long[] copy = new long[histogram.length()];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = histogram.get(i);
+        }
+        return copy;
+    }
+
+    @Override
+    public double getLoadFactor() {
+        return (double) table.size() / table.capacity();
+    }
+
+    @Override
+    public double getTombstoneRatio() {
+        return table instanceof OpenAddressingHashTable ?
+                (double) ((OpenAddressingHashTable) table).tombCount / table.capacity() : 0;
+    }
+
+    @Override
+    public long getResizes() {
+        return resizes.get();
+    }
+
+    @Override
+    public int getGetProbes99thPercentile() {
+        return HashTableMetrics.quantile(toArray(getProbes), 0.99);
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            putProbes.set(i, 0);
+            getProbes.set(i, 0);
+            removeProbes.set(i, 0);
+        }
+        resizes.set(0);
+        resizeNanos.set(0);
+        maxResizeNanos.set(0);
+    }
+
+    /**
+     * Registers this with the platform {@link MBeanServer}, under the name
+     * {@code phonebook:type=HashTable,name=<name>}.
+     * @param name The name that tells this table apart from the other registered ones.
+     * @throws IllegalStateException if this is already registered, or if another table is registered under that name.
+     */
+    public synchronized void register(String name) {
+        if (this.name != null) {
+            throw new IllegalStateException("Already registered as " + this.name + ".");
+        }
+        try {
+            ObjectName objectName = new ObjectName("phonebook:type=HashTable,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            this.name = objectName;
+        } catch (InstanceAlreadyExistsException e) {
+            throw new IllegalStateException("Another table is registered as " + name + ".", e);
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register " + name + ".", e);
+        }
+    }
+
+    /**
+     * Unregisters this from the platform {@link MBeanServer}, if it was registered.
+     */
+    public synchronized void unregister() {
+        if (name == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (InstanceNotFoundException ignored) { // unregistered behind our back.
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not unregister " + name + ".", e);
+        }
+        name = null;
+    }
+}
@@ -0,0 +1,42 @@
+package phonebook.hashes;
+
+/**
+ * <p>{@link InstrumentedHashTableMXBean} is the management interface of {@link InstrumentedHashTable}, through which
+ * its metrics can be read over JMX once it is registered with {@link InstrumentedHashTable#register(String)}.</p>
+ *
+ * @author Cheolhong Ahn
+ * @see InstrumentedHashTable
+ * @see HashTableMetrics
+ */
+public interface InstrumentedHashTableMXBean {
+
+    /**
+     * @return A snapshot of every metric, exported as {@link javax.management.openmbean.CompositeData}.
+     */
+    HashTableMetrics getMetrics();
+
+    /**
+     * @return The fraction of the capacity taken by pairs.
+     */
+    double getLoadFactor();
+
+    /**
+     * @return The fraction of the capacity taken by tombstones.
+     */
+    double getTombstoneRatio();
+
+    /**
+     * @return The number of operations that changed the capacity of the table.
+     */
+    long getResizes();
+
+    /**
+     * @return The 99th percentile of the probes of {@link HashTable#get(String)}.
+     */
+    int getGetProbes99thPercentile();
+
+    /**
+     * Clears the probe histograms and the resize counters.
+     */
+    void reset();
+}
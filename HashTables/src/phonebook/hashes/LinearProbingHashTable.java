@@ -4,6 +4,8 @@ import phonebook.utils.KVPair;
 import phonebook.utils.PrimeGenerator;
 import phonebook.utils.Probes;
 
+import java.util.concurrent.ForkJoinPool;
+
 /**
  * <p>{@link LinearProbingHashTable} is an Openly Addressed {@link HashTable} implemented with <b>Linear Probing</b> as its
  * collision resolution strategy: every key collision is resolved by moving one address over. It is
@@ -13,6 +15,17 @@ import phonebook.utils.Probes;
  * inserted without collisions. {@link QuadraticProbingHashTable} is a {@link HashTable} that
  * tries to avoid this problem, albeit sacrificing cache locality.</p>
  *
+ * <p>A {@link LinearProbingHashTable} can optionally run in <b>Robin Hood</b> mode. Insertions then keep track of
+ * how far every key has travelled from its home cell (its <em>probe distance</em>) and a key that has travelled further
+ * takes the cell of a key that has travelled less, which keeps the variance of probe lengths low. Searches stop as soon
+ * as they meet a key closer to its home than the searched key would be, and deletions shift the rest of the cluster
+ * back by one cell instead of leaving a tombstone behind. Because probe sequences stay short, the table in this mode is
+ * only resized when it is more than 90&#37; full, instead of 50&#37;.</p>
+ *
+ * <p>Outside of Robin Hood mode, a table that holds many pairs rehashes them in parallel, on the pool given to
+ * {@link #setRehashPool(ForkJoinPool)}: every partition of the new table is filled by its own task, and the few pairs
+ * whose cluster runs past the end of their partition are inserted last, on the calling thread.</p>
+ *
  * @author Cheolhong Ahn
  *
  * @see HashTable
@@ -27,9 +40,227 @@ public class LinearProbingHashTable extends OpenAddressingHashTable {
     /* ** INSERT ANY PRIVATE METHODS OR FIELDS YOU WANT TO USE HERE: ******/
     /* ********************************************************************/
 	private boolean soft_del;
-	private int tombCount;//tracks number of elements marked for deletion on soft deletion to figure out actual size.
+	private boolean robinHood; //Robin Hood insertion, early-terminating search and backward-shift deletion.
+	private static final double ROBIN_HOOD_LOAD = 0.9; //max load factor in Robin Hood mode.
+	private ForkJoinPool rehashPool = ForkJoinPool.commonPool(); //null to always rehash on the calling thread.
+
+	//distance of the pair stored at idx from the cell it hashes to.
+	private int probeDistance(int idx){
+		return (idx - this.indexOf(this.hashCodes[idx]) + this.table.length) % this.table.length;
+	}
+
+	//Robin Hood insertion. An existing key gets its value updated, otherwise the pair to be inserted takes the cell
+	//of any pair closer to its home than the inserted pair currently is, and the displaced pair carries on probing.
+	private Probes robinHoodPut(String key, String value){
+		int probeC = 0; // probe counter
+		if(this.count + 1 > ROBIN_HOOD_LOAD * this.table.length){ //always leave an empty cell so that probing terminates.
+			probeC += this.rehash(this.nextCapacity());
+		}
+
+		int h = this.keyHash(key);
+		int idx = this.indexOf(h);
+		int dist = 0; //probe distance of the pair being inserted.
+		while(this.table[idx] != null){ //a key already in the table is always met before the first displacement.
+			if(this.matches(idx, key, h)){ //update existing
+				probeC ++;
+				this.table[idx].setValue(value);
+				return new Probes(value, probeC);
+			}
+			if(this.probeDistance(idx) < dist){ //resident is richer, displacement starts here.
+				break;
+			}
+			probeC ++;
+			idx = (idx+1)%this.table.length;
+			dist ++;
+		}
+		probeC += this.robinHoodInsert(new KVPair(key, value), h, idx, dist);
+		this.count ++;
+		return new Probes(value, probeC);
+	}
+
+	//inserts pair (with hash code h) at idx, where it has travelled dist cells, and keeps displacing until an empty
+	//cell absorbs the chain. The key of pair must not be in the table already.
+	private int robinHoodInsert(KVPair pair, int h, int idx, int dist){
+		int probeC = 0;
+		while(this.table[idx] != null){
+			probeC ++;
+			int resident = this.probeDistance(idx);
+			if(resident < dist){ //swap and carry on with the displaced pair.
+				KVPair tmp = this.table[idx];
+				int tmpHash = this.hashCodes[idx];
+				this.store(idx, pair, h);
+				pair = tmp;
+				h = tmpHash;
+				dist = resident;
+			}
+			idx = (idx+1)%this.table.length;
+			dist ++;
+		}
+		probeC ++; //probe for inserting to empty cell.
+		this.store(idx, pair, h);
+		return probeC;
+	}
+
+	//Robin Hood search. Returns the index of key, or -1 if the search failed. The number of probes used is left in probes[0].
+	private int robinHoodFind(String key, int[] probes){
+		int h = this.keyHash(key);
+		int address = this.indexOf(h);
+		int dist = 0;
+		probes[0] = 1;
+		while(this.table[address] != null && this.probeDistance(address) >= dist){ //a resident closer to its home than key would be means key is not further down.
+			if(this.matches(address, key, h)){
+				return address;
+			}
+			probes[0] ++;
+			address = (address+1)% this.table.length;
+			dist ++;
+		}
+		return -1;
+	}
+
+	//Robin Hood deletion: instead of a tombstone, every following pair of the cluster that is not in its home cell
+	//moves one cell back.
+	private Probes robinHoodRemove(String key){
+		int[] probes = new int[1];
+		int address = this.robinHoodFind(key, probes);
+		if(address < 0){ //search failed.
+			return new Probes(null, probes[0]);
+		}
+		int probeC = probes[0];
+		String retVal = this.table[address].getValue();
+		int next = (address+1)% this.table.length;
+		while(this.table[next] != null && this.probeDistance(next) > 0){
+			probeC ++; //one probe per shifted pair.
+			this.store(address, this.table[next], this.hashCodes[next]);
+			address = next;
+			next = (next+1)% this.table.length;
+		}
+		probeC ++; //probe that found the end of the shift.
+		this.table[address] = null;
+		this.count --;
+		probeC += this.shrinkIfNeeded(); //give memory back if the table got too empty.
+		return new Probes(retVal, probeC);
+	}
 	
 	
+	/**
+	 * Returns the load factor above which the table is resized.
+	 * @return 0.9 in Robin Hood mode, 0.5 otherwise.
+	 */
+	@Override
+	protected double maxLoadFactor(){
+		return this.robinHood ? ROBIN_HOOD_LOAD : 0.5;
+	}
+
+	/**
+	 * Moves every pair of the table into a new table of the given capacity. Tombstones are not carried over.
+	 * @param capacity The length of the new table.
+	 * @return The number of probes it took.
+	 */
+	@Override
+	protected int rehash(int capacity){
+		if(!this.robinHood && this.rehashPool != null && this.count - this.tombCount >= ParallelRehash.THRESHOLD){
+			return this.parallelRehash(capacity, this.rehashPool);
+		}
+		int probeC = 0; // probe counter
+		KVPair[] temp = this.table;   //old table to copy over to new. needed as this.hash uses this.table length for hash.
+		int[] tempHashes = this.hashCodes; //cached hash codes of the old table, no need to rehash the keys.
+		this.allocate(capacity); //new table
+		this.count = 0;  //count reset and recounted since tombstone in original counted but will not copy over.
+		this.tombCount = 0; //tombcount reset as tombstone do not carry over.
+		//re-inserting
+		for(int i=0; i<temp.length; i++){//check all original cells
+			if (temp[i] == null || temp[i] == TOMBSTONE){ //original cell empty or marked for deletion
+				probeC ++;  //one probe to check original cell
+			}else if(this.robinHood){ //Robin Hood tables never hold tombstones.
+				probeC ++;  //one probe to check original cell
+				probeC += this.robinHoodInsert(temp[i], tempHashes[i], this.indexOf(tempHashes[i]), 0);
+				this.count++;
+			}else{  //original cell occupied need to copy over to new table
+				probeC ++;  //one probe to check original cell
+				int idx = this.indexOf(tempHashes[i]); //hash to insert to new table
+				if (this.table[idx] == null) { //idx is empty on new table so insert
+					this.store(idx, temp[i], tempHashes[i]);
+					probeC ++;  //one probe to insert
+				}else {//idx is occupied on new cell. linear probing until empty cell found and insert.
+					while(this.table[idx] != null) {
+						probeC++;  //one probe check occupied table cell.
+						idx = (idx+1)%this.table.length;  //go to next cell
+					}
+					this.store(idx, temp[i], tempHashes[i]);
+					probeC++; //one probe to insert to empty cell.
+				}
+				this.count++; //copied element over from original.
+			}
+		}
+		return probeC;
+	}
+
+	//same as rehash(), on pool. Every range of the old table first counts, then lists, the pairs it holds by the
+	//partition of the new table their home falls in; every partition is then filled by its own task, in the order of the
+	//old table. A pair that would probe past the end of its partition is put aside, since the cells after it belong to
+	//another task, and inserted once every partition is done. Cells are only ever filled, so it still finds the empty
+	//cell that ends its cluster.
+	private int parallelRehash(int capacity, ForkJoinPool pool){
+		KVPair[] temp = this.table;
+		int[] tempHashes = this.hashCodes;
+		this.allocate(capacity);
+		int parts = ParallelRehash.parts(pool, Math.max(temp.length, capacity));
+		int rangeLen = ParallelRehash.partLength(temp.length, parts), partLen = ParallelRehash.partLength(capacity, parts);
+		int[][] offsets = new int[parts][parts]; //pairs of every range going to every partition, then where they are listed.
+		ParallelRehash.forEach(pool, parts, r -> {
+			for(int i = r*rangeLen; i < Math.min(temp.length, (r+1)*rangeLen); i++){
+				if(temp[i] != null && temp[i] != TOMBSTONE){
+					offsets[r][this.indexOf(tempHashes[i]) / partLen] ++;
+				}
+			}
+		});
+		int[] starts = ParallelRehash.offsets(offsets);
+		int[] order = new int[starts[parts]]; //old cells of the pairs, partition after partition.
+		ParallelRehash.forEach(pool, parts, r -> {
+			for(int i = r*rangeLen; i < Math.min(temp.length, (r+1)*rangeLen); i++){
+				if(temp[i] != null && temp[i] != TOMBSTONE){
+					order[offsets[r][this.indexOf(tempHashes[i]) / partLen] ++] = i;
+				}
+			}
+		});
+		int[] probes = new int[parts], deferred = new int[parts]; //deferred pairs are moved to the start of the partition's list.
+		ParallelRehash.forEach(pool, parts, p -> {
+			int end = Math.min(capacity, (p+1)*partLen);
+			for(int k = starts[p]; k < starts[p+1]; k++){
+				int i = order[k];
+				int idx = this.indexOf(tempHashes[i]);
+				while(idx < end && this.table[idx] != null){
+					probes[p] ++; //one probe check occupied table cell.
+					idx ++;
+				}
+				if(idx == end){ //ran into the next partition.
+					order[starts[p] + deferred[p] ++] = i;
+				}else{
+					this.store(idx, temp[i], tempHashes[i]);
+					probes[p] ++; //one probe to insert to empty cell.
+				}
+			}
+		});
+		int probeC = temp.length; //one probe to check every original cell.
+		for(int p = 0; p < parts; p++){
+			probeC += probes[p];
+			for(int k = starts[p]; k < starts[p] + deferred[p]; k++){
+				int i = order[k];
+				int idx = this.indexOf(tempHashes[i]);
+				while(this.table[idx] != null){
+					probeC ++;
+					idx = (idx+1)%this.table.length;
+				}
+				this.store(idx, temp[i], tempHashes[i]);
+				probeC ++;
+			}
+		}
+		this.count = starts[parts];
+		this.tombCount = 0;
+		return probeC;
+	}
+
     /* ******************************************/
     /*  IMPLEMENT THE FOLLOWING PUBLIC METHODS: */
     /* **************************************** */
@@ -43,11 +274,47 @@ public class LinearProbingHashTable extends OpenAddressingHashTable {
      *             we want soft deletion, {@code false} otherwise.
      */
     public LinearProbingHashTable(boolean soft) {
+    	this(soft, false);
+    }
+
+    /**
+     * Constructor with soft deletion and Robin Hood options. Initializes the internal storage with a size equal to the starting
+     * value of {@link PrimeGenerator}.
+     *
+     * @param soft A boolean indicator of whether we want to use soft deletion or not. {@code true} if and only if
+     *             we want soft deletion, {@code false} otherwise. Ignored in Robin Hood mode, which never leaves tombstones.
+     * @param robinHood {@code true} if and only if we want Robin Hood insertion, search and deletion, {@code false} for
+     *                  plain linear probing.
+     */
+    public LinearProbingHashTable(boolean soft, boolean robinHood) {
+    	this(soft, robinHood, CapacityPolicy.PRIME);
+    }
+
+    /**
+     * Constructor with soft deletion, Robin Hood and capacity policy options. Initializes the internal storage with the
+     * first capacity of the policy.
+     *
+     * @param soft A boolean indicator of whether we want to use soft deletion or not. {@code true} if and only if
+     *             we want soft deletion, {@code false} otherwise. Ignored in Robin Hood mode, which never leaves tombstones.
+     * @param robinHood {@code true} if and only if we want Robin Hood insertion, search and deletion, {@code false} for
+     *                  plain linear probing.
+     * @param capacityPolicy The {@link CapacityPolicy} that decides the capacities of the table and how keys are hashed to them.
+     */
+    public LinearProbingHashTable(boolean soft, boolean robinHood, CapacityPolicy capacityPolicy) {
     	this.soft_del = soft;
+    	this.robinHood = robinHood;
     	this.count= 0; //occupied cells;
     	this.tombCount = 0; 
-    	this.primeGenerator = new PrimeGenerator();
-    	this.table = new KVPair[primeGenerator.getCurrPrime()];
+    	this.initCapacity(capacityPolicy);
+    }
+
+    /**
+     * Sets the pool that tables of at least 2^16 pairs rehash on, {@link ForkJoinPool#commonPool()}
+     * by default. Robin Hood tables always rehash on the calling thread.
+     * @param pool The {@link ForkJoinPool} to rehash on, or {@code null} to always rehash on the calling thread.
+     */
+    public void setRehashPool(ForkJoinPool pool) {
+    	this.rehashPool = pool;
     }
 
     /**
@@ -59,7 +326,8 @@ public class LinearProbingHashTable extends OpenAddressingHashTable {
      * constant time</em>.
      * <p>
      * Instances of {@link LinearProbingHashTable} will follow the writeup's guidelines about how to internally resize
-     * the hash table when the capacity exceeds 50&#37;
+     * the hash table when the capacity exceeds 50&#37;, or 90&#37; in Robin Hood mode, where an existing key also has its
+     * value updated instead of being inserted twice.
      *
      * @param key   The record's key.
      * @param value The record's value.
@@ -70,44 +338,23 @@ public class LinearProbingHashTable extends OpenAddressingHashTable {
     public Probes put(String key, String value) {
         if (key == null || value == null) { // should not allow for null key, value
         	throw new IllegalArgumentException();
+        }else if(this.robinHood){
+        	return this.robinHoodPut(key, value);
         }else {
         	int probeC = 0; // probe counter
         	//check if resize needed.
         	if(this.count > (0.5 * this.table.length)){ // n >= T * M, resize needed.
-        		KVPair[] temp = this.table;   //old table to copy over to new. needed as this.hash uses this.table length for hash.
-        		this.table = new KVPair[primeGenerator.getNextPrime()]; //new table
-        		this.count = 0;  //count reset and recounted since tombstone in original counted but will not copy over.
-        		this.tombCount = 0; //tombcount reset as tombstone do not carry over.
-        		//re-inserting
-        		for(int i=0; i<temp.length; i++){//check all original cells
-        			if (temp[i] == null || temp[i] == TOMBSTONE){ //original cell empty or marked for deletion
-        				probeC ++;  //one probe to check original cell
-        			}else{  //original cell occupied need to copy over to new table
-        				probeC ++;  //one probe to check original cell
-        				int idx = this.hash(temp[i].getKey()); //hash to insert to new table
-        				if (this.table[idx] == null) { //idx is empty on new table so insert
-        					this.table[idx] = temp[i];
-        					probeC ++;  //one probe to insert
-        				}else {//idx is occupied on new cell. linear probing until empty cell found and insert.
-        					while(this.table[idx] != null) {
-        						probeC++;  //one probe check occupied table cell.
-        						idx = (idx+1)%this.table.length;  //go to next cell
-        					}
-        					this.table[idx] = temp[i];
-        					probeC++; //one probe to insert to empty cell.
-        				}
-        				this.count++; //copied element over from original.
-        			}
-        		}
+        		probeC += this.rehash(this.nextCapacity());
         	}
         	
-        	int insert_idx = this.hash(key); //
+        	int h = this.keyHash(key);
+        	int insert_idx = this.indexOf(h);
         	while(this.table[insert_idx] !=null){ // if not null(occupied or tomb stone), linear probe until empty cell.
         		probeC ++;
         		insert_idx = (insert_idx+1)%this.table.length;
         	}
         	probeC ++; //probe for inserting to target cell.
-        	this.table[insert_idx] = new KVPair(key, value);
+        	this.store(insert_idx, new KVPair(key, value), h);
         	this.count ++;
         	return new Probes(value,probeC);
         }
@@ -118,12 +365,18 @@ public class LinearProbingHashTable extends OpenAddressingHashTable {
         if(key == null) {  // key is null
         	return new Probes(null,0);
         }
+        if(this.robinHood){
+        	int[] probes = new int[1];
+        	int address = this.robinHoodFind(key, probes);
+        	return new Probes(address < 0 ? null : this.table[address].getValue(), probes[0]);
+        }
     	
-    	int address = this.hash(key);
+    	int h = this.keyHash(key);
+    	int address = this.indexOf(h);
         int probeC = 1; 
         
         while(this.table[address] != null) {
-        	if(this.table[address].getKey().equals(key)){ // found matching
+        	if(this.matches(address, key, h)){ // found matching
         		return new Probes(this.table[address].getValue(), probeC);  
         	}
         	probeC ++;
@@ -148,17 +401,23 @@ public class LinearProbingHashTable extends OpenAddressingHashTable {
         if (key == null) {  // key is null
         	return new Probes(null, 0);
         }
+        if(this.robinHood){
+        	return this.robinHoodRemove(key);
+        }
         
-        int address = this.hash(key);
+        int h = this.keyHash(key);
+        int address = this.indexOf(h);
         int probeC=1; // probe counter
         
         if(this.soft_del){ //soft deletion
         	  while(this.table[address] != null) { //search
-              	if(this.table[address].getKey().equals(key)){ // found matching
-              		Probes ret = new Probes(this.table[address].getValue(), probeC); //return val.
+              	if(this.matches(address, key, h)){ // found matching
+              		String retVal = this.table[address].getValue(); //return val.
               		this.table[address] = this.TOMBSTONE; //mark for deletion
               		this.tombCount ++;
-              		return ret;	
+              		probeC += this.compactIfNeeded(); //rebuild without tombstones if there are too many of them.
+              		probeC += this.shrinkIfNeeded(); //give memory back if the table got too empty.
+              		return new Probes(retVal, probeC);
               	}
               	probeC ++;
               	address = (address+1)% this.table.length;
@@ -167,7 +426,7 @@ public class LinearProbingHashTable extends OpenAddressingHashTable {
         	
         }else {   //hard deletion
        	  while(this.table[address] != null) {  //search and delete.
-            	if(this.table[address].getKey().equals(key)){ // found matching
+            	if(this.matches(address, key, h)){ // found matching
             		String retVal = this.table[address].getValue(); //return val string
             		this.table[address] = null; //set cell ref to null
             		this.count --;
@@ -185,6 +444,7 @@ public class LinearProbingHashTable extends OpenAddressingHashTable {
             			address = (address+1)% this.table.length; //next cell 
             		}
             		probeC++; //probe that checked for null to terminate as the above loop doesn't run to increment probe for checking if null
+            		probeC += this.shrinkIfNeeded(); //give memory back if the table got too empty.
             		return new Probes(retVal, probeC);
             	}
             	//keep searching
@@ -203,7 +463,7 @@ public class LinearProbingHashTable extends OpenAddressingHashTable {
     @Override
     public boolean containsValue(String value) {   //check all key in the table for its value
        for(int i=0; i< this.table.length; i++) {
-    	   if(this.table[i].getValue().equals(value))
+    	   if(this.table[i] != null && this.table[i] != this.TOMBSTONE && this.table[i].getValue().equals(value))
     		   return true;
        }
        return false;
@@ -0,0 +1,416 @@
+package phonebook.hashes;
+
+import phonebook.utils.KVPair;
+import phonebook.utils.Probes;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.function.BiConsumer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * <p>{@link MappedHashTable} is a <b>read-only</b> {@link HashTable} served straight from a snapshot file, mapped in
+ * memory through a {@link MappedByteBuffer}. Opening a snapshot only checks its header: there is no deserialization,
+ * and the operating system pages the table in as searches touch it, so that a populated table is available right away
+ * instead of after re-inserting every pair. Snapshots are written once, by {@link #write(Collection, CollisionResolver, Path)}.</p>
+ *
+ * <p>A snapshot records the {@link CollisionResolver} it was written with, and lays the table out accordingly. All of
+ * the integers are big-endian:</p>
+ * <ol>
+ *     <li>A header of six {@code int}s: a magic number, the version of the format, the ordinal of the
+ *     {@link CollisionResolver}, the capacity, the number of pairs and the offset of the records.</li>
+ *     <li>The table. For the open addressing resolvers, {@code capacity} cells of two {@code int}s: the hash code of the
+ *     key, or -1 if the cell is empty, and the offset of the record of the pair. Linear and quadratic probing use the
+ *     probe sequences of {@link LinearProbingHashTable} and of {@link QuadraticProbingHashTable} over power-of-two
+ *     capacities, and {@link CollisionResolver#ORDERED_LINEAR_PROBING} keeps every cluster sorted by key, so that failed
+ *     searches stop early. {@link CollisionResolver#CUCKOO_HASHING} snapshots are laid out with linear probing, since a
+ *     table that is never written to has no use for the bounded insertions of cuckoo hashing. For {@link CollisionResolver#SEPARATE_CHAINING}, {@code capacity + 1} {@code int}s delimit
+ *     the chain of every bucket within an array of {@code count} cells, in which chains are stored contiguously.</li>
+ *     <li>The records: the length of the key in bytes, the key in UTF-8, the length of the value and the value.</li>
+ * </ol>
+ *
+ * <p>Open addressing tables are at most 50&#37; full, and separate chaining tables have about one pair per bucket. Cells
+ * are reduced to indices with {@link CapacityPolicy#POWER_OF_TWO}. Keys are hashed with a {@link HashFunction}, which a
+ * snapshot does not record: it must be opened with the function it was written with, such as
+ * {@link HashFunction#seeded(long)} with a seed stored next to it. Since offsets are {@code int}s, a snapshot must be
+ * smaller than 2GB. Searches only read the buffer with absolute accessors, so that any number of threads can search
+ * the same {@link MappedHashTable}.</p>
+ *
+ * @author Cheolhong Ahn
+ *
+ * @see HashTable
+ * @see CollisionResolver
+ * @see CapacityPolicy
+ */
+public class MappedHashTable implements HashTable {
+
+    /* ********************************************************************/
+    /* ** INSERT ANY PRIVATE METHODS OR FIELDS YOU WANT TO USE HERE: ******/
+    /* ********************************************************************/
+
+    private static final int MAGIC = 0x50424B31; // "PBK1"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 6 * Integer.BYTES;
+    private static final int CELL_BYTES = 2 * Integer.BYTES;
+    private static final int EMPTY = -1;
+    private static final int MIN_CAPACITY = 8;
+
+    private final ByteBuffer buffer;
+    private final CollisionResolver resolver;
+    private final HashFunction hashFunction;
+    private final int capacity, count, records;
+
+    private static int home(int keyHash, int capacity) {
+        return CapacityPolicy.POWER_OF_TWO.indexOf(keyHash, capacity);
+    }
+
+    // Next cell of a probe sequence, after j collisions.
+    private static int next(CollisionResolver resolver, int idx, int j, int capacity) {
+        return (idx + (resolver == CollisionResolver.QUADRATIC_PROBING ? j : 1)) & (capacity - 1);
+    }
+
+    private static int powerOfTwoAtLeast(int n) {
+        return Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(n, 1) - 1) << 1);
+    }
+
+    private MappedHashTable(ByteBuffer buffer, HashFunction hashFunction, Path file) throws IOException {
+        this.buffer = buffer;
+        this.hashFunction = hashFunction;
+        if(buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC)
+            throw new IOException(file + " is not a hash table snapshot.");
+        if(buffer.getInt(4) != VERSION)
+            throw new IOException(file + " has unsupported snapshot version " + buffer.getInt(4) + ".");
+        int ordinal = buffer.getInt(8);
+        capacity = buffer.getInt(12);
+        count = buffer.getInt(16);
+        records = buffer.getInt(20);
+        if(ordinal < 0 || ordinal >= CollisionResolver.values().length || Integer.bitCount(capacity) != 1 || count < 0
+                || records < HEADER_BYTES || records > buffer.capacity())
+            throw new IOException(file + " has a corrupt snapshot header.");
+        resolver = CollisionResolver.values()[ordinal];
+    }
+
+    // Compares the key of the record at offset with key, as unsigned bytes.
+    private int compareKey(int record, byte[] key) {
+        int length = buffer.getInt(record);
+        int common = Math.min(length, key.length);
+        for(int i = 0; i < common; i++) {
+            int c = Integer.compare(buffer.get(record + 4 + i) & 0xff, key[i] & 0xff);
+            if(c != 0) {
+                return c;
+            }
+        }
+        return Integer.compare(length, key.length);
+    }
+
+    private String keyOf(int record) {
+        byte[] key = new byte[buffer.getInt(record)];
+        buffer.get(record + 4, key);
+        return new String(key, UTF_8);
+    }
+
+    private String valueOf(int record) {
+        int at = record + 4 + buffer.getInt(record);
+        byte[] value = new byte[buffer.getInt(at)];
+        buffer.get(at + 4, value);
+        return new String(value, UTF_8);
+    }
+
+    /* ******************************************/
+    /*  IMPLEMENT THE FOLLOWING PUBLIC METHODS: */
+    /* **************************************** */
+
+    /**
+     * Writes the pairs as a snapshot laid out for the given {@link CollisionResolver}. The snapshot is written next
+     * to file first and then moved over it, so that file is never left half-written. If several pairs have the same
+     * key, the last one is kept, just like successive calls to {@link HashTable#put(String, String)} that update.
+     * @param pairs The pairs of the table.
+     * @param resolver The {@link CollisionResolver} whose layout the snapshot will follow.
+     * @param file The snapshot to create or replace.
+     * @throws IOException if the snapshot cannot be written.
+     * @throws IllegalArgumentException if a pair has a {@code null} key or value, or if the snapshot would exceed 2GB.
+     */
+    public static void write(Collection<KVPair> pairs, CollisionResolver resolver, Path file) throws IOException {
+        write(pairs, resolver, file, HashFunction.STRING_HASH_CODE);
+    }
+
+    /**
+     * Writes the pairs as a snapshot like {@link #write(Collection, CollisionResolver, Path)}, with their keys hashed
+     * with hashFunction. The snapshot has to be opened with {@link #open(Path, HashFunction)} and the same function.
+     * @param pairs The pairs of the table.
+     * @param resolver The {@link CollisionResolver} whose layout the snapshot will follow.
+     * @param file The snapshot to create or replace.
+     * @param hashFunction The {@link HashFunction} to hash every key with.
+     * @throws IOException if the snapshot cannot be written.
+     * @throws IllegalArgumentException if a pair has a {@code null} key or value, if the snapshot would exceed 2GB, or
+     * if hashFunction is {@code null}.
+     */
+    public static void write(Collection<KVPair> pairs, CollisionResolver resolver, Path file, HashFunction hashFunction)
+            throws IOException {
+        if(hashFunction == null)
+            throw new IllegalArgumentException("Hash function cannot be null.");
+        Map<String, String> unique = new LinkedHashMap<>();
+        for(KVPair pair : pairs) {
+            if(pair.getKey() == null || pair.getValue() == null)
+                throw new IllegalArgumentException("Provided: key=" + pair.getKey() + " and value=" + pair.getValue());
+            unique.put(pair.getKey(), pair.getValue());
+        }
+        int n = unique.size();
+        byte[][] keys = new byte[n][], values = new byte[n][];
+        int[] hashes = new int[n];
+        int r = 0;
+        for(Map.Entry<String, String> pair : unique.entrySet()) {
+            keys[r] = pair.getKey().getBytes(UTF_8);
+            values[r] = pair.getValue().getBytes(UTF_8);
+            hashes[r++] = CapacityPolicy.keyHash(hashFunction, pair.getKey());
+        }
+
+        int capacity;
+        int[] buckets = null, cells; // cells hold record indices, EMPTY for empty cells.
+        if(resolver == CollisionResolver.SEPARATE_CHAINING) {
+            capacity = powerOfTwoAtLeast(n);
+            buckets = new int[capacity + 1];
+            for(r = 0; r < n; r++) {
+                buckets[home(hashes[r], capacity) + 1]++;
+            }
+            for(int b = 0; b < capacity; b++) {
+                buckets[b + 1] += buckets[b];
+            }
+            cells = new int[n];
+            int[] fill = Arrays.copyOf(buckets, capacity);
+            for(r = 0; r < n; r++) {
+                cells[fill[home(hashes[r], capacity)]++] = r;
+            }
+        } else {
+            capacity = powerOfTwoAtLeast(2 * n);
+            cells = new int[capacity];
+            Arrays.fill(cells, EMPTY);
+            for(r = 0; r < n; r++) {
+                int current = r, idx = home(hashes[r], capacity);
+                for(int j = 1; cells[idx] != EMPTY; j++) {
+                    if(resolver == CollisionResolver.ORDERED_LINEAR_PROBING
+                            && Arrays.compareUnsigned(keys[cells[idx]], keys[current]) > 0) { // smaller keys first.
+                        int displaced = cells[idx];
+                        cells[idx] = current;
+                        current = displaced;
+                    }
+                    idx = next(resolver, idx, j, capacity);
+                }
+                cells[idx] = current;
+            }
+        }
+
+        long table = (buckets == null ? 0 : (long) buckets.length * Integer.BYTES) + (long) cells.length * CELL_BYTES;
+        long size = HEADER_BYTES + table;
+        int[] offsets = new int[n];
+        for(r = 0; r < n; r++) {
+            offsets[r] = (int) size;
+            size += 2 * Integer.BYTES + keys[r].length + values[r].length;
+            if(size > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("A snapshot of " + n + " pairs would exceed 2GB.");
+        }
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try(FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            out.putInt(MAGIC).putInt(VERSION).putInt(resolver.ordinal()).putInt(capacity).putInt(n)
+                    .putInt((int) (HEADER_BYTES + table));
+            if(buckets != null) {
+                for(int start : buckets) {
+                    out.putInt(start);
+                }
+            }
+            for(int cell : cells) {
+                out.putInt(cell == EMPTY ? EMPTY : hashes[cell]).putInt(cell == EMPTY ? 0 : offsets[cell]);
+            }
+            for(r = 0; r < n; r++) {
+                out.putInt(keys[r].length).put(keys[r]).putInt(values[r].length).put(values[r]);
+            }
+            out.force();
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Maps a snapshot written by {@link #write(Collection, CollisionResolver, Path)}. The mapping stays valid after this
+     * returns, and is released when this table is garbage collected.
+     * @param file The snapshot.
+     * @return A {@link MappedHashTable} over the snapshot.
+     * @throws IOException if the file cannot be mapped, or is not a snapshot.
+     */
+    public static MappedHashTable open(Path file) throws IOException {
+        return open(file, HashFunction.STRING_HASH_CODE);
+    }
+
+    /**
+     * Maps a snapshot written by {@link #write(Collection, CollisionResolver, Path, HashFunction)}.
+     * @param file The snapshot.
+     * @param hashFunction The {@link HashFunction} the snapshot was written with. Searches with another one miss.
+     * @return A {@link MappedHashTable} over the snapshot.
+     * @throws IOException if the file cannot be mapped, or is not a snapshot.
+     * @throws IllegalArgumentException if hashFunction is {@code null}.
+     */
+    public static MappedHashTable open(Path file, HashFunction hashFunction) throws IOException {
+        if(hashFunction == null)
+            throw new IllegalArgumentException("Hash function cannot be null.");
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if(channel.size() > Integer.MAX_VALUE)
+                throw new IOException(file + " is not a hash table snapshot.");
+            return new MappedHashTable(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), hashFunction, file);
+        }
+    }
+
+    /**
+     * Always throws, since a {@link MappedHashTable} is read-only.
+     * @throws UnsupportedOperationException always.
+     */
+    @Override
+    public Probes put(String key, String value) {
+        throw new UnsupportedOperationException("Snapshots are read-only.");
+    }
+
+    @Override
+    public Probes get(String key) {
+        if(key == null) {
+            return new Probes(null, 0);
+        }
+        int h = CapacityPolicy.keyHash(hashFunction, key);
+        byte[] bytes = key.getBytes(UTF_8);
+        int idx = home(h, capacity);
+        int probeC = 1;
+        if(resolver == CollisionResolver.SEPARATE_CHAINING) {
+            int end = buffer.getInt(HEADER_BYTES + (idx + 1) * Integer.BYTES);
+            int chain = HEADER_BYTES + (capacity + 1) * Integer.BYTES;
+            for(int e = buffer.getInt(HEADER_BYTES + idx * Integer.BYTES); e < end; e++) {
+                int at = chain + e * CELL_BYTES;
+                if(buffer.getInt(at) == h && compareKey(buffer.getInt(at + 4), bytes) == 0) {
+                    return new Probes(valueOf(buffer.getInt(at + 4)), probeC);
+                }
+                probeC++;
+            }
+            return new Probes(null, probeC);
+        }
+        for(int j = 1; ; j++) {
+            int at = HEADER_BYTES + idx * CELL_BYTES;
+            int cellHash = buffer.getInt(at);
+            if(cellHash == EMPTY) {
+                return new Probes(null, probeC);
+            }
+            if(cellHash == h || resolver == CollisionResolver.ORDERED_LINEAR_PROBING) {
+                int c = compareKey(buffer.getInt(at + 4), bytes);
+                if(c == 0) {
+                    return new Probes(valueOf(buffer.getInt(at + 4)), probeC);
+                }
+                if(c > 0 && resolver == CollisionResolver.ORDERED_LINEAR_PROBING) { // key would have been here.
+                    return new Probes(null, probeC);
+                }
+            }
+            probeC++;
+            idx = next(resolver, idx, j, capacity);
+        }
+    }
+
+    /**
+     * Always throws, since a {@link MappedHashTable} is read-only.
+     * @throws UnsupportedOperationException always.
+     */
+    @Override
+    public Probes remove(String key) {
+        throw new UnsupportedOperationException("Snapshots are read-only.");
+    }
+
+    @Override
+    public boolean containsKey(String key) {
+        return get(key).getValue() != null;
+    }
+
+    @Override
+    public boolean containsValue(String value) {
+        if(value == null) {
+            return false;
+        }
+        byte[] bytes = value.getBytes(UTF_8);
+        int record = records;
+        for(int r = 0; r < count; r++) {
+            int at = record + 4 + buffer.getInt(record);
+            int length = buffer.getInt(at);
+            if(length == bytes.length) {
+                byte[] stored = new byte[length];
+                buffer.get(at + 4, stored);
+                if(Arrays.equals(stored, bytes)) {
+                    return true;
+                }
+            }
+            record = at + 4 + length;
+        }
+        return false;
+    }
+
+    /**
+     * Reads every pair of the snapshot, in the order they were written. The records are contiguous, so this is a
+     * single sequential pass over the file.
+     * @param action Called on the key and the value of every pair.
+     */
+    public void forEach(BiConsumer<String, String> action) {
+        int record = records;
+        for(int r = 0; r < count; r++) {
+            byte[] key = new byte[buffer.getInt(record)];
+            buffer.get(record + 4, key);
+            action.accept(new String(key, UTF_8), valueOf(record));
+            int at = record + 4 + key.length;
+            record = at + 4 + buffer.getInt(at);
+        }
+    }
+
+    /**
+     * Walks the cells of the snapshot, or the entries of its chains under {@link CollisionResolver#SEPARATE_CHAINING},
+     * which, unlike its records, can be split in ranges. Every pair is decoded into a new {@link KVPair}; {@link
+     * #forEach(BiConsumer)} is the faster way to read every pair on a single thread.
+     * @return A {@link Spliterator} that splits the snapshot in ranges of cells.
+     */
+    @Override
+    public Spliterator<KVPair> spliterator() {
+        if(resolver == CollisionResolver.SEPARATE_CHAINING) {
+            int chain = HEADER_BYTES + (capacity + 1) * Integer.BYTES;
+            return SlotSpliterator.ofCells(count, count, true, e -> {
+                int record = buffer.getInt(chain + e * CELL_BYTES + 4);
+                return new KVPair(keyOf(record), valueOf(record));
+            });
+        }
+        return SlotSpliterator.ofCells(capacity, count, true, idx -> {
+            int at = HEADER_BYTES + idx * CELL_BYTES;
+            return buffer.getInt(at) == EMPTY ? null : new KVPair(keyOf(buffer.getInt(at + 4)), valueOf(buffer.getInt(at + 4)));
+        });
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the {@link CollisionResolver} whose layout the snapshot follows.
+     * @return The {@link CollisionResolver} the snapshot was written with.
+     */
+    public CollisionResolver getCollisionResolver() {
+        return resolver;
+    }
+}
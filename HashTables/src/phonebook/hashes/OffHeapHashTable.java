@@ -0,0 +1,473 @@
+package phonebook.hashes;
+
+import phonebook.utils.KVPair;
+import phonebook.utils.PowerOfTwoGenerator;
+import phonebook.utils.Probes;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Spliterator;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
+/**
+ * <p>{@link OffHeapHashTable} is a <b>Linear Probing</b> {@link HashTable} which keeps both its cells and the characters of
+ * its pairs <em>off-heap</em>, in direct {@link ByteBuffer}s. The garbage collector never looks inside a direct buffer, so
+ * however many pairs the table holds, it only adds a few dozen small objects to trace; on a table of hundreds of millions
+ * of pairs, where an on-heap table would hold as many {@link phonebook.utils.KVPair}s and twice as many {@link String}s,
+ * this is the difference between collections that take seconds and collections that do not notice the table.</p>
+ *
+ * <p>The cells are 12 bytes each: the reference to the <em>record</em> of their pair plus one, 0 for an empty cell, and
+ * the hash code of its key. They are split in <em>pages</em> of 2^20 cells, so that capacities can go beyond the 2 GiB
+ * a single buffer can hold. A record holds the key and the value of a pair, after a header with the length of each, in one
+ * byte per character if all of their characters are Latin-1, and two otherwise. Records are appended to <em>slabs</em>,
+ * which start at 64 KiB and double up to {@link #MAX_SLAB} bytes. Capacities follow {@link CapacityPolicy#POWER_OF_TWO},
+ * and the table is kept at most 50&#37; full. Removals shift the rest of their cluster back instead of leaving tombstones
+ * behind, and updates append a new record; the records left behind are reclaimed when the table is rehashed, which happens
+ * when it grows, or in place when they take up more than half of the slabs. Inserting a key that is already in the table
+ * <b>updates</b> its value.</p>
+ *
+ * <p>Off-heap memory is not bounded by the heap, so capacity is managed explicitly: tables meant to grow large should be
+ * created with the number of pairs they are expected to hold, so that they never go through the rehashes on the way, each
+ * of which briefly needs the memory of both the old and the new table. {@link #getOffHeapBytes()} reports the memory
+ * held, and {@link #close()} gives it up as soon as the buffers are collected, instead of whenever the table would be.</p>
+ *
+ * @author Cheolhong Ahn
+ *
+ * @see ArenaHashTable
+ * @see CapacityPolicy
+ * @see ByteBuffer#allocateDirect(int)
+ */
+public class OffHeapHashTable implements HashTable, Closeable {
+
+    /**
+     * The size slabs grow up to. A record that does not fit in one gets a slab of its own.
+     */
+    public static final int MAX_SLAB = 1 << 26;
+
+    /* ********************************************************************/
+    /* ** INSERT ANY PRIVATE METHODS OR FIELDS YOU WANT TO USE HERE: ******/
+    /* ********************************************************************/
+
+    private static final int SLOT_BYTES = Long.BYTES + Integer.BYTES;
+    private static final int PAGE_BITS = 20, PAGE_MASK = (1 << PAGE_BITS) - 1;
+    private static final int FIRST_SLAB = 1 << 16;
+    private static final int MIN_GARBAGE = 1 << 16; // bytes of garbage below which the slabs are never compacted.
+
+    // The records of a table: slabs filled one after the other, a reference being the slab in its high 32 bits and the
+    // offset of the record in its low ones. A record is the headers of its key and of its value, length << 1 | wide, then
+    // their characters.
+    private static final class Records {
+        ByteBuffer[] slabs = new ByteBuffer[4];
+        int slabCount, top; // slabs in use, and first free byte of the last one.
+        long allocatedBytes, garbageBytes, slabBytes;
+
+        private static boolean wide(String s) {
+            for(int i = 0; i < s.length(); i++) {
+                if(s.charAt(i) > 0xff) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // Bytes of the characters of the string with the given header.
+        private static int bytes(int header) {
+            return (header & 1) == 0 ? header >>> 1 : header & ~1;
+        }
+
+        // Makes room for size bytes at the top of the last slab.
+        private void reserve(int size) {
+            if(slabCount > 0 && top + size <= slabs[slabCount - 1].capacity()) {
+                return;
+            }
+            int length = slabCount == 0 ? FIRST_SLAB : Math.min(MAX_SLAB, 2 * slabs[slabCount - 1].capacity());
+            if(slabCount == slabs.length) {
+                slabs = Arrays.copyOf(slabs, 2 * slabCount);
+            }
+            ByteBuffer slab = ByteBuffer.allocateDirect(Math.max(length, size)).order(ByteOrder.nativeOrder());
+            slabs[slabCount++] = slab;
+            slabBytes += slab.capacity();
+            top = 0;
+        }
+
+        private static int write(ByteBuffer slab, int offset, String s, boolean wide) {
+            for(int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if(wide) {
+                    slab.put(offset++, (byte) (c >>> 8));
+                }
+                slab.put(offset++, (byte) c);
+            }
+            return offset;
+        }
+
+        long add(String key, String value) {
+            boolean keyWide = wide(key), valueWide = wide(value);
+            long size = 2 * Integer.BYTES + (keyWide ? 2L : 1L) * key.length() + (valueWide ? 2L : 1L) * value.length();
+            if(size > Integer.MAX_VALUE - 8) {
+                throw new IllegalArgumentException("A pair of " + size + " bytes cannot be stored off-heap.");
+            }
+            reserve((int) size);
+            ByteBuffer slab = slabs[slabCount - 1];
+            int offset = top;
+            slab.putInt(offset, key.length() << 1 | (keyWide ? 1 : 0));
+            slab.putInt(offset + Integer.BYTES, value.length() << 1 | (valueWide ? 1 : 0));
+            write(slab, write(slab, offset + 2 * Integer.BYTES, key, keyWide), value, valueWide);
+            top += (int) size;
+            allocatedBytes += size;
+            return (long) (slabCount - 1) << 32 | offset;
+        }
+
+        private ByteBuffer slab(long ref) {
+            return slabs[(int) (ref >>> 32)];
+        }
+
+        int size(long ref) {
+            ByteBuffer slab = slab(ref);
+            int offset = (int) ref;
+            return 2 * Integer.BYTES + bytes(slab.getInt(offset)) + bytes(slab.getInt(offset + Integer.BYTES));
+        }
+
+        // Compares the string with the given header at offset of slab with s.
+        private static boolean equals(ByteBuffer slab, int offset, int header, String s) {
+            int n = header >>> 1;
+            if(n != s.length()) {
+                return false;
+            }
+            boolean wide = (header & 1) != 0;
+            for(int i = 0; i < n; i++) {
+                char c = wide ? (char) ((slab.get(offset++) & 0xff) << 8 | (slab.get(offset++) & 0xff)) : (char) (slab.get(offset++) & 0xff);
+                if(c != s.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static String string(ByteBuffer slab, int offset, int header) {
+            byte[] bytes = new byte[bytes(header)];
+            slab.get(offset, bytes);
+            if((header & 1) == 0) {
+                return new String(bytes, ISO_8859_1);
+            }
+            char[] chars = new char[bytes.length / 2]; // not decoded as UTF-16BE, which would replace lone surrogates.
+            for(int i = 0; i < chars.length; i++) {
+                chars[i] = (char) ((bytes[2 * i] & 0xff) << 8 | bytes[2 * i + 1] & 0xff);
+            }
+            return new String(chars);
+        }
+
+        boolean keyEquals(long ref, String key) {
+            ByteBuffer slab = slab(ref);
+            int offset = (int) ref;
+            return equals(slab, offset + 2 * Integer.BYTES, slab.getInt(offset), key);
+        }
+
+        boolean valueEquals(long ref, String value) {
+            ByteBuffer slab = slab(ref);
+            int offset = (int) ref, keyHeader = slab.getInt(offset);
+            return equals(slab, offset + 2 * Integer.BYTES + bytes(keyHeader), slab.getInt(offset + Integer.BYTES), value);
+        }
+
+        String key(long ref) {
+            ByteBuffer slab = slab(ref);
+            int offset = (int) ref;
+            return string(slab, offset + 2 * Integer.BYTES, slab.getInt(offset));
+        }
+
+        String value(long ref) {
+            ByteBuffer slab = slab(ref);
+            int offset = (int) ref, keyHeader = slab.getInt(offset);
+            return string(slab, offset + 2 * Integer.BYTES + bytes(keyHeader), slab.getInt(offset + Integer.BYTES));
+        }
+
+        // Copies the record at ref to target. Returns the reference of the copy.
+        long copyTo(long ref, Records target) {
+            int size = size(ref);
+            target.reserve(size);
+            long copy = (long) (target.slabCount - 1) << 32 | target.top;
+            target.slabs[target.slabCount - 1].put(target.top, slab(ref), (int) ref, size);
+            target.top += size;
+            target.allocatedBytes += size;
+            return copy;
+        }
+    }
+
+    private final PowerOfTwoGenerator powerOfTwoGenerator = new PowerOfTwoGenerator();
+    private ByteBuffer[] pages;
+    private int capacity, count;
+    private Records records = new Records();
+
+    private final HashFunction hashFunction;
+
+    private int hash(String key) {
+        return CapacityPolicy.keyHash(hashFunction, key);
+    }
+
+    private void allocate(int capacity) {
+        this.capacity = capacity;
+        pages = new ByteBuffer[Math.max(1, capacity >>> PAGE_BITS)];
+        for(int p = 0; p < pages.length; p++) { // direct buffers are zeroed, i.e all cells are empty.
+            pages[p] = ByteBuffer.allocateDirect(Math.min(capacity, 1 << PAGE_BITS) * SLOT_BYTES).order(ByteOrder.nativeOrder());
+        }
+    }
+
+    private void ensureOpen() {
+        if(pages == null) {
+            throw new IllegalStateException("The table is closed.");
+        }
+    }
+
+    // Reference of the record of cell idx, plus one. 0 if the cell is empty.
+    private long cell(int idx) {
+        return pages[idx >>> PAGE_BITS].getLong((idx & PAGE_MASK) * SLOT_BYTES);
+    }
+
+    private int hashAt(int idx) {
+        return pages[idx >>> PAGE_BITS].getInt((idx & PAGE_MASK) * SLOT_BYTES + Long.BYTES);
+    }
+
+    private void store(int idx, long cell, int h) {
+        ByteBuffer page = pages[idx >>> PAGE_BITS];
+        page.putLong((idx & PAGE_MASK) * SLOT_BYTES, cell);
+        page.putInt((idx & PAGE_MASK) * SLOT_BYTES + Long.BYTES, h);
+    }
+
+    // Searches for key. Returns its cell, or -1 if the search failed, with the probes used added to probes[0].
+    private int find(String key, int h, int[] probes) {
+        int mask = capacity - 1;
+        int idx = CapacityPolicy.POWER_OF_TWO.indexOf(h, capacity);
+        probes[0]++;
+        for(long cell = cell(idx); cell != 0; cell = cell(idx)) {
+            if(hashAt(idx) == h && records.keyEquals(cell - 1, key)) {
+                return idx;
+            }
+            probes[0]++;
+            idx = (idx + 1) & mask;
+        }
+        return -1;
+    }
+
+    // Stores the reference of a record whose key is not in the table in the first empty cell of its cluster. Returns the probes it took.
+    private int insert(long ref, int h) {
+        int mask = capacity - 1;
+        int idx = CapacityPolicy.POWER_OF_TWO.indexOf(h, capacity);
+        int probeC = 1;
+        while(cell(idx) != 0) {
+            probeC++;
+            idx = (idx + 1) & mask;
+        }
+        store(idx, ref + 1, h);
+        return probeC;
+    }
+
+    // Moves every pair into new pages of the given capacity, and their records into new slabs. Returns the probes it took.
+    private int rehash(int newCapacity) {
+        ByteBuffer[] oldPages = pages;
+        int oldCapacity = capacity;
+        Records oldRecords = records;
+        records = new Records();
+        allocate(newCapacity);
+        int probeC = 0;
+        for(int idx = 0; idx < oldCapacity; idx++) {
+            ByteBuffer page = oldPages[idx >>> PAGE_BITS];
+            long cell = page.getLong((idx & PAGE_MASK) * SLOT_BYTES);
+            if(cell != 0) {
+                probeC += 1 + insert(oldRecords.copyTo(cell - 1, records), page.getInt((idx & PAGE_MASK) * SLOT_BYTES + Long.BYTES));
+            }
+        }
+        return probeC;
+    }
+
+    // Rehashes the table in place if garbage takes up most of the slabs. Returns the probes it took.
+    private int compactIfNeeded() {
+        long garbage = records.garbageBytes;
+        return garbage > MIN_GARBAGE && 2 * garbage > records.allocatedBytes ? rehash(capacity) : 0;
+    }
+
+    /* ******************************************/
+    /*  IMPLEMENT THE FOLLOWING PUBLIC METHODS: */
+    /* **************************************** */
+
+    /**
+     * Default constructor. Initializes the cells with a size equal to the starting value of {@link PowerOfTwoGenerator}.
+     * The first slab is allocated with the first pair.
+     */
+    public OffHeapHashTable() {
+        this(0);
+    }
+
+    /**
+     * Constructor with an expected size. Initializes the cells with the least power of two that holds expectedSize pairs
+     * without resizing.
+     * @param expectedSize The number of pairs the table is expected to hold.
+     * @throws IllegalArgumentException if expectedSize is negative.
+     * @throws IllegalStateException if expectedSize is more than 2^29 pairs, the most a table can hold.
+     */
+    public OffHeapHashTable(int expectedSize) {
+        this(expectedSize, HashFunction.STRING_HASH_CODE);
+    }
+
+    /**
+     * Constructor with an expected size and the function keys are hashed with.
+     * @param expectedSize The number of pairs the table is expected to hold.
+     * @param hashFunction The {@link HashFunction} to hash every key with.
+     * @throws IllegalArgumentException if expectedSize is negative or hashFunction is {@code null}.
+     * @throws IllegalStateException if expectedSize is more than 2^29 pairs, the most a table can hold.
+     */
+    public OffHeapHashTable(int expectedSize, HashFunction hashFunction) {
+        if(hashFunction == null) {
+            throw new IllegalArgumentException("Hash function cannot be null.");
+        }
+        this.hashFunction = hashFunction;
+        if(expectedSize < 0) {
+            throw new IllegalArgumentException("Expected size must not be negative, got " + expectedSize + ".");
+        }
+        int capacity = powerOfTwoGenerator.getCurrPower();
+        while(expectedSize > 0.5 * capacity) {
+            capacity = powerOfTwoGenerator.getNextPower();
+        }
+        allocate(capacity);
+    }
+
+    /**
+     * Returns the function keys are hashed with.
+     * @return The {@link HashFunction} given to the constructor, {@link HashFunction#STRING_HASH_CODE} by default.
+     */
+    public HashFunction getHashFunction() {
+        return hashFunction;
+    }
+
+    @Override
+    public Probes put(String key, String value) {
+        if (key == null || value == null) {
+            throw new IllegalArgumentException();
+        }
+        ensureOpen();
+        int h = hash(key);
+        int[] probes = {0};
+        int idx = find(key, h, probes);
+        if(idx >= 0) { // a new record for the new value.
+            records.garbageBytes += records.size(cell(idx) - 1);
+            store(idx, records.add(key, value) + 1, h);
+            return new Probes(value, probes[0] + compactIfNeeded());
+        }
+        if(count + 1 > 0.5 * capacity) {
+            probes[0] += rehash(powerOfTwoGenerator.getNextPower());
+        }
+        probes[0] += insert(records.add(key, value), h);
+        count++;
+        return new Probes(value, probes[0]);
+    }
+
+    @Override
+    public Probes get(String key) {
+        if(key == null) {
+            return new Probes(null, 0);
+        }
+        ensureOpen();
+        int[] probes = {0};
+        int idx = find(key, hash(key), probes);
+        return new Probes(idx < 0 ? null : records.value(cell(idx) - 1), probes[0]);
+    }
+
+    @Override
+    public Probes remove(String key) {
+        if(key == null) {
+            return new Probes(null, 0);
+        }
+        ensureOpen();
+        int[] probes = {0};
+        int hole = find(key, hash(key), probes);
+        if(hole < 0) {
+            return new Probes(null, probes[0]);
+        }
+        long ref = cell(hole) - 1;
+        String value = records.value(ref);
+        records.garbageBytes += records.size(ref);
+        count--;
+        int mask = capacity - 1;
+        for(int idx = (hole + 1) & mask; cell(idx) != 0; idx = (idx + 1) & mask) { // shift the rest of the cluster back.
+            probes[0]++;
+            int home = CapacityPolicy.POWER_OF_TWO.indexOf(hashAt(idx), capacity);
+            if(((idx - home) & mask) >= ((idx - hole) & mask)) { // home is not between hole and idx.
+                store(hole, cell(idx), hashAt(idx));
+                hole = idx;
+            }
+        }
+        store(hole, 0, 0);
+        probes[0]++; // probe that found the end of the cluster.
+        return new Probes(value, probes[0] + compactIfNeeded());
+    }
+
+    @Override
+    public boolean containsKey(String key) {
+        if(key == null) {
+            return false;
+        }
+        ensureOpen();
+        return find(key, hash(key), new int[1]) >= 0;
+    }
+
+    @Override
+    public boolean containsValue(String value) {
+        if(value == null) {
+            return false;
+        }
+        ensureOpen();
+        for(int idx = 0; idx < capacity; idx++) {
+            long cell = cell(idx);
+            if(cell != 0 && records.valueEquals(cell - 1, value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Walks the full cells of the table. Keys and values are decoded from the slabs, so every pair is a new {@link KVPair}.
+     * @return A {@link Spliterator} that splits the table in ranges of cells.
+     * @throws IllegalStateException if this is closed.
+     */
+    @Override
+    public Spliterator<KVPair> spliterator() {
+        ensureOpen();
+        Records r = records;
+        return SlotSpliterator.ofCells(capacity, count, true, i -> {
+            long cell = cell(i);
+            return cell == 0 ? null : new KVPair(r.key(cell - 1), r.value(cell - 1));
+        });
+    }
+
+    /**
+     * Returns the off-heap memory held by this: its cells, and its slabs, full or not.
+     * @return The capacity in bytes of every direct buffer of this, 0 once it is closed.
+     */
+    public long getOffHeapBytes() {
+        return pages == null ? 0 : (long) pages.length * pages[0].capacity() + records.slabBytes;
+    }
+
+    /**
+     * Drops every buffer of this, so that their memory is given back as soon as they are collected. The table cannot be
+     * used afterwards, except for {@link #size()} and {@link #capacity()}, which report 0.
+     */
+    @Override
+    public void close() {
+        pages = null;
+        records = new Records();
+        count = capacity = 0;
+    }
+}
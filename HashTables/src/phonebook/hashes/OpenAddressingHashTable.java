@@ -1,7 +1,12 @@
 package phonebook.hashes;
 
 import phonebook.utils.KVPair;
+import phonebook.utils.PowerOfTwoGenerator;
 import phonebook.utils.PrimeGenerator;
+import phonebook.utils.Probes;
+
+import java.util.Collection;
+import java.util.Spliterator;
 
 /**
  * <p>{@code OpenAddressingHashTable} is an {@code abstract} class that models <b>openly addressed hash tables</b>, i.e
@@ -31,6 +36,8 @@ import phonebook.utils.PrimeGenerator;
  * @see LinearProbingHashTable
  * @see OrderedLinearProbingHashTable
  * @see QuadraticProbingHashTable
+ * @see HashFunction
+ * @see ResizePolicy
  */
 public abstract class OpenAddressingHashTable implements HashTable{
 
@@ -105,4 +112,317 @@ public abstract class OpenAddressingHashTable implements HashTable{
     /* *** ADD ANY ADDITIONAL PROTECTED FIELDS OR METHODS HERE: ****** */
     /* *************************************************************** */
 
+    /**
+     * A 1D array parallel to {@link #table} which caches the (masked) hash code of the key stored in every
+     * cell. Probe loops compare these {@code int}s first and only dereference the {@link KVPair} and call
+     * {@link String#equals(Object)} when the hash codes match, so most non-matching cells are rejected with
+     * a sequential scan over primitive storage. The entry of a {@code null} or {@link #TOMBSTONE} cell is
+     * meaningless.
+     */
+    protected int[] hashCodes;
+
+    /**
+     * Returns the full hash code of key, i.e the value cached in {@link #hashCodes}, before it is reduced
+     * to an index of the table.
+     * @param key The {@link String} key to find the hash code of.
+     * @return The hash code of key as produced by {@link #hashFunction}, but with the top bit masked.
+     */
+    protected int keyHash(String key) {
+        return CapacityPolicy.keyHash(hashFunction, key);
+    }
+
+    /**
+     * The function keys are hashed with, {@link HashFunction#STRING_HASH_CODE} unless {@link #setHashFunction(HashFunction)}
+     * is called. Under the default, {@code indexOf(keyHash(key)) == hash(key)} as long as the capacity is prime.
+     */
+    protected HashFunction hashFunction = HashFunction.STRING_HASH_CODE;
+
+    /**
+     * Sets the function keys are hashed with. Since the cached hash codes of {@link #hashCodes} come from the previous
+     * function, the table must not hold any pair; tombstones left behind are dropped.
+     * @param hashFunction The {@link HashFunction} to hash every key with from now on.
+     * @throws IllegalArgumentException if hashFunction is {@code null}.
+     * @throws IllegalStateException if the table is not empty.
+     */
+    public void setHashFunction(HashFunction hashFunction) {
+        if (hashFunction == null) {
+            throw new IllegalArgumentException("Hash function cannot be null.");
+        }
+        if (size() != 0) {
+            throw new IllegalStateException("Cannot change the hash function of a table with " + size() + " pairs.");
+        }
+        this.hashFunction = hashFunction;
+        if (count != 0) {
+            rehash(table.length);
+        }
+    }
+
+    /**
+     * Returns the function keys are hashed with.
+     * @return The last {@link HashFunction} given to {@link #setHashFunction(HashFunction)}, {@link HashFunction#STRING_HASH_CODE} by default.
+     */
+    public HashFunction getHashFunction() {
+        return hashFunction;
+    }
+
+    /**
+     * The way the capacity of the table is chosen and hash codes are reduced to cells. {@link CapacityPolicy#PRIME} unless
+     * a subclass picks otherwise in {@link #initCapacity(CapacityPolicy)}.
+     */
+    protected CapacityPolicy capacityPolicy = CapacityPolicy.PRIME;
+
+    /**
+     * A {@link PowerOfTwoGenerator} instance which will be used for resizings of the table under
+     * {@link CapacityPolicy#POWER_OF_TWO}, in place of {@link #primeGenerator}.
+     */
+    protected PowerOfTwoGenerator powerOfTwoGenerator;
+
+    /**
+     * Reduces a hash code produced by {@link #keyHash(String)} to an index of the table, according to
+     * {@link #capacityPolicy}.
+     * @param keyHash A hash code produced by {@link #keyHash(String)}.
+     * @return The home cell of the keys with that hash code.
+     */
+    protected int indexOf(int keyHash) {
+        return capacityPolicy.indexOf(keyHash, table.length);
+    }
+
+    /**
+     * Sets the {@link CapacityPolicy} of this, creates the generator of its capacities and allocates the
+     * internal storage with the first of them: 7 cells for {@link CapacityPolicy#PRIME}, 8 for
+     * {@link CapacityPolicy#POWER_OF_TWO}.
+     * @param policy The {@link CapacityPolicy} to follow from now on.
+     */
+    protected void initCapacity(CapacityPolicy policy) {
+        capacityPolicy = policy;
+        primeGenerator = new PrimeGenerator();
+        powerOfTwoGenerator = new PowerOfTwoGenerator();
+        allocate(policy == CapacityPolicy.PRIME ? primeGenerator.getCurrPrime() : powerOfTwoGenerator.getCurrPower());
+        minCapacity = table.length;
+    }
+
+    /**
+     * Returns the capacity the table should be enlarged to, according to {@link #capacityPolicy}.
+     * @return {@link PrimeGenerator#getNextPrime()} or {@link PowerOfTwoGenerator#getNextPower()}.
+     */
+    protected int nextCapacity() {
+        return capacityPolicy == CapacityPolicy.PRIME ? primeGenerator.getNextPrime() : powerOfTwoGenerator.getNextPower();
+    }
+
+    /**
+     * Returns the capacity the table should be shrunk to, according to {@link #capacityPolicy}.
+     * @return {@link PrimeGenerator#getPreviousPrime()} or {@link PowerOfTwoGenerator#getPreviousPower()}.
+     */
+    protected int previousCapacity() {
+        return capacityPolicy == CapacityPolicy.PRIME ? primeGenerator.getPreviousPrime() : powerOfTwoGenerator.getPreviousPower();
+    }
+
+    /**
+     * Replaces the internal storage with empty arrays of the given capacity.
+     * @param capacity The new length of {@link #table} and {@link #hashCodes}.
+     */
+    protected void allocate(int capacity) {
+        table = new KVPair[capacity];
+        hashCodes = new int[capacity];
+    }
+
+    /**
+     * Stores pair in the cell idx, along with its cached hash code.
+     * @param idx The cell to write.
+     * @param pair The {@link KVPair} to store.
+     * @param keyHash The hash code of the key of pair, as produced by {@link #keyHash(String)}.
+     */
+    protected void store(int idx, KVPair pair, int keyHash) {
+        table[idx] = pair;
+        hashCodes[idx] = keyHash;
+    }
+
+    /**
+     * Checks whether the cell idx, which must not be {@code null}, holds key. Tombstones never match.
+     * @param idx The cell to check.
+     * @param key The key we are searching for.
+     * @param keyHash The hash code of key, as produced by {@link #keyHash(String)}.
+     * @return {@code true} if, and only if, the cell idx holds a live pair with key key.
+     */
+    protected boolean matches(int idx, String key, int keyHash) {
+        return hashCodes[idx] == keyHash && table[idx] != TOMBSTONE && table[idx].getKey().equals(key);
+    }
+
+    /**
+     * Moves every live pair of the table into a new table of the given capacity, in the way the subclass places its
+     * pairs. Tombstones are not carried over, so {@link #count} ends up equal to {@link #size()} and {@link #tombCount} to 0.
+     * @param capacity The length of the new table: a capacity provided by {@link #nextCapacity()} or {@link #previousCapacity()},
+     *                 or the current one when compacting.
+     * @return The number of probes it took.
+     */
+    protected abstract int rehash(int capacity);
+
+    /**
+     * The number of cells of {@link #table} that hold {@link #TOMBSTONE}. Tombstones are included in {@link #count}, so
+     * the number of pairs stored is {@code count - tombCount}.
+     */
+    protected int tombCount;
+
+    /**
+     * The default of {@link #setCompactionRatio(double)}: tombstones can never reach the whole capacity, so soft-deleting
+     * tables only get rid of their tombstones when they grow, as the writeup describes.
+     */
+    public static final double NO_COMPACTION = 1.0;
+
+    private double compactionRatio = NO_COMPACTION;
+    private int compactions;
+    private long compactionProbes;
+
+    /**
+     * Sets the fraction of the capacity that tombstones can take up before the table is <b>compacted</b>, i.e rehashed at
+     * its current capacity, which drops every tombstone. Under soft deletion, every deleted pair leaves a tombstone that
+     * searches have to walk over until the next resizing; when deletions and insertions keep alternating, the table
+     * may not grow for a long time, and every probe sequence gets longer and longer. Compaction bounds that cost. Since
+     * tombstones count towards the load factor that triggers resizings, the ratio should stay well below the maximum load
+     * factor minus the load of live pairs, or the table will grow before it gets compacted.
+     * @param ratio A ratio greater than 0 and at most 1. {@link #NO_COMPACTION} turns compaction off.
+     * @throws IllegalArgumentException if ratio is not in (0, 1].
+     */
+    public void setCompactionRatio(double ratio) {
+        if (!(ratio > 0 && ratio <= 1)) {
+            throw new IllegalArgumentException("Compaction ratio must be in (0, 1], got " + ratio + ".");
+        }
+        compactionRatio = ratio;
+    }
+
+    /**
+     * Returns the fraction of the capacity that tombstones can take up before the table is compacted.
+     * @return The ratio last given to {@link #setCompactionRatio(double)}, {@link #NO_COMPACTION} by default.
+     */
+    public double getCompactionRatio() {
+        return compactionRatio;
+    }
+
+    /**
+     * Returns the number of compactions this table went through.
+     * @return How many times tombstones crossed the compaction ratio.
+     */
+    public int getCompactions() {
+        return compactions;
+    }
+
+    /**
+     * Returns the cost of all compactions so far. The probes of a compaction are also included in the {@link Probes} of
+     * the {@link #remove(String)} call that triggered it.
+     * @return The total number of probes spent compacting this.
+     */
+    public long getCompactionProbes() {
+        return compactionProbes;
+    }
+
+    /**
+     * Compacts the table if its tombstones take up more than the compaction ratio of its capacity. Called after every
+     * soft deletion.
+     * @return The number of probes the compaction took, 0 if there was none.
+     */
+    protected int compactIfNeeded() {
+        if (tombCount <= compactionRatio * table.length) {
+            return 0;
+        }
+        int probes = rehash(table.length);
+        compactions++;
+        compactionProbes += probes;
+        return probes;
+    }
+
+    private ResizePolicy resizePolicy = ResizePolicy.GROW_ONLY;
+    private int minCapacity; // the capacity the table started with, which it never shrinks below.
+    private int shrinks;
+
+    /**
+     * Sets the {@link ResizePolicy} that decides when the table shrinks. The table is checked after every removal, and if
+     * it is less full than the policy allows, rehashed at the previous capacity of {@link #capacityPolicy}. Under soft
+     * deletion, tombstones count towards the load that makes the table grow, but not towards the one that makes it shrink,
+     * so a table with few pairs and many deletions may grow and shrink back every so often, unless it is compacted first;
+     * see {@link #setCompactionRatio(double)}.
+     * @param policy The policy to follow from now on.
+     * @throws IllegalArgumentException if policy is {@code null}, or if its minimum load factor is above a quarter of
+     * {@link #maxLoadFactor()}.
+     */
+    public void setResizePolicy(ResizePolicy policy) {
+        if (policy == null) {
+            throw new IllegalArgumentException("Resize policy cannot be null.");
+        }
+        policy.checkHysteresis(maxLoadFactor());
+        resizePolicy = policy;
+    }
+
+    /**
+     * Returns the {@link ResizePolicy} that decides when the table shrinks.
+     * @return The last policy given to {@link #setResizePolicy(ResizePolicy)}, {@link ResizePolicy#GROW_ONLY} by default.
+     */
+    public ResizePolicy getResizePolicy() {
+        return resizePolicy;
+    }
+
+    /**
+     * Returns the number of times this table shrank on its own.
+     * @return How many removals left the table below the minimum load factor of its {@link ResizePolicy}.
+     */
+    public int getShrinks() {
+        return shrinks;
+    }
+
+    /**
+     * Shrinks the table to its previous capacity if it is less full than its {@link ResizePolicy} allows, and larger than
+     * the capacity it started with. Called after every removal.
+     * @return The number of probes the rehash took, 0 if there was none.
+     */
+    protected int shrinkIfNeeded() {
+        if (table.length <= minCapacity || !resizePolicy.shouldShrink(size(), table.length)) {
+            return 0;
+        }
+        shrinks++;
+        return rehash(previousCapacity());
+    }
+
+    /**
+     * Returns the load factor above which {@link #put(String, String)} resizes the table.
+     * @return 0.5, unless a subclass resizes at a different load.
+     */
+    protected double maxLoadFactor() {
+        return 0.5;
+    }
+
+    /**
+     * Inserts every pair of pairs with one resizing at most. If the batch would take the table past
+     * {@link #maxLoadFactor()}, the table is rehashed once, straight to the first capacity that holds every pair of
+     * this and of the batch; {@link #put(String, String)} then never has to resize in the middle of the batch.
+     * @param pairs The pairs to insert. None of them can have a {@code null} key or value.
+     * @return A {@link Probes} with a {@code null} value and the total number of probes, the rehash included.
+     * @throws IllegalArgumentException if some pair has a {@code null} key or value. The pairs before it have been inserted.
+     */
+    @Override
+    public Probes putAll(Collection<KVPair> pairs) {
+        int probeC = 0;
+        if (count + pairs.size() > maxLoadFactor() * table.length) {
+            int capacity = table.length;
+            while (size() + pairs.size() > maxLoadFactor() * capacity) {
+                capacity = nextCapacity();
+            }
+            probeC += rehash(capacity); // also drops the tombstones when the capacity doesn't change.
+        }
+        for (KVPair pair : pairs) {
+            probeC += put(pair.getKey(), pair.getValue()).getProbes();
+        }
+        return new Probes(null, probeC);
+    }
+
+    /**
+     * Returns a {@link Spliterator} over the pairs of the cells of the table, which skips empty cells and tombstones.
+     * Subclasses that also keep pairs outside of {@link #table} override it.
+     * @return A {@link Spliterator} that splits the table in ranges of cells.
+     */
+    @Override
+    public Spliterator<KVPair> spliterator() {
+        KVPair[] cells = table;
+        KVPair tombstone = TOMBSTONE;
+        return SlotSpliterator.ofCells(cells.length, size(), true, i -> cells[i] == tombstone ? null : cells[i]);
+    }
+
 }
@@ -27,8 +27,54 @@ public class OrderedLinearProbingHashTable extends OpenAddressingHashTable {
     /* ** INSERT ANY PRIVATE METHODS OR FIELDS YOU WANT TO USE HERE: ******/
     /* ********************************************************************/
 	private boolean soft_del;
-	private int tombCount;
 	
+	/**
+	 * Moves every pair of the table into a new table of the given capacity. Tombstones are not carried over.
+	 * @param capacity The length of the new table.
+	 * @return The number of probes it took.
+	 */
+	@Override
+	protected int rehash(int capacity){
+		int probeC = 0; // probe counter
+		KVPair[] temp = this.table;   //old table to copy over to new. needed as this.hash uses this.table length for hash.
+		int[] tempHashes = this.hashCodes; //cached hash codes of the old table, no need to rehash the keys.
+		this.allocate(capacity); //new table
+		this.count = 0;  //count reset and recounted since tombstone in original counted but will not copy over.
+		this.tombCount = 0; //tombstone count reset as tombstone do not carry over.
+		//re-inserting
+		for(int i=0; i<temp.length; i++){//check all original cells
+			if (temp[i] == null || temp[i] == TOMBSTONE){ //original cell empty or marked for deletion
+				probeC ++;  //one probe to check original cell
+			}else{  //original cell occupied need to copy over to new table
+				probeC ++;  //one probe to check original cell
+				int idx = this.indexOf(tempHashes[i]); //hash to insert to new table
+				if (this.table[idx] == null) { //idx is empty on new table so insert
+					this.store(idx, temp[i], tempHashes[i]);
+					probeC ++;  //one probe to insert
+				}else {//idx is occupied on new cell. compare key to insert k' and existing key k.
+					KVPair insert = temp[i]; // pair to insert
+					int insertHash = tempHashes[i]; // and its hash code
+					while(this.table[idx] != null) {
+						probeC++;  //one probe check occupied table cell.
+						if(insert.getKey().compareTo(this.table[idx].getKey()) < 0) { // k' strictly smaller than k
+							KVPair tmp = this.table[idx];
+							int tmpHash = this.hashCodes[idx];
+							this.store(idx, insert, insertHash);  //insert at k position
+							insert = tmp;         //swapping key to be inserted as k
+							insertHash = tmpHash;
+						}
+		
+						idx = (idx+1)%this.table.length;  //go to next cell
+					}
+					this.store(idx, insert, insertHash);
+					probeC++; //one probe to insert to empty cell.
+				}
+				this.count++; //copied element over from original.
+			}
+		}
+		return probeC;
+	}
+
     /* ******************************************/
     /*  IMPLEMENT THE FOLLOWING PUBLIC METHODS: */
     /* **************************************** */
@@ -40,11 +86,21 @@ public class OrderedLinearProbingHashTable extends OpenAddressingHashTable {
      *               we want soft deletion, {@code false} otherwise.
      */
     public OrderedLinearProbingHashTable(boolean soft){
+        this(soft, CapacityPolicy.PRIME);
+    }
+
+    /**
+     * Constructor with soft deletion and capacity policy options. Initializes the internal storage with the first capacity
+     * of the policy.
+     * @param soft A boolean indicator of whether we want to use soft deletion or not. {@code true} if and only if
+     *               we want soft deletion, {@code false} otherwise.
+     * @param capacityPolicy The {@link CapacityPolicy} that decides the capacities of the table and how keys are hashed to them.
+     */
+    public OrderedLinearProbingHashTable(boolean soft, CapacityPolicy capacityPolicy){
         this.soft_del = soft;
         this.count = 0;
         this.tombCount = 0;
-        this.primeGenerator = new PrimeGenerator();
-        this.table = new KVPair[primeGenerator.getCurrPrime()];
+        this.initCapacity(capacityPolicy);
     }
 
 
@@ -74,56 +130,28 @@ public class OrderedLinearProbingHashTable extends OpenAddressingHashTable {
         	throw new IllegalArgumentException();
         }else {
         	int probeC = 0; // probe counter
-        	//check if resize needed. 
+        	//check if resize needed.
         	if(this.count > (0.5 * this.table.length)){ // n >= T * M, resize needed.
-        		KVPair[] temp = this.table;   //old table to copy over to new. needed as this.hash uses this.table length for hash.
-        		this.table = new KVPair[primeGenerator.getNextPrime()]; //new table
-        		this.count = 0;  //count reset and recounted since tombstone in original counted but will not copy over.
-        		this.tombCount = 0; //tombstone count reset as tombstone do not carry over.
-        		//re-inserting
-        		for(int i=0; i<temp.length; i++){//check all original cells
-        			if (temp[i] == null || temp[i] == TOMBSTONE){ //original cell empty or marked for deletion
-        				probeC ++;  //one probe to check original cell
-        			}else{  //original cell occupied need to copy over to new table
-        				probeC ++;  //one probe to check original cell
-        				int idx = this.hash(temp[i].getKey()); //hash to insert to new table
-        				if (this.table[idx] == null) { //idx is empty on new table so insert
-        					this.table[idx] = temp[i];
-        					probeC ++;  //one probe to insert
-        				}else {//idx is occupied on new cell. compare key to insert k' and existing key k.
-        					KVPair insert = temp[i]; // pair to insert
-        					while(this.table[idx] != null) {
-        						probeC++;  //one probe check occupied table cell.
-        						if(insert.getKey().compareTo(this.table[idx].getKey()) < 0) { // k' strictly smaller than k
-        							KVPair tmp = this.table[idx];
-        							this.table[idx] = insert;  //insert at k position
-        							insert = tmp;         //swapping key to be inserted as k
-        						}
-        	
-        						idx = (idx+1)%this.table.length;  //go to next cell
-        					}
-        					this.table[idx] = insert;
-        					probeC++; //one probe to insert to empty cell.
-        				}
-        				this.count++; //copied element over from original.
-        			}
-        		}
+        		probeC += this.rehash(this.nextCapacity());
         	}
         	
-        	int insert_idx = this.hash(key);
+        	int insertHash = this.keyHash(key);
+        	int insert_idx = this.indexOf(insertHash);
         	KVPair insert = new KVPair(key, value); // pair to be inserted
         	while(this.table[insert_idx] !=null){ // if not null(occupied or tomb stone), linear probe until empty cell.
         		probeC ++;
         		if(insert.getKey().compareTo(this.table[insert_idx].getKey()) < 0 && this.table[insert_idx] != this.TOMBSTONE){ //ignore tombstone 
         			KVPair tmp = this.table[insert_idx];
-        			this.table[insert_idx] = insert;
+        			int tmpHash = this.hashCodes[insert_idx];
+        			this.store(insert_idx, insert, insertHash);
         			insert = tmp;
+        			insertHash = tmpHash;
         		}
         		insert_idx = (insert_idx+1)%this.table.length;
         	}
         	
         	probeC ++; //probe for inserting last null in chain.
-        	this.table[insert_idx] = insert;
+        	this.store(insert_idx, insert, insertHash);
         	this.count ++;
         	return new Probes(value,probeC);
         }
@@ -135,11 +163,12 @@ public class OrderedLinearProbingHashTable extends OpenAddressingHashTable {
         	return new Probes(null,0);
         }
     	
-    	int address = this.hash(key);
+    	int h = this.keyHash(key);
+    	int address = this.indexOf(h);
         int probeC = 1; 
         
         while(this.table[address] != null) {
-        	if(this.table[address].getKey().equals(key)){ // found matching
+        	if(this.matches(address, key, h)){ // found matching
         		return new Probes(this.table[address].getValue(), probeC);  
         	}else if(this.table[address].getKey().compareTo(key) > 0 && this.table[address] != this.TOMBSTONE){ //current key is greater than target, search fails.
         		return new Probes(null, probeC);
@@ -167,16 +196,19 @@ public class OrderedLinearProbingHashTable extends OpenAddressingHashTable {
         	return new Probes(null, 0);
         }
         
-        int address = this.hash(key);
+        int h = this.keyHash(key);
+        int address = this.indexOf(h);
         int probeC=1; // probe counter
         
         if(this.soft_del){ //soft deletion
         	  while(this.table[address] != null) { //search
-              	if(this.table[address].getKey().equals(key)){ // found matching
-              		Probes ret = new Probes(this.table[address].getValue(), probeC); //return val.
+              	if(this.matches(address, key, h)){ // found matching
+              		String retVal = this.table[address].getValue(); //return val.
               		this.table[address] = this.TOMBSTONE; //mark for deletion
               		this.tombCount ++;
-              		return ret;	
+              		probeC += this.compactIfNeeded(); //rebuild without tombstones if there are too many of them.
+              		probeC += this.shrinkIfNeeded(); //give memory back if the table got too empty.
+              		return new Probes(retVal, probeC);
               	}else if(this.table[address].getKey().compareTo(key) > 0 && this.table[address] != this.TOMBSTONE) { //key is greater than target
               		return new Probes(null, probeC); // failed search.
               	}
@@ -187,7 +219,7 @@ public class OrderedLinearProbingHashTable extends OpenAddressingHashTable {
         	
         }else {   //hard deletion
        	  while(this.table[address] != null) {  //search and delete.
-            	if(this.table[address].getKey().equals(key)){ // found matching
+            	if(this.matches(address, key, h)){ // found matching
             		String retVal = this.table[address].getValue(); //return val string
             		this.table[address] = null; //set cell ref to null
             		this.count --;
@@ -205,6 +237,7 @@ public class OrderedLinearProbingHashTable extends OpenAddressingHashTable {
             			address = (address+1)% this.table.length; //next cell 
             		}
             		probeC++; //probe that checked for null to terminate as the above loop doesn't run to increment probe for checking if null
+            		probeC += this.shrinkIfNeeded(); //give memory back if the table got too empty.
             		return new Probes(retVal, probeC);
             	}
             	//keep searching
@@ -223,7 +256,7 @@ public class OrderedLinearProbingHashTable extends OpenAddressingHashTable {
     @Override
     public boolean containsValue(String value) {
         for(int i=0; i< this.table.length; i++) {
-     	   if(this.table[i].getValue().equals(value))
+     	   if(this.table[i] != null && this.table[i] != this.TOMBSTONE && this.table[i].getValue().equals(value))
      		   return true;
         }
         return false;
@@ -0,0 +1,105 @@
+package phonebook.hashes;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * <p>{@link ParallelRehash} holds what {@link LinearProbingHashTable} and {@link SeparateChainingHashTable} share to
+ * rehash large tables on a {@link ForkJoinPool}: both split the old table in <em>ranges</em> and the new one in
+ * <em>partitions</em>, count and then scatter the pairs of every range by the partition of their new home, so that the
+ * pairs of every partition end up together, in the order of the old table, and finally fill every partition with its own
+ * task. Tasks write disjoint parts of the new table, so they need no synchronization besides joining them.</p>
+ *
+ * @author Cheolhong Ahn
+ *
+ * @see LinearProbingHashTable#setRehashPool(ForkJoinPool)
+ * @see SeparateChainingHashTable#setRehashPool(ForkJoinPool)
+ */
+final class ParallelRehash {
+
+    /**
+     * The number of pairs below which tables rehash on the calling thread, since splitting the work costs more than it saves.
+     */
+    static final int THRESHOLD = 1 << 16;
+
+    private static final int MIN_PARTITION = 1 << 12; // cells.
+    private static final int TASKS_PER_THREAD = 4;    // so that threads that finish early can steal more.
+
+    private ParallelRehash() {
+    }
+
+    private static final class Range extends RecursiveAction {
+        private final int lo, hi;
+        private final IntConsumer task;
+
+        Range(int lo, int hi, IntConsumer task) {
+            this.lo = lo;
+            this.hi = hi;
+            this.task = task;
+        }
+
+        @Override
+        protected void compute() {
+            if(hi - lo == 1) {
+                task.accept(lo);
+            } else {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new Range(lo, mid, task), new Range(mid, hi, task));
+            }
+        }
+    }
+
+    /**
+     * Runs task on 0 to n - 1 on pool, and returns once all of them are done.
+     * @param pool The pool to run the tasks on.
+     * @param n The number of tasks, at least 1.
+     * @param task The task, given its number.
+     */
+    static void forEach(ForkJoinPool pool, int n, IntConsumer task) {
+        pool.invoke(new Range(0, n, task));
+    }
+
+    /**
+     * Returns the number of parts to split tables of the given capacity in, for the given pool.
+     * @param pool The pool the parts will be processed on.
+     * @param cells The capacity of the larger of the old and new tables.
+     * @return A few parts per thread of pool, but no part smaller than a few thousand cells, and at least 1.
+     */
+    static int parts(ForkJoinPool pool, int cells) {
+        return Math.max(1, Math.min(TASKS_PER_THREAD * pool.getParallelism(), cells / MIN_PARTITION));
+    }
+
+    /**
+     * Returns the number of cells of every part of a table, but the last one, which may be shorter.
+     * @param cells The capacity of the table.
+     * @param parts The number of parts it is split in.
+     * @return The length of a part.
+     */
+    static int partLength(int cells, int parts) {
+        return (int) (((long) cells + parts - 1) / parts);
+    }
+
+    /**
+     * Turns the counts of pairs of every range going to every partition into the positions where every range scatters
+     * them, partition after partition, and every range in order within a partition.
+     * @param counts counts[r][p] is the number of pairs of range r whose new home is in partition p. Replaced by the
+     *               position of the first of them.
+     * @return An array of the position of the first pair of every partition, followed by the total number of pairs.
+     */
+    static int[] offsets(int[][] counts) {
+        int parts = counts[0].length;
+        int[] starts = new int[parts + 1];
+        int position = 0;
+        for(int p = 0; p < parts; p++) {
+            starts[p] = position;
+            for(int[] range : counts) {
+                int n = range[p];
+                range[p] = position;
+                position += n;
+            }
+        }
+        starts[parts] = position;
+        return starts;
+    }
+}
@@ -34,8 +34,64 @@ public class QuadraticProbingHashTable extends OpenAddressingHashTable {
     /* ** INSERT ANY PRIVATE METHODS OR FIELDS YOU WANT TO USE HERE: ******/
     /* ********************************************************************/
 	private boolean soft_del;
-	private int tombCount;
+
+	//a probe sequence can visit the same cells over and over without reaching a null one, so searches give up after as
+	//many probes as there are cells.
+	private boolean exhausted(int j){
+		return j > this.table.length;
+	}
+
+	//j-th cell of the probe sequence that starts at hk, i.e mqp(k,j). Prime tables use [h(k)+(j-1)+(j-1)^2] mod M; in power
+	//of two tables, (j-1)+(j-1)^2 is always even and would only reach half of the cells, so they use the triangular
+	//numbers (j-1)j/2 instead, which reach every cell. Computed in long so that long sequences do not overflow.
+	private int probe(int hk, int j){
+		long i = j-1;
+		if(this.capacityPolicy == CapacityPolicy.POWER_OF_TWO){
+			return (int)((hk + i*(i+1)/2) & (this.table.length-1));
+		}
+		return (int)((hk + i + i*i) % this.table.length);
+	}
 	
+	/**
+	 * Moves every pair of the table into a new table of the given capacity. Tombstones are not carried over.
+	 * @param capacity The length of the new table.
+	 * @return The number of probes it took.
+	 */
+	@Override
+	protected int rehash(int capacity){
+		int probeC = 0; // probe counter
+		KVPair[] temp = this.table;   //old table to copy over to new. needed as this.hash uses this.table length for hash.
+		int[] tempHashes = this.hashCodes; //cached hash codes of the old table, no need to rehash the keys.
+		this.allocate(capacity); //new table
+		this.count = 0;  //count reset and recounted since tombstone in original counted but will not copy over.
+		this.tombCount = 0; //tombcount reset as tombstone do not carry over.
+		//re-inserting
+		for(int i=0; i<temp.length; i++){//check all original cells
+			if (temp[i] == null || temp[i] == TOMBSTONE){ //original cell empty or marked for deletion
+				probeC ++;  //one probe to check original cell
+			}else{  //original cell occupied need to copy over to new table
+				probeC ++;  //one probe to check original cell
+				int idx = this.indexOf(tempHashes[i]); //hash to insert to new table
+				if (this.table[idx] == null) { //idx is empty on new table so insert
+					this.store(idx, temp[i], tempHashes[i]);
+					probeC ++;  //one probe to insert
+				}else {//idx is occupied on new cell. linear probing until empty cell found and insert.
+					int hk = idx;// used for mqp(k,j)  hk = h(k); 
+					int j = 2;; // mqp(k,j).  j starts from 2 as already at 1.
+					while(this.table[idx] != null) {
+						probeC++;  //one probe check occupied table cell.
+						idx = this.probe(hk, j);  //go to next cell mqp(k,j)
+						j++;
+					}
+					this.store(idx, temp[i], tempHashes[i]);
+					probeC++; //one probe to insert to empty cell.
+				}
+				this.count++; //copied element over from original.
+			}
+		}
+		return probeC;
+	}
+
     /* ******************************************/
     /*  IMPLEMENT THE FOLLOWING PUBLIC METHODS: */
     /* **************************************** */
@@ -46,11 +102,21 @@ public class QuadraticProbingHashTable extends OpenAddressingHashTable {
      *               we want soft deletion, {@code false} otherwise.
      */
     public QuadraticProbingHashTable(boolean soft) {
+        this(soft, CapacityPolicy.PRIME);
+    }
+
+    /**
+     * Constructor with soft deletion and capacity policy options. Initializes the internal storage with the first capacity
+     * of the policy.
+     * @param soft A boolean indicator of whether we want to use soft deletion or not. {@code true} if and only if
+     *               we want soft deletion, {@code false} otherwise.
+     * @param capacityPolicy The {@link CapacityPolicy} that decides the capacities of the table and how keys are hashed to them.
+     */
+    public QuadraticProbingHashTable(boolean soft, CapacityPolicy capacityPolicy) {
         this.soft_del = soft;
         this.count = 0;
         this.tombCount = 0;
-        this.primeGenerator = new PrimeGenerator();
-        this.table = new KVPair[primeGenerator.getCurrPrime()];
+        this.initCapacity(capacityPolicy);
     }
 
     @Override
@@ -61,46 +127,26 @@ public class QuadraticProbingHashTable extends OpenAddressingHashTable {
         	int probeC = 0; // probe counter
         	//check if resize needed.
         	if(this.count > (0.5 * this.table.length)){ // n >= T * M, resize needed.
-        		KVPair[] temp = this.table;   //old table to copy over to new. needed as this.hash uses this.table length for hash.
-        		this.table = new KVPair[primeGenerator.getNextPrime()]; //new table
-        		this.count = 0;  //count reset and recounted since tombstone in original counted but will not copy over.
-        		this.tombCount = 0; //tombcount reset as tombstone do not carry over.
-        		//re-inserting
-        		for(int i=0; i<temp.length; i++){//check all original cells
-        			if (temp[i] == null || temp[i] == TOMBSTONE){ //original cell empty or marked for deletion
-        				probeC ++;  //one probe to check original cell
-        			}else{  //original cell occupied need to copy over to new table
-        				probeC ++;  //one probe to check original cell
-        				int idx = this.hash(temp[i].getKey()); //hash to insert to new table
-        				if (this.table[idx] == null) { //idx is empty on new table so insert
-        					this.table[idx] = temp[i];
-        					probeC ++;  //one probe to insert
-        				}else {//idx is occupied on new cell. linear probing until empty cell found and insert.
-        					int hk = idx;// used for mqp(k,j)  hk = h(k); 
-        					int j = 2;; // mqp(k,j).  j starts from 2 as already at 1.
-        					while(this.table[idx] != null) {
-        						probeC++;  //one probe check occupied table cell.
-        						idx = (hk+(j-1)+((j-1)*(j-1)))%this.table.length;  //go to next cell [h(k)+(j-1)+(j-1)^2] mod M
-        						j++;
-        					}
-        					this.table[idx] = temp[i];
-        					probeC++; //one probe to insert to empty cell.
-        				}
-        				this.count++; //copied element over from original.
-        			}
-        		}
+        		probeC += this.rehash(this.nextCapacity());
         	}
         	
-        	int insert_idx = this.hash(key); //current index. 
+        	int h = this.keyHash(key);
+        	int insert_idx = this.indexOf(h); //current index. 
         	int hk = insert_idx;// h(k)
         	int j = 2;  //used for mqp(k,j);
         	while(this.table[insert_idx] !=null){ // if not null(occupied or tomb stone), linear probe until empty cell.
         		probeC ++;
-        		insert_idx = (hk+(j-1)+((j-1)*(j-1)))%this.table.length;
+        		if(this.exhausted(j)){ //every cell the sequence reaches is taken, only a larger table can take the key.
+        			probeC += this.rehash(this.nextCapacity());
+        			insert_idx = hk = this.indexOf(h);
+        			j = 2;
+        			continue;
+        		}
+        		insert_idx = this.probe(hk, j);
         		j++;
         	}
         	probeC ++; //probe for inserting to target cell.
-        	this.table[insert_idx] = new KVPair(key, value);
+        	this.store(insert_idx, new KVPair(key, value), h);
         	this.count ++;
         	return new Probes(value,probeC);
         }
@@ -113,17 +159,18 @@ public class QuadraticProbingHashTable extends OpenAddressingHashTable {
         	return new Probes(null,0);
         }
     	
-    	int address = this.hash(key);
+    	int h = this.keyHash(key);
+    	int address = this.indexOf(h);
         int hk = address; //h(k)
     	int j = 2; //used for mqp(k,j);
         int probeC = 1;
         
-        while(this.table[address] != null) {
-        	if(this.table[address].getKey().equals(key)){ // found matching
+        while(this.table[address] != null && !this.exhausted(j)) {
+        	if(this.matches(address, key, h)){ // found matching
         		return new Probes(this.table[address].getValue(), probeC);  
         	}
         	probeC ++;
-        	address = (hk+(j-1)+((j-1)*(j-1)))%this.table.length;
+        	address = this.probe(hk, j);
         	j++;
         }
         
@@ -136,28 +183,31 @@ public class QuadraticProbingHashTable extends OpenAddressingHashTable {
         	return new Probes(null, 0);
         }
         
-        int address = this.hash(key); //current location.
+        int h = this.keyHash(key);
+        int address = this.indexOf(h); //current location.
         int hk = address;  // h(k)
         int j = 2;    // mpq(k,j);
         int probeC=1; // probe counter
         
         if(this.soft_del){ //soft deletion
-        	  while(this.table[address] != null) { //search
-              	if(this.table[address].getKey().equals(key)){ // found matching
-              		Probes ret = new Probes(this.table[address].getValue(), probeC); //return val.
+        	  while(this.table[address] != null && !this.exhausted(j)) { //search
+              	if(this.matches(address, key, h)){ // found matching
+              		String retVal = this.table[address].getValue(); //return val.
               		this.table[address] = this.TOMBSTONE; //mark for deletion
               		this.tombCount ++;
-              		return ret;	
+              		probeC += this.compactIfNeeded(); //rebuild without tombstones if there are too many of them.
+              		probeC += this.shrinkIfNeeded(); //give memory back if the table got too empty.
+              		return new Probes(retVal, probeC);
               	}
               	probeC ++;
-              	address = (hk+(j-1)+((j-1)*(j-1)))%this.table.length;
+              	address = this.probe(hk, j);
               	j++;
         	  }
         	  return new Probes(null, probeC); //search failed.
         	
         }else {   //hard deletion
-       	  while(this.table[address] != null) {  //search and delete.
-            	if(this.table[address].getKey().equals(key)){ // found matching
+       	  while(this.table[address] != null && !this.exhausted(j)) {  //search and delete.
+            	if(this.matches(address, key, h)){ // found matching
             		String retVal = this.table[address].getValue(); //return val string
             		this.table[address] = null; //set cell ref to null
             		this.count --;
@@ -175,11 +225,13 @@ public class QuadraticProbingHashTable extends OpenAddressingHashTable {
 	            			probeC = probeC+p.getProbes(); //total + probe taken to insert
             			}
             		}
+            		probeC += this.shrinkIfNeeded(); //give memory back if the table got too empty.
             		return new Probes(retVal, probeC);
             	}
             	else {	//not found. keep searching
             		probeC ++;
-            		address =(hk+(j-1)+((j-1)*(j-1)))%this.table.length; //quadratic probe.
+            		address =this.probe(hk, j); //quadratic probe.
+            		j++;
             	}
        	  }	
        	  return new Probes(null, probeC); //search failed.
@@ -196,7 +248,7 @@ public class QuadraticProbingHashTable extends OpenAddressingHashTable {
     @Override
     public boolean containsValue(String value) {   //check all key in the table for its value
         for(int i=0; i< this.table.length; i++) {
-     	   if(this.table[i].getValue().equals(value))
+     	   if(this.table[i] != null && this.table[i] != this.TOMBSTONE && this.table[i].getValue().equals(value))
      		   return true;
         }
         return false;
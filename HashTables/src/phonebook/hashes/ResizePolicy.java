@@ -0,0 +1,76 @@
+package phonebook.hashes;
+
+/**
+ * <p>{@link ResizePolicy} decides when a {@link HashTable} gives memory back. Tables grow on their own when they get
+ * too full, following the writeup: Open Addressing tables when they exceed their maximum load factor, 50&#37; for most of
+ * them, and Separate Chaining tables when a batch would leave more pairs than chains. But as written, none of them ever
+ * shrinks on its own, so a table that once held millions of pairs keeps the capacity for them long after they are
+ * removed. Under a shrinking policy, a table is shrunk to its previous capacity after a removal leaves it less than
+ * {@link #getMinLoad()} full, down to the capacity it started with.</p>
+ *
+ * <p>To avoid <em>thrashing</em>, i.e a table that keeps growing and shrinking when its size goes back and forth around
+ * a threshold, the minimum load factor is at most a quarter of the maximum one: a table that just grew is then about
+ * half as full as the maximum, and one that just shrank about half as full as that, so it takes a number of operations
+ * proportional to the capacity to reach either threshold again, and resizings stay amortized constant time.</p>
+ *
+ * @author Cheolhong Ahn
+ *
+ * @see OpenAddressingHashTable#setResizePolicy(ResizePolicy)
+ * @see SeparateChainingHashTable#setResizePolicy(ResizePolicy)
+ */
+public final class ResizePolicy {
+
+    /**
+     * The policy of tables which never shrink on their own, the default of every table.
+     */
+    public static final ResizePolicy GROW_ONLY = new ResizePolicy(0);
+
+    private final double minLoad;
+
+    private ResizePolicy(double minLoad) {
+        this.minLoad = minLoad;
+    }
+
+    /**
+     * Returns the policy which shrinks tables that get less than minLoad full.
+     * @param minLoad The load factor below which tables shrink, greater than 0 and at most a quarter of the maximum load
+     *                factor of the tables that will follow the policy.
+     * @return A shrinking {@link ResizePolicy}.
+     * @throws IllegalArgumentException if minLoad is not in (0, 0.25].
+     */
+    public static ResizePolicy shrinkBelow(double minLoad) {
+        if(!(minLoad > 0 && minLoad <= 0.25)) {
+            throw new IllegalArgumentException("Minimum load factor must be in (0, 0.25], got " + minLoad + ".");
+        }
+        return new ResizePolicy(minLoad);
+    }
+
+    /**
+     * Returns the load factor below which tables shrink.
+     * @return The minimum load factor of this policy, 0 for {@link #GROW_ONLY}.
+     */
+    public double getMinLoad() {
+        return minLoad;
+    }
+
+    /**
+     * Checks that a table which grows above maxLoad can follow this policy without thrashing.
+     * @param maxLoad The load factor above which the table grows.
+     * @throws IllegalArgumentException if the minimum load factor of this is above a quarter of maxLoad.
+     */
+    void checkHysteresis(double maxLoad) {
+        if(minLoad > maxLoad / 4) {
+            throw new IllegalArgumentException("Minimum load factor " + minLoad + " is too close to the maximum load factor " + maxLoad + ".");
+        }
+    }
+
+    /**
+     * Decides whether a table should shrink.
+     * @param size The number of pairs of the table.
+     * @param capacity The capacity of the table.
+     * @return {@code true} if, and only if, the table is less than {@link #getMinLoad()} full.
+     */
+    boolean shouldShrink(int size, int capacity) {
+        return size < minLoad * capacity;
+    }
+}
@@ -3,9 +3,17 @@ package phonebook.hashes;
 
 import phonebook.utils.KVPair;
 import phonebook.utils.KVPairList;
+import phonebook.utils.PowerOfTwoGenerator;
 import phonebook.utils.PrimeGenerator;
 import phonebook.utils.Probes;
 
+import java.util.Collection;
+import java.util.Spliterator;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.StreamSupport;
+
 /**<p>{@link SeparateChainingHashTable} is a {@link HashTable} that implements <b>Separate Chaining</b>
  * as its collision resolution strategy, i.e the collision chains are implemented as actual
  * Linked Lists. These Linked Lists are <b>not assumed ordered</b>. It is the easiest and most &quot; natural &quot; way to
@@ -14,12 +22,24 @@ import phonebook.utils.Probes;
  * Open Addressing methods, like those implemented in {@link LinearProbingHashTable} and {@link QuadraticProbingHashTable}
  * are more desirable in practice, since they use the original space of the table for the collision chains themselves.</p>
  *
+ * <p>Since the table never resizes on its own, and many different {@link String}s share the same {@link String#hashCode()},
+ * a chain can grow arbitrarily long, and so can searches in it. A chain that grows past 8 pairs is therefore
+ * <em>treeified</em>: its pairs move into a red-black tree ordered by key, in which searches take a logarithmic number of
+ * key comparisons, so that even keys crafted to collide (hash flooding) cannot make a search linear. A tree that shrinks
+ * to 6 pairs goes back to being a chain. The {@link Probes} of an operation on a tree count the key comparisons it made,
+ * plus one for the bucket.</p>
+ *
+ * <p>A table that holds many pairs is resized in parallel, on the pool given to {@link #setRehashPool(ForkJoinPool)}:
+ * every partition of the new table builds its own chains.</p>
+ *
  * @author Cheolhong Ahn
  * @see HashTable
  * @see SeparateChainingHashTable
  * @see LinearProbingHashTable
  * @see OrderedLinearProbingHashTable
  * @see CollisionResolver
+ * @see HashFunction
+ * @see ResizePolicy
  */
 public class SeparateChainingHashTable implements HashTable{
 
@@ -37,6 +57,208 @@ public class SeparateChainingHashTable implements HashTable{
         return (key.hashCode() & 0x7fffffff) % table.length;
     }
 
+    /* ********************************************************************/
+    /* ** INSERT ANY PRIVATE METHODS OR FIELDS YOU WANT TO USE HERE: ******/
+    /* ********************************************************************/
+
+    private CapacityPolicy capacityPolicy;
+    private PowerOfTwoGenerator powerOfTwoGenerator;
+
+    private static final int TREEIFY_THRESHOLD = 8;   // chain length above which a chain becomes a tree.
+    private static final int UNTREEIFY_THRESHOLD = 6; // tree size at which it goes back to a chain, lower so that buckets don't flip.
+
+    // Buckets kept as trees, null where the chain of table is used; null as a whole until the first bucket is treeified.
+    private TreeBucket[] trees;
+
+    // A bucket kept as a red-black tree of its keys, every key with the list of its pairs, oldest first.
+    private static final class TreeBucket {
+        private int comparisons; // made by the current operation.
+        private int size;
+        private final TreeMap<String, KVPairList> pairs = new TreeMap<>((a, b) -> {
+            comparisons++;
+            return a.compareTo(b);
+        });
+
+        Probes put(String key, String value){
+            comparisons = 0;
+            pairs.computeIfAbsent(key, k -> new KVPairList()).addBack(key, value);
+            size++;
+            return new Probes(value, 1 + comparisons);
+        }
+
+        Probes get(String key){
+            comparisons = 0;
+            KVPairList list = pairs.get(key);
+            return new Probes(list == null ? null : list.getValue(key).getValue(), 1 + comparisons);
+        }
+
+        Probes remove(String key){
+            comparisons = 0;
+            KVPairList list = pairs.get(key);
+            if(list == null){
+                return new Probes(null, 1 + comparisons);
+            }
+            String value = list.removeByKey(key).getValue();
+            if(list.isEmpty()){
+                pairs.remove(key);
+            }
+            size--;
+            return new Probes(value, 1 + comparisons);
+        }
+
+        boolean containsValue(String value){
+            for(KVPairList list : pairs.values()){
+                if(list.containsValue(value)){
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    // Turns the chain of bucket i into a tree.
+    private void treeify(int i){
+        if(trees == null){
+            trees = new TreeBucket[table.length];
+        }
+        TreeBucket tree = new TreeBucket();
+        for(KVPair p : table[i]){
+            tree.put(p.getKey(), p.getValue());
+        }
+        trees[i] = tree;
+        table[i] = new KVPairList();
+    }
+
+    // Turns the tree of bucket i back into a chain.
+    private void untreeify(int i){
+        KVPairList chain = new KVPairList();
+        for(KVPairList list : trees[i].pairs.values()){
+            for(KVPair p : list){
+                chain.addBack(p.getKey(), p.getValue());
+            }
+        }
+        table[i] = chain;
+        trees[i] = null;
+    }
+
+    private TreeBucket treeAt(int i){
+        return trees == null ? null : trees[i];
+    }
+
+    private HashFunction hashFunction = HashFunction.STRING_HASH_CODE;
+    private ResizePolicy resizePolicy = ResizePolicy.GROW_ONLY;
+    private int minCapacity; // the capacity the table started with, which it never shrinks below on its own.
+
+    private ForkJoinPool rehashPool = ForkJoinPool.commonPool(); // null to always resize on the calling thread.
+
+    // hash() under the capacity policy and hash function of this; the same as hash() for the defaults.
+    private int index(String key){
+        return index(key, table.length);
+    }
+
+    // The chain of key in a table of the given capacity.
+    private int index(String key, int capacity){
+        return capacityPolicy.indexOf(CapacityPolicy.keyHash(hashFunction, key), capacity);
+    }
+
+    // Replaces the table with empty chains, count included.
+    private void allocate(int capacity){
+        table = new KVPairList[capacity];
+        trees = null;
+        count = 0;
+        for(int i =0; i < table.length; i++) {//setting up each bucket with head of linked list.
+            table[i] = new KVPairList();
+        }
+    }
+
+    // Rebuilds the table with the given number of chains.
+    private void resize(int capacity){
+        if(rehashPool != null && count >= ParallelRehash.THRESHOLD){
+            parallelResize(capacity, rehashPool);
+            return;
+        }
+        KVPairList[] old = this.table;
+        TreeBucket[] oldTrees = this.trees;
+        allocate(capacity);
+        for(int i =0; i < old.length; i++) { //each index
+            for(KVPair p : old[i]) { //each element in each head
+                this.put(p.getKey(), p.getValue());  //calling put func for each element to reinsert.
+            }
+            if(oldTrees != null && oldTrees[i] != null) {
+                for(KVPairList list : oldTrees[i].pairs.values()) {
+                    for(KVPair p : list) {
+                        this.put(p.getKey(), p.getValue());
+                    }
+                }
+            }
+        }
+    }
+
+    // Applies action to the pairs of buckets from to to - 1, in the order resize() reinserts them.
+    private static void forEachPair(KVPairList[] chains, TreeBucket[] trees, int from, int to, Consumer<KVPair> action){
+        for(int i = from; i < to; i++) {
+            for(KVPair p : chains[i]) {
+                action.accept(p);
+            }
+            if(trees != null && trees[i] != null) {
+                for(KVPairList list : trees[i].pairs.values()) {
+                    for(KVPair p : list) {
+                        action.accept(p);
+                    }
+                }
+            }
+        }
+    }
+
+    // resize() on pool. Every range of the old buckets counts, then lists, its pairs by the partition of the new table
+    // they hash to, and every partition then builds its own chains, in the order of the old table, so that pairs of the
+    // same key stay oldest first. trees is shared by every bucket, so chains that got too long are treeified afterwards.
+    private void parallelResize(int capacity, ForkJoinPool pool){
+        KVPairList[] old = this.table;
+        TreeBucket[] oldTrees = this.trees;
+        KVPairList[] chains = new KVPairList[capacity];
+        int parts = ParallelRehash.parts(pool, Math.max(old.length, capacity));
+        int rangeLen = ParallelRehash.partLength(old.length, parts), partLen = ParallelRehash.partLength(capacity, parts);
+        int[][] offsets = new int[parts][parts]; // pairs of every range going to every partition, then where they are listed.
+        ParallelRehash.forEach(pool, parts, r -> forEachPair(old, oldTrees, r * rangeLen, Math.min(old.length, (r + 1) * rangeLen),
+                p -> offsets[r][index(p.getKey(), capacity) / partLen]++));
+        int[] starts = ParallelRehash.offsets(offsets);
+        KVPair[] order = new KVPair[starts[parts]];
+        ParallelRehash.forEach(pool, parts, r -> forEachPair(old, oldTrees, r * rangeLen, Math.min(old.length, (r + 1) * rangeLen),
+                p -> order[offsets[r][index(p.getKey(), capacity) / partLen]++] = p));
+        boolean[] tooLong = new boolean[parts];
+        ParallelRehash.forEach(pool, parts, part -> {
+            for(int k = starts[part]; k < starts[part + 1]; k++) {
+                int i = index(order[k].getKey(), capacity);
+                if(chains[i] == null) {
+                    chains[i] = new KVPairList();
+                }
+                chains[i].addBack(order[k].getKey(), order[k].getValue());
+            }
+            for(int i = part * partLen; i < Math.min(capacity, (part + 1) * partLen); i++) {
+                if(chains[i] == null) {
+                    chains[i] = new KVPairList();
+                } else if(chains[i].size() > TREEIFY_THRESHOLD) {
+                    tooLong[part] = true;
+                }
+            }
+        });
+        table = chains;
+        trees = null;
+        count = starts[parts];
+        for(int part = 0; part < parts; part++) {
+            for(int i = part * partLen; tooLong[part] && i < Math.min(capacity, (part + 1) * partLen); i++) {
+                if(table[i].size() > TREEIFY_THRESHOLD) {
+                    treeify(i);
+                }
+            }
+        }
+    }
+
+    private int nextCapacity(){
+        return capacityPolicy == CapacityPolicy.PRIME ? primeGenerator.getNextPrime() : powerOfTwoGenerator.getNextPower();
+    }
+
     /* **************************************** */
     /*  IMPLEMENT THE FOLLOWING PUBLIC METHODS:  */
     /* **************************************** */
@@ -44,12 +266,20 @@ public class SeparateChainingHashTable implements HashTable{
      *  Default constructor. Initializes the internal storage with a size equal to the default of {@link PrimeGenerator}.
      */
     public SeparateChainingHashTable(){
-        count = 0;
+        this(CapacityPolicy.PRIME);
+    }
+
+    /**
+     * Constructor with a capacity policy. Initializes the internal storage with the first capacity of the policy: 7 chains
+     * for {@link CapacityPolicy#PRIME}, 8 for {@link CapacityPolicy#POWER_OF_TWO}.
+     * @param capacityPolicy The {@link CapacityPolicy} that decides the capacities of the table and how keys are hashed to them.
+     */
+    public SeparateChainingHashTable(CapacityPolicy capacityPolicy){
+        this.capacityPolicy = capacityPolicy;
         primeGenerator = new PrimeGenerator();
-        table = new KVPairList[primeGenerator.getCurrPrime()];
-        for(int i =0; i < table.length; i++) {//setting up each bucket with head of linked list.
-        	table[i] = new KVPairList();
-        }
+        powerOfTwoGenerator = new PowerOfTwoGenerator();
+        allocate(capacityPolicy == CapacityPolicy.PRIME ? primeGenerator.getCurrPrime() : powerOfTwoGenerator.getCurrPower());
+        minCapacity = table.length;
     }
 
     @Override
@@ -57,29 +287,47 @@ public class SeparateChainingHashTable implements HashTable{
     	if (key == null || value == null) {
     		throw new IllegalArgumentException();
     	}
-        this.table[this.hash(key)].addBack(key, value);
+        int i = this.index(key);
         this.count++;
+        TreeBucket tree = this.treeAt(i);
+        if (tree != null) {
+            return tree.put(key, value);
+        }
+        this.table[i].addBack(key, value);
+        if (this.table[i].size() > TREEIFY_THRESHOLD) { //chain got too long, e.g under many equal hash codes.
+            this.treeify(i);
+        }
         return new Probes(value,1);  //probe count always 1 since adding to tail using tail pointer.
         
     }
 
     @Override
     public Probes get(String key) {
-    	 return this.table[this.hash(key)].getValue(key);
+        int i = this.index(key);
+        TreeBucket tree = this.treeAt(i);
+    	 return tree != null ? tree.get(key) : this.table[i].getValue(key);
     }
 
     @Override
     public Probes remove(String key) {
-        Probes ret = this.table[this.hash(key)].removeByKey(key);
+        int i = this.index(key);
+        TreeBucket tree = this.treeAt(i);
+        Probes ret = tree != null ? tree.remove(key) : this.table[i].removeByKey(key);
         if (ret.getValue() != null){ //Successful search: value is null if search failed. 
             this.count--;
+            if (tree != null && tree.size <= UNTREEIFY_THRESHOLD) {
+                this.untreeify(i);
+            }
+            if (this.table.length > this.minCapacity && this.resizePolicy.shouldShrink(this.count, this.table.length)) {
+                this.shrink(); //give memory back if the table got too empty.
+            }
         }
         return ret;
     }
 
     @Override
     public boolean containsKey(String key) {
-    	 return this.table[this.hash(key)].containsKey(key);
+        return this.get(key).getValue() != null;
     }
 
     @Override
@@ -88,6 +336,10 @@ public class SeparateChainingHashTable implements HashTable{
             if (this.table[i].containsValue(value)){  //using containsValue func from KVPairList
                 return true;
             }
+            TreeBucket tree = this.treeAt(i);
+            if (tree != null && tree.containsValue(value)){
+                return true;
+            }
         }
         return false;
     }
@@ -102,55 +354,122 @@ public class SeparateChainingHashTable implements HashTable{
         return table.length; // Or the value of the current prime.
     }
 
+    /**
+     * Walks the chains of the table, and the pairs of treeified buckets in key order.
+     * @return A {@link Spliterator} that splits the table in ranges of chains.
+     */
+    @Override
+    public Spliterator<KVPair> spliterator() {
+        KVPairList[] chains = this.table;
+        TreeBucket[] buckets = this.trees;
+        return SlotSpliterator.ofChains(chains.length, this.count, true, i -> buckets == null || buckets[i] == null ? chains[i].iterator()
+                : buckets[i].pairs.values().stream().flatMap(list -> StreamSupport.stream(list.spliterator(), false)).iterator());
+    }
+
     /**
      * Enlarges this hash table. At the very minimum, this method should increase the <b>capacity</b> of the hash table and ensure
      * that the new size is prime. The class {@link PrimeGenerator} implements the enlargement heuristic that
-     * we have talked about in class and can be used as a black box if you wish.
+     * we have talked about in class and can be used as a black box if you wish. Under {@link CapacityPolicy#POWER_OF_TWO},
+     * the size is doubled instead.
      * @see PrimeGenerator#getNextPrime()
+     * @see PowerOfTwoGenerator#getNextPower()
      */
     public void enlarge() {
-    	KVPairList[] temp = this.table;
-    	this.table = new KVPairList[primeGenerator.getNextPrime()];
-    	this.count =0;
-    	
-    	//setting up new table.
-    	for(int i=0; i < this.table.length; i++) {
-    		this.table[i] = new KVPairList();
-    	}
-    	
-    	//going through each element of old table and re-inserting to new
-    	for(int i =0; i < temp.length; i++) { //each index
-    		for(KVPair p : temp[i]) { //each element in each head
-    			this.put(p.getKey(), p.getValue());  //calling put func for each element to reinsert.
-    		}
-    	}
-    
+    	this.resize(this.nextCapacity());
     }
 
     /**
      * Shrinks this hash table. At the very minimum, this method should decrease the size of the hash table and ensure
      * that the new size is prime. The class {@link PrimeGenerator} implements the shrinking heuristic that
-     * we have talked about in class and can be used as a black box if you wish.
+     * we have talked about in class and can be used as a black box if you wish. Under {@link CapacityPolicy#POWER_OF_TWO},
+     * the size is halved instead.
      *
      * @see PrimeGenerator#getPreviousPrime()
+     * @see PowerOfTwoGenerator#getPreviousPower()
      */
     public void shrink(){
-    	KVPairList[] temp = this.table;
-    	this.table = new KVPairList[primeGenerator.getPreviousPrime()];
-    	this.count =0;
-    	
-    	//setting up new table.
-    	for(int i=0; i < this.table.length; i++) {
-    		this.table[i] = new KVPairList();
+    	this.resize(capacityPolicy == CapacityPolicy.PRIME ? primeGenerator.getPreviousPrime() : powerOfTwoGenerator.getPreviousPower());
+    }
+
+    /**
+     * Sets the {@link ResizePolicy} that decides when the table shrinks on its own: after a removal leaves it with fewer
+     * pairs per chain than the minimum load factor of the policy, it is {@link #shrink() shrunk}. Separate Chaining never
+     * has to grow, but {@link #putAll(Collection)} enlarges it to at most one pair per chain, which is the maximum load
+     * factor the policy is checked against.
+     * @param policy The policy to follow from now on.
+     * @throws IllegalArgumentException if policy is {@code null}, or if its minimum load factor is above 0.25.
+     */
+    public void setResizePolicy(ResizePolicy policy){
+        if(policy == null){
+            throw new IllegalArgumentException("Resize policy cannot be null.");
+        }
+        policy.checkHysteresis(1);
+        this.resizePolicy = policy;
+    }
+
+    /**
+     * Returns the {@link ResizePolicy} that decides when the table shrinks on its own.
+     * @return The last policy given to {@link #setResizePolicy(ResizePolicy)}, {@link ResizePolicy#GROW_ONLY} by default.
+     */
+    public ResizePolicy getResizePolicy(){
+        return this.resizePolicy;
+    }
+
+    /**
+     * Sets the pool that tables of at least 2^16 pairs are resized on, {@link ForkJoinPool#commonPool()} by default.
+     * @param pool The {@link ForkJoinPool} to resize on, or {@code null} to always resize on the calling thread.
+     */
+    public void setRehashPool(ForkJoinPool pool){
+        this.rehashPool = pool;
+    }
+
+    /**
+     * Sets the function keys are hashed with. The table must not hold any pair, since they were placed with the previous
+     * function.
+     * @param hashFunction The {@link HashFunction} to hash every key with from now on.
+     * @throws IllegalArgumentException if hashFunction is {@code null}.
+     * @throws IllegalStateException if the table is not empty.
+     */
+    public void setHashFunction(HashFunction hashFunction){
+        if(hashFunction == null){
+            throw new IllegalArgumentException("Hash function cannot be null.");
+        }
+        if(this.count != 0){
+            throw new IllegalStateException("Cannot change the hash function of a table with " + this.count + " pairs.");
+        }
+        this.hashFunction = hashFunction;
+    }
+
+    /**
+     * Returns the function keys are hashed with.
+     * @return The last {@link HashFunction} given to {@link #setHashFunction(HashFunction)}, {@link HashFunction#STRING_HASH_CODE} by default.
+     */
+    public HashFunction getHashFunction(){
+        return this.hashFunction;
+    }
+
+    /**
+     * Inserts every pair of pairs. Separate Chaining never has to resize, but long chains make searches slow, so if the
+     * batch would leave more pairs than chains, the table is first enlarged once, straight to the first capacity with at
+     * least as many chains as pairs.
+     * @param pairs The pairs to insert. None of them can have a {@code null} key or value.
+     * @return A {@link Probes} with a {@code null} value and the total number of probes of the insertions.
+     * @throws IllegalArgumentException if some pair has a {@code null} key or value. The pairs before it have been inserted.
+     */
+    @Override
+    public Probes putAll(Collection<KVPair> pairs) {
+    	int capacity = this.table.length;
+    	while(this.count + pairs.size() > capacity) {
+    		capacity = this.nextCapacity();
+    	}
+    	if(capacity != this.table.length) {
+    		this.resize(capacity);
     	}
-    	
-    	//going through each element of old table and re-inserting to new
-    	for(int i =0; i < temp.length; i++) { //each index
-    		for(KVPair p : temp[i]) { //each element in each head
-    			this.put(p.getKey(), p.getValue());  //calling put func for each element to reinsert.
-    		}
+    	int probeC = 0;
+    	for(KVPair p : pairs) {
+    		probeC += this.put(p.getKey(), p.getValue()).getProbes();
     	}
-    
+    	return new Probes(null, probeC);
     }
  
 }
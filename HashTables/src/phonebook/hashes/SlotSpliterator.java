@@ -0,0 +1,156 @@
+package phonebook.hashes;
+
+import phonebook.utils.KVPair;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * <p>{@link SlotSpliterator} is the {@link Spliterator} behind {@link HashTable#spliterator()}. It walks a range of
+ * <em>slots</em> of a table, which are either cells that hold at most one pair, like those of Open Addressing tables, or
+ * buckets that hold a chain of them, like those of Separate Chaining, and skips empty slots and tombstones. Splitting
+ * it halves the range of slots that is left, so that a parallel stream of the pairs of a table reads every part of its
+ * storage on a different thread, straight from the arrays of the table: tables that store {@link KVPair}s hand out the
+ * pairs themselves, and only those that store their keys and values in another form build new ones.</p>
+ *
+ * <p>The range of a spliterator is bound to the storage of the table at the time it was created. Tables are not
+ * expected to be modified while their pairs are being traversed: a pair inserted or removed during a traversal may or
+ * may not be seen, and a resize may make it miss or repeat pairs.</p>
+ *
+ * @author Cheolhong Ahn
+ *
+ * @see HashTable#spliterator()
+ * @see HashTable#stream()
+ */
+final class SlotSpliterator implements Spliterator<KVPair> {
+
+    private static final int MIN_SPLIT = 64; // slots below which a range is not worth splitting.
+
+    private final IntFunction<KVPair> cells;             // the pair of a slot, null if it is empty; null for chains.
+    private final IntFunction<Iterator<KVPair>> chains;  // the pairs of a slot; null for cells.
+    private final int slots;                             // of the whole table.
+    private final int size;                              // pairs of the whole table.
+    private int next, end;
+    private boolean exact;                               // until the first split of a sized one, the pairs left are known.
+    private int seen;                                    // pairs handed out so far, while exact.
+    private Iterator<KVPair> chain = Collections.emptyIterator();
+
+    private SlotSpliterator(IntFunction<KVPair> cells, IntFunction<Iterator<KVPair>> chains, int slots, int size,
+                            int next, int end, boolean exact) {
+        this.cells = cells;
+        this.chains = chains;
+        this.slots = slots;
+        this.size = size;
+        this.next = next;
+        this.end = end;
+        this.exact = exact;
+    }
+
+    /**
+     * Returns a spliterator over slots which hold at most one pair each.
+     * @param slots The number of slots.
+     * @param size The number of pairs they hold.
+     * @param sized {@code true} if size is exact, {@code false} if it can change during traversal, as in concurrent tables.
+     * @param cells The pair held by a slot, or {@code null} if it holds none.
+     * @return A {@link Spliterator} over the pairs of every slot, in order.
+     */
+    static Spliterator<KVPair> ofCells(int slots, int size, boolean sized, IntFunction<KVPair> cells) {
+        return new SlotSpliterator(cells, null, slots, size, 0, slots, sized);
+    }
+
+    /**
+     * Returns a spliterator over slots which hold any number of pairs each.
+     * @param slots The number of slots.
+     * @param size The number of pairs they hold.
+     * @param sized {@code true} if size is exact, {@code false} if it can change during traversal, as in concurrent tables.
+     * @param chains The pairs held by a slot.
+     * @return A {@link Spliterator} over the pairs of every slot, in order.
+     */
+    static Spliterator<KVPair> ofChains(int slots, int size, boolean sized, IntFunction<Iterator<KVPair>> chains) {
+        return new SlotSpliterator(null, chains, slots, size, 0, slots, sized);
+    }
+
+    private void accept(Consumer<? super KVPair> action, KVPair pair) {
+        if(exact) {
+            seen++;
+        }
+        action.accept(pair);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super KVPair> action) {
+        if(chain.hasNext()) {
+            accept(action, chain.next());
+            return true;
+        }
+        while(next < end) {
+            int slot = next++;
+            if(cells != null) {
+                KVPair pair = cells.apply(slot);
+                if(pair != null) {
+                    accept(action, pair);
+                    return true;
+                }
+            } else {
+                chain = chains.apply(slot);
+                if(chain.hasNext()) {
+                    accept(action, chain.next());
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super KVPair> action) {
+        while(chain.hasNext()) {
+            accept(action, chain.next());
+        }
+        for(; next < end; next++) {
+            if(cells != null) {
+                KVPair pair = cells.apply(next);
+                if(pair != null) {
+                    accept(action, pair);
+                }
+            } else {
+                for(chain = chains.apply(next); chain.hasNext(); ) {
+                    accept(action, chain.next());
+                }
+            }
+        }
+    }
+
+    @Override
+    public Spliterator<KVPair> trySplit() {
+        if(end - next < MIN_SPLIT) {
+            return null;
+        }
+        int mid = (next + end) >>> 1;
+        SlotSpliterator prefix = new SlotSpliterator(cells, chains, slots, size, next, mid, false);
+        next = mid;
+        exact = false;
+        return prefix;
+    }
+
+    /**
+     * Returns the number of pairs left before the first split of a sized spliterator, and otherwise the share of the
+     * pairs of the table that the slots left would hold if pairs were spread evenly.
+     * @return An estimate of the number of pairs left.
+     */
+    @Override
+    public long estimateSize() {
+        if(exact) {
+            return size - seen;
+        }
+        return (long) ((double) size * (end - next) / Math.max(1, slots));
+    }
+
+    @Override
+    public int characteristics() {
+        return NONNULL | (exact ? SIZED : 0);
+    }
+}
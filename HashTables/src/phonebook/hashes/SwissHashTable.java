@@ -0,0 +1,297 @@
+package phonebook.hashes;
+
+import phonebook.utils.KVPair;
+import phonebook.utils.PowerOfTwoGenerator;
+import phonebook.utils.Probes;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Spliterator;
+
+/**
+ * <p>{@link SwissHashTable} is an Openly Addressed {@link HashTable} laid out like the &quot;Swiss tables&quot; of
+ * Abseil and hashbrown: next to the arrays of keys and values, a <em>control byte</em> array holds one byte per cell,
+ * which is either {@code EMPTY}, {@code DELETED}, or, for a full cell, the low 7 bits of the (mixed) hash code of its
+ * key, as given by its {@link HashFunction}. The cells are probed in aligned <em>groups</em> of {@link #GROUP} cells: the 8 control bytes of a group are read
+ * as a single {@code long}, and compared against the 7 bits of the searched key all at once, with the usual bit tricks
+ * on words (SWAR). Only the cells whose control byte matches have their key compared, which happens for about one cell
+ * in 128 that doesn't hold the key, so a search almost never touches a key other than the one it is looking for.</p>
+ *
+ * <p>The remaining bits of the hash code choose the first group, and groups are then probed quadratically, with
+ * triangular offsets, which visit every group of a power-of-two table. A search stops at the first group that has an
+ * {@code EMPTY} cell. Because a group absorbs up to 8 collisions before the search has to move on, the table is only
+ * resized when it is 87.5&#37; full, instead of 50&#37;. Deletions leave a {@code DELETED} control byte only when their
+ * group has no {@code EMPTY} cell, i.e when some search may have gone past the group; otherwise they empty the cell.
+ * When deleted cells take the table past its maximum load, it is rehashed at the same capacity instead of growing.</p>
+ *
+ * <p>Capacities always follow {@link CapacityPolicy#POWER_OF_TWO}. Inserting a key that is already in the table
+ * <b>updates</b> its value. The {@link Probes} of an operation count the groups it scans and the keys it compares.</p>
+ *
+ * @author Cheolhong Ahn
+ *
+ * @see HashTable
+ * @see CapacityPolicy
+ * @see QuadraticProbingHashTable
+ */
+public class SwissHashTable implements HashTable {
+
+    /**
+     * The number of cells scanned at once.
+     */
+    public static final int GROUP = Long.BYTES;
+
+    /* ********************************************************************/
+    /* ** INSERT ANY PRIVATE METHODS OR FIELDS YOU WANT TO USE HERE: ******/
+    /* ********************************************************************/
+
+    private static final byte EMPTY = (byte) 0x80, DELETED = (byte) 0xFE; // full cells have their top bit clear.
+    private static final long LSBS = 0x0101010101010101L, MSBS = 0x8080808080808080L;
+    private static final VarHandle GROUPS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final double MAX_LOAD = 0.875;
+
+    private final PowerOfTwoGenerator powerOfTwoGenerator = new PowerOfTwoGenerator();
+    private byte[] control;
+    private String[] keys, values;
+    private int count, tombCount;
+    private final HashFunction hashFunction;
+
+    // Mixed, so that both the 7 bits of the control byte and the bits that choose the group depend on every bit.
+    private int hash(String key) {
+        return CapacityPolicy.mix(CapacityPolicy.keyHash(hashFunction, key));
+    }
+
+    // Control bytes of group g, the control byte of its first cell in the lowest byte.
+    private long group(int g) {
+        return (long) GROUPS.get(control, g * GROUP);
+    }
+
+    // Top bit of every byte of group equal to h2. Can also flag a full byte above a real match, never an empty one.
+    private static long matchFragment(long group, int h2) {
+        long x = group ^ (LSBS * h2);
+        return (x - LSBS) & ~x & MSBS;
+    }
+
+    // Top bit of every EMPTY byte of group: the only control byte with its top bit set and its second lowest bit clear.
+    private static long matchEmpty(long group) {
+        return group & (~group << 6) & MSBS;
+    }
+
+    // Top bit of every EMPTY or DELETED byte of group.
+    private static long matchFree(long group) {
+        return group & MSBS;
+    }
+
+    private static int cellOf(int g, long match) {
+        return g * GROUP + (Long.numberOfTrailingZeros(match) >>> 3);
+    }
+
+    private void allocate(int capacity) {
+        control = new byte[capacity];
+        Arrays.fill(control, EMPTY);
+        keys = new String[capacity];
+        values = new String[capacity];
+        tombCount = 0;
+    }
+
+    // Searches for key. Returns its cell, or -1 if the search failed, with the probes used added to probes[0].
+    private int find(String key, int h, int[] probes) {
+        int mask = control.length / GROUP - 1;
+        int g = (h >>> 7) & mask;
+        for(int i = 1; ; i++) {
+            probes[0]++;
+            long group = group(g);
+            for(long match = matchFragment(group, h & 0x7f); match != 0; match &= match - 1) {
+                int idx = cellOf(g, match);
+                probes[0]++;
+                if(keys[idx].equals(key)) {
+                    return idx;
+                }
+            }
+            if(matchEmpty(group) != 0) { // key would have been stored in this group.
+                return -1;
+            }
+            g = (g + i) & mask;
+        }
+    }
+
+    // Stores a pair whose key is not in the table in the first free cell of its probe sequence. Returns the probes it took.
+    private int insert(String key, String value, int h) {
+        int mask = control.length / GROUP - 1;
+        int g = (h >>> 7) & mask;
+        int probeC = 1;
+        for(int i = 1; matchFree(group(g)) == 0; i++) {
+            g = (g + i) & mask;
+            probeC++;
+        }
+        int idx = cellOf(g, matchFree(group(g)));
+        if(control[idx] == DELETED) {
+            tombCount--;
+        }
+        control[idx] = (byte) (h & 0x7f);
+        keys[idx] = key;
+        values[idx] = value;
+        count++;
+        return probeC;
+    }
+
+    // Moves every pair into new arrays of the given capacity, dropping the DELETED cells. Returns the probes it took.
+    private int rehash(int capacity) {
+        byte[] oldControl = control;
+        String[] oldKeys = keys, oldValues = values;
+        allocate(capacity);
+        count = 0;
+        int probeC = 0;
+        for(int i = 0; i < oldControl.length; i++) {
+            if(oldControl[i] >= 0) { // full.
+                probeC += 1 + insert(oldKeys[i], oldValues[i], hash(oldKeys[i]));
+            }
+        }
+        return probeC;
+    }
+
+    /* ******************************************/
+    /*  IMPLEMENT THE FOLLOWING PUBLIC METHODS: */
+    /* **************************************** */
+
+    /**
+     * Default constructor. Initializes the internal storage with a size equal to the starting value of
+     * {@link PowerOfTwoGenerator}, i.e a single group.
+     */
+    public SwissHashTable() {
+        this(HashFunction.STRING_HASH_CODE);
+    }
+
+    /**
+     * Constructor with the function keys are hashed with. Initializes the internal storage like {@link #SwissHashTable()}.
+     * @param hashFunction The {@link HashFunction} to hash every key with.
+     * @throws IllegalArgumentException if hashFunction is {@code null}.
+     */
+    public SwissHashTable(HashFunction hashFunction) {
+        if(hashFunction == null) {
+            throw new IllegalArgumentException("Hash function cannot be null.");
+        }
+        this.hashFunction = hashFunction;
+        allocate(powerOfTwoGenerator.getCurrPower());
+    }
+
+    /**
+     * Returns the function keys are hashed with.
+     * @return The {@link HashFunction} given to the constructor, {@link HashFunction#STRING_HASH_CODE} by default.
+     */
+    public HashFunction getHashFunction() {
+        return hashFunction;
+    }
+
+    @Override
+    public Probes put(String key, String value) {
+        if (key == null || value == null) {
+            throw new IllegalArgumentException();
+        }
+        int h = hash(key);
+        int[] probes = {0};
+        int idx = find(key, h, probes);
+        if(idx >= 0) { // update in place.
+            values[idx] = value;
+            return new Probes(value, probes[0]);
+        }
+        if(count + tombCount + 1 > MAX_LOAD * control.length) { // grow, or only drop DELETED cells if they are many.
+            probes[0] += rehash(count + 1 > MAX_LOAD / 2 * control.length ? powerOfTwoGenerator.getNextPower() : control.length);
+        }
+        probes[0] += insert(key, value, h);
+        return new Probes(value, probes[0]);
+    }
+
+    /**
+     * Inserts every pair of pairs, growing the table once, straight to the first capacity that holds every pair of this
+     * and of the batch, if it needs to.
+     * @param pairs The pairs to insert. None of them can have a {@code null} key or value.
+     * @return A {@link Probes} with a {@code null} value and the total number of probes, the rehash included.
+     * @throws IllegalArgumentException if some pair has a {@code null} key or value. The pairs before it have been inserted.
+     */
+    @Override
+    public Probes putAll(Collection<KVPair> pairs) {
+        int probeC = 0;
+        if(count + tombCount + pairs.size() > MAX_LOAD * control.length) {
+            int capacity = control.length;
+            while(count + pairs.size() > MAX_LOAD * capacity) {
+                capacity = powerOfTwoGenerator.getNextPower();
+            }
+            probeC += rehash(capacity);
+        }
+        for(KVPair pair : pairs) {
+            probeC += put(pair.getKey(), pair.getValue()).getProbes();
+        }
+        return new Probes(null, probeC);
+    }
+
+    @Override
+    public Probes get(String key) {
+        if(key == null) {
+            return new Probes(null, 0);
+        }
+        int[] probes = {0};
+        int idx = find(key, hash(key), probes);
+        return new Probes(idx < 0 ? null : values[idx], probes[0]);
+    }
+
+    @Override
+    public Probes remove(String key) {
+        if(key == null) {
+            return new Probes(null, 0);
+        }
+        int[] probes = {0};
+        int idx = find(key, hash(key), probes);
+        if(idx < 0) {
+            return new Probes(null, probes[0]);
+        }
+        String value = values[idx];
+        if(matchEmpty(group(idx / GROUP)) != 0) { // no search ever went past this group.
+            control[idx] = EMPTY;
+        } else {
+            control[idx] = DELETED;
+            tombCount++;
+        }
+        keys[idx] = values[idx] = null;
+        count--;
+        return new Probes(value, probes[0]);
+    }
+
+    @Override
+    public boolean containsKey(String key) {
+        return key != null && find(key, hash(key), new int[1]) >= 0;
+    }
+
+    @Override
+    public boolean containsValue(String value) {
+        for(String v : values) {
+            if(v != null && v.equals(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public int capacity() {
+        return control.length;
+    }
+
+    /**
+     * Walks the full cells of the table. The keys and values are stored apart, so every pair is a new {@link KVPair}.
+     * @return A {@link Spliterator} that splits the table in ranges of cells.
+     */
+    @Override
+    public Spliterator<KVPair> spliterator() {
+        byte[] bytes = control;
+        String[] k = keys, v = values;
+        return SlotSpliterator.ofCells(bytes.length, count, true, i -> bytes[i] >= 0 ? new KVPair(k[i], v[i]) : null);
+    }
+}
@@ -0,0 +1,226 @@
+package phonebook.hashes;
+
+import phonebook.utils.KVPair;
+import phonebook.utils.Probes;
+
+import java.util.Spliterator;
+
+/**
+ * <p>{@link ValueIndexedHashTable} is a {@link HashTable} that wraps any other {@link HashTable} and keeps a
+ * <b>value index</b> next to it: a hash table from every value stored to the number of pairs that hold it. Tables are
+ * searched by key, so on their own, {@link HashTable#containsValue(String)} has to scan every cell, or every chain, of
+ * the table; through the index, it is a single search, in expected constant time, and {@link #getValueCount(String)}
+ * tells how many pairs hold a value at no extra cost.</p>
+ *
+ * <p>The index is opt-in: a table that isn't wrapped pays nothing for it, and a wrapped one pays a {@link String}
+ * reference, a count and a cached hash code per <em>distinct</em> value, in a <b>Linear Probing</b> table of power-of-two
+ * capacity which is kept at most 50&#37; full and shifts clusters back on removal. Tables differ in what inserting a key
+ * that they already hold does: some update its value in place, others store a second pair. To keep the counts right
+ * either way, {@link #put(String, String)} first searches the wrapped table for the key, and tells the two apart by
+ * whether the size of the table changed; the {@link Probes} of the search are included in those it returns.</p>
+ *
+ * <p>The table to wrap must be empty, since a {@link HashTable} cannot be walked to build the index of the pairs it
+ * already holds, and calls should from then on go through the wrapper only. The index is not thread-safe, even if the
+ * wrapped table is.</p>
+ *
+ * @author Cheolhong Ahn
+ * @see HashTable
+ * @see InstrumentedHashTable
+ */
+public class ValueIndexedHashTable implements HashTable {
+
+    /* ********************************************************************/
+    /* ** INSERT ANY PRIVATE METHODS OR FIELDS YOU WANT TO USE HERE: ******/
+    /* ********************************************************************/
+
+    private final HashTable table;
+    private final HashFunction valueHash;
+    private String[] values = new String[8];
+    private int[] counts = new int[8], hashes = new int[8];
+    private int distinct;
+
+    private int hash(String value) {
+        return CapacityPolicy.keyHash(valueHash, value);
+    }
+
+    // Searches the index for value. Returns its cell, or -(the empty cell that ends its cluster) - 1 if it is not there.
+    private int find(String value, int h) {
+        int mask = values.length - 1;
+        int idx = CapacityPolicy.POWER_OF_TWO.indexOf(h, values.length);
+        while(values[idx] != null) {
+            if(hashes[idx] == h && values[idx].equals(value)) {
+                return idx;
+            }
+            idx = (idx + 1) & mask;
+        }
+        return -idx - 1;
+    }
+
+    private void increment(String value) {
+        int h = hash(value);
+        int idx = find(value, h);
+        if(idx >= 0) {
+            counts[idx]++;
+            return;
+        }
+        if(distinct + 1 > 0.5 * values.length) {
+            String[] oldValues = values;
+            int[] oldCounts = counts, oldHashes = hashes;
+            values = new String[2 * oldValues.length];
+            counts = new int[values.length];
+            hashes = new int[values.length];
+            for(int i = 0; i < oldValues.length; i++) {
+                if(oldValues[i] != null) {
+                    int empty = -find(oldValues[i], oldHashes[i]) - 1;
+                    values[empty] = oldValues[i];
+                    counts[empty] = oldCounts[i];
+                    hashes[empty] = oldHashes[i];
+                }
+            }
+            idx = find(value, h);
+        }
+        idx = -idx - 1;
+        values[idx] = value;
+        counts[idx] = 1;
+        hashes[idx] = h;
+        distinct++;
+    }
+
+    private void decrement(String value) {
+        int hole = find(value, hash(value));
+        assert hole >= 0 : "decrement(): " + value + " is not in the index.";
+        if(--counts[hole] > 0) {
+            return;
+        }
+        distinct--;
+        int mask = values.length - 1;
+        for(int idx = (hole + 1) & mask; values[idx] != null; idx = (idx + 1) & mask) { // shift the rest of the cluster back.
+            int home = CapacityPolicy.POWER_OF_TWO.indexOf(hashes[idx], values.length);
+            if(((idx - home) & mask) >= ((idx - hole) & mask)) { // home is not between hole and idx.
+                values[hole] = values[idx];
+                counts[hole] = counts[idx];
+                hashes[hole] = hashes[idx];
+                hole = idx;
+            }
+        }
+        values[hole] = null;
+    }
+
+    /* ******************************************/
+    /*  IMPLEMENT THE FOLLOWING PUBLIC METHODS: */
+    /* **************************************** */
+
+    /**
+     * Wraps table. Calls should from now on go through the new instance only, or the index will not reflect them.
+     * @param table The {@link HashTable} to index the values of.
+     * @throws IllegalArgumentException if table is {@code null} or not empty.
+     */
+    public ValueIndexedHashTable(HashTable table) {
+        this(table, HashFunction.STRING_HASH_CODE);
+    }
+
+    /**
+     * Wraps table, and hashes its values with valueHash in the index.
+     * @param table The {@link HashTable} to index the values of.
+     * @param valueHash The {@link HashFunction} to hash every value with.
+     * @throws IllegalArgumentException if table is {@code null} or not empty, or if valueHash is {@code null}.
+     */
+    public ValueIndexedHashTable(HashTable table, HashFunction valueHash) {
+        if(table == null || table.size() != 0) {
+            throw new IllegalArgumentException("Can only index the values of an empty table.");
+        }
+        if(valueHash == null) {
+            throw new IllegalArgumentException("Hash function cannot be null.");
+        }
+        this.table = table;
+        this.valueHash = valueHash;
+    }
+
+    /**
+     * Returns the function values are hashed with in the index.
+     * @return The {@link HashFunction} given to the constructor, {@link HashFunction#STRING_HASH_CODE} by default.
+     */
+    public HashFunction getValueHash() {
+        return valueHash;
+    }
+
+    /**
+     * Returns the wrapped table.
+     * @return The {@link HashTable} given at construction.
+     */
+    public HashTable unwrap() {
+        return table;
+    }
+
+    @Override
+    public Probes put(String key, String value) {
+        if(key == null || value == null) {
+            throw new IllegalArgumentException();
+        }
+        Probes old = table.get(key);
+        int size = table.size();
+        Probes put = table.put(key, value);
+        if(old.getValue() != null && table.size() == size) { // the old value was replaced.
+            decrement(old.getValue());
+        }
+        increment(value);
+        return new Probes(put.getValue(), old.getProbes() + put.getProbes());
+    }
+
+    @Override
+    public Probes get(String key) {
+        return table.get(key);
+    }
+
+    @Override
+    public Probes remove(String key) {
+        Probes removed = table.remove(key);
+        if(removed.getValue() != null) {
+            decrement(removed.getValue());
+        }
+        return removed;
+    }
+
+    @Override
+    public boolean containsKey(String key) {
+        return table.containsKey(key);
+    }
+
+    /**
+     * Searches the value index, instead of the wrapped table.
+     * @param value The value to search for.
+     * @return {@code true} if, and only if, some pair of the table holds value.
+     */
+    @Override
+    public boolean containsValue(String value) {
+        return value != null && find(value, hash(value)) >= 0;
+    }
+
+    /**
+     * Returns the number of pairs that hold a value.
+     * @param value The value to count.
+     * @return The number of pairs of the table whose value is value, 0 if value is {@code null}.
+     */
+    public int getValueCount(String value) {
+        if(value == null) {
+            return 0;
+        }
+        int idx = find(value, hash(value));
+        return idx < 0 ? 0 : counts[idx];
+    }
+
+    @Override
+    public int size() {
+        return table.size();
+    }
+
+    @Override
+    public int capacity() {
+        return table.capacity();
+    }
+
+    @Override
+    public Spliterator<KVPair> spliterator() {
+        return table.spliterator();
+    }
+}
@@ -0,0 +1,57 @@
+package phonebook.utils;
+
+import phonebook.hashes.HashTable;
+
+/**
+ * <p>{@link PowerOfTwoGenerator} is the counterpart of {@link PrimeGenerator} for {@link HashTable} instances whose
+ * capacity is a <b>power of two</b>. Enlarging doubles the current power and shrinking halves it. Contrary to
+ * {@link PrimeGenerator}, there is no list to run out of: powers go from 2 up to 2^30, the largest power of two that
+ * the length of a Java array can be.</p>
+ *
+ * @see HashTable
+ * @see PrimeGenerator
+ * @see #getNextPower()
+ * @see #getPreviousPower()
+ *
+ * @author Cheolhong Ahn
+ */
+public class PowerOfTwoGenerator {
+
+    private static final int FIRST_EXPONENT = 3; // 8, the closest power to the first prime of PrimeGenerator.
+    private static final int MIN_EXPONENT = 1;
+    private static final int MAX_EXPONENT = 30;
+    private int exponent = FIRST_EXPONENT;
+
+    /**
+     * Retrieves the current power of two. Without any calls to {@link #getNextPower()} or {@link #getPreviousPower()},
+     * this method returns 8.
+     * @return The current power of two, 8 by default.
+     */
+    public int getCurrPower(){
+        return 1 << exponent;
+    }
+
+    /**
+     * Returns twice the current power of two.
+     * @return The next power of two.
+     * @throws IllegalStateException If the current power is already 2^30.
+     */
+    public int getNextPower() {
+        if(exponent == MAX_EXPONENT){
+            throw new IllegalStateException("getNextPower(): 2^" + MAX_EXPONENT + " is the largest capacity of an array.");
+        }
+        return 1 << ++exponent;
+    }
+
+    /**
+     * Returns half the current power of two.
+     * @return The previous power of two.
+     * @throws IllegalStateException If the current power is already 2.
+     */
+    public int getPreviousPower() {
+        if(exponent == MIN_EXPONENT){
+            throw new IllegalStateException("getPreviousPower(): 2 is the least capacity supported.");
+        }
+        return 1 << --exponent;
+    }
+}
@@ -0,0 +1,230 @@
+package phonebook.utils;
+
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
+/**
+ * <p>{@link StringArena} stores {@link String}s packed one after the other in large {@code byte[]} <em>slabs</em>, and
+ * hands out a {@code long} <em>reference</em> to each of them instead of an object. A {@link String} costs an object
+ * header, a reference to its backing array, and the header of that array, i.e about 40 bytes on top of its
+ * characters; for a phone number or a name, that is more than the characters themselves, and every one of them is an
+ * object the garbage collector has to trace. In an arena, a {@link String} only costs its characters and a header of one
+ * or two bytes, and the collector only sees the slabs.</p>
+ *
+ * <p>Like the compact strings of the JDK, a {@link String} whose characters all fit in a byte (Latin-1) is stored with
+ * one byte per character, and any other with two. The header is a variable-length integer holding the length and which
+ * of the two encodings is used. A reference is the index of its slab in the high 32 bits and the offset of its
+ * header in the low 32 bits; references are never negative. Slabs start small and double up to {@link #MAX_SLAB} bytes; a
+ * {@link String} that does not fit in one gets a slab of its own.</p>
+ *
+ * <p>Arenas are append-only: {@link #release(long)} only accounts for the bytes of a {@link String} that is no longer
+ * used, in {@link #getGarbageBytes()}. Their owner reclaims them by copying the {@link String}s it still uses to a new
+ * arena with {@link #copyTo(long, StringArena)}, and dropping the old one.</p>
+ *
+ * @author Cheolhong Ahn
+ *
+ * @see phonebook.hashes.ArenaHashTable
+ */
+public class StringArena {
+
+    /**
+     * The size slabs grow up to.
+     */
+    public static final int MAX_SLAB = 1 << 20;
+
+    private static final int FIRST_SLAB = 1 << 12;
+
+    private byte[][] slabs = new byte[4][];
+    private int slabCount, top; // slabs in use, and first free byte of the last one.
+    private long allocatedBytes, garbageBytes;
+
+    /**
+     * Creates an empty arena. Its first slab is only allocated by the first {@link #add(String)}.
+     */
+    public StringArena() {
+    }
+
+    // Bytes of the variable-length encoding of header.
+    private static int headerBytes(int header) {
+        int n = 1;
+        while((header >>>= 7) != 0) {
+            n++;
+        }
+        return n;
+    }
+
+    // Makes room for size bytes at the top of the last slab.
+    private void reserve(int size) {
+        if(slabCount > 0 && top + size <= slabs[slabCount - 1].length) {
+            return;
+        }
+        int length = slabCount == 0 ? FIRST_SLAB : Math.min(MAX_SLAB, 2 * slabs[slabCount - 1].length);
+        if(slabCount == slabs.length) {
+            slabs = Arrays.copyOf(slabs, 2 * slabCount);
+        }
+        slabs[slabCount++] = new byte[Math.max(length, size)];
+        top = 0;
+    }
+
+    private byte[] slab(long ref) {
+        return slabs[(int) (ref >>> 32)];
+    }
+
+    // Reads the header at offset of slab. Returns it in the high 32 bits, and the offset of the characters in the low ones.
+    private static long readHeader(byte[] slab, int offset) {
+        int h = 0, shift = 0;
+        byte b;
+        do {
+            b = slab[offset++];
+            h |= (b & 0x7f) << shift;
+            shift += 7;
+        } while(b < 0);
+        return (long) h << 32 | offset;
+    }
+
+    /**
+     * Copies s into the arena.
+     * @param s A non-{@code null} {@link String}.
+     * @return The reference to the copy of s.
+     * @throws IllegalArgumentException if s has 2^30 characters or more.
+     */
+    public long add(String s) {
+        int n = s.length();
+        if(n >= 1 << 30) {
+            throw new IllegalArgumentException("A string of " + n + " characters cannot be stored in an arena.");
+        }
+        boolean wide = false;
+        for(int i = 0; i < n && !wide; i++) {
+            wide = s.charAt(i) > 0xff;
+        }
+        int header = n << 1 | (wide ? 1 : 0);
+        long size = headerBytes(header) + (wide ? 2L : 1L) * n;
+        if(size > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("A string of " + n + " characters cannot be stored in an arena.");
+        }
+        reserve((int) size);
+        byte[] slab = slabs[slabCount - 1];
+        long ref = (long) (slabCount - 1) << 32 | top;
+        int offset = top;
+        for(int h = header; ; h >>>= 7) {
+            if(h < 0x80) {
+                slab[offset++] = (byte) h;
+                break;
+            }
+            slab[offset++] = (byte) (h | 0x80);
+        }
+        if(wide) {
+            for(int i = 0; i < n; i++) {
+                char c = s.charAt(i);
+                slab[offset++] = (byte) (c >>> 8);
+                slab[offset++] = (byte) c;
+            }
+        } else {
+            for(int i = 0; i < n; i++) {
+                slab[offset++] = (byte) s.charAt(i);
+            }
+        }
+        top = offset;
+        allocatedBytes += size;
+        return ref;
+    }
+
+    /**
+     * Builds the {@link String} stored at ref.
+     * @param ref A reference returned by {@link #add(String)}.
+     * @return A new {@link String} equal to the one added.
+     */
+    public String get(long ref) {
+        byte[] slab = slab(ref);
+        long header = readHeader(slab, (int) ref);
+        int n = (int) (header >>> 33), offset = (int) header;
+        if((header & 1L << 32) == 0) {
+            return new String(slab, offset, n, ISO_8859_1);
+        }
+        char[] chars = new char[n]; // not decoded as UTF-16BE, which would replace lone surrogates.
+        for(int i = 0; i < n; i++, offset += 2) {
+            chars[i] = (char) ((slab[offset] & 0xff) << 8 | slab[offset + 1] & 0xff);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Compares the {@link String} stored at ref with s, character by character, without building the former.
+     * @param ref A reference returned by {@link #add(String)}.
+     * @param s The {@link String} to compare with. Can be {@code null}.
+     * @return {@code true} if, and only if, s is equal to the {@link String} stored at ref.
+     */
+    public boolean equals(long ref, String s) {
+        if(s == null) {
+            return false;
+        }
+        byte[] slab = slab(ref);
+        long header = readHeader(slab, (int) ref);
+        int n = (int) (header >>> 33), offset = (int) header;
+        if(n != s.length()) {
+            return false;
+        }
+        if((header & 1L << 32) == 0) {
+            for(int i = 0; i < n; i++) {
+                if((char) (slab[offset + i] & 0xff) != s.charAt(i)) {
+                    return false;
+                }
+            }
+        } else {
+            for(int i = 0; i < n; i++, offset += 2) {
+                if((char) ((slab[offset] & 0xff) << 8 | (slab[offset + 1] & 0xff)) != s.charAt(i)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    // Bytes of the record at ref, header included.
+    private int recordBytes(long ref) {
+        long header = readHeader(slab(ref), (int) ref);
+        int n = (int) (header >>> 33), offset = (int) header;
+        return offset - (int) ref + ((header & 1L << 32) == 0 ? n : 2 * n);
+    }
+
+    /**
+     * Marks the {@link String} stored at ref as no longer used. The reference must not be used afterwards.
+     * @param ref A reference returned by {@link #add(String)}, which has not been released yet.
+     */
+    public void release(long ref) {
+        garbageBytes += recordBytes(ref);
+    }
+
+    /**
+     * Copies the {@link String} stored at ref to another arena, without building it.
+     * @param ref A reference returned by {@link #add(String)}.
+     * @param target The arena to copy to.
+     * @return The reference to the copy, in target.
+     */
+    public long copyTo(long ref, StringArena target) {
+        int size = recordBytes(ref);
+        target.reserve(size);
+        long copy = (long) (target.slabCount - 1) << 32 | target.top;
+        System.arraycopy(slab(ref), (int) ref, target.slabs[target.slabCount - 1], target.top, size);
+        target.top += size;
+        target.allocatedBytes += size;
+        return copy;
+    }
+
+    /**
+     * Returns the bytes taken by every {@link String} added so far, released or not.
+     * @return The number of bytes allocated in the slabs.
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * Returns the bytes taken by released {@link String}s.
+     * @return The number of bytes that copying the {@link String}s still used to a new arena would reclaim.
+     */
+    public long getGarbageBytes() {
+        return garbageBytes;
+    }
+}
@@ -0,0 +1,235 @@
+package phonebook.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * <p>{@link WriteAheadLog} is an append-only log of mutations, each one a {@link #PUT} or a {@link #REMOVE} of a
+ * &lt; key, value &gt; pair, made durable with <b>group commit</b>: {@link #append(byte, String, String)} only copies
+ * the record in memory, and {@link #sync(long)} makes it durable. Of all the threads waiting in {@link #sync(long)}, a
+ * single one writes every pending record with one sequential write and forces it to disk with one {@code fsync}, while
+ * the others wait for it; whoever is still not covered by that batch leads the next one. The cost of an {@code fsync}
+ * is therefore shared by every mutation that arrived while the previous one was running.</p>
+ *
+ * <p>Every record is framed by its length and a CRC-32C checksum, so that {@link #replay(Path, Mutation)} can tell the
+ * records that made it to disk from a record torn by a crash, which it drops along with everything after it.</p>
+ *
+ * @author Cheolhong Ahn
+ *
+ * @see CRC32C
+ */
+public class WriteAheadLog implements Closeable {
+
+    /**
+     * A mutation read back from the log.
+     */
+    @FunctionalInterface
+    public interface Mutation {
+        /**
+         * Applies a mutation.
+         * @param op Either {@link #PUT} or {@link #REMOVE}.
+         * @param key The key of the mutation.
+         * @param value The value of the mutation.
+         */
+        void apply(byte op, String key, String value);
+    }
+
+    /** The code of insertions. */
+    public static final byte PUT = 1;
+
+    /** The code of deletions. */
+    public static final byte REMOVE = 2;
+
+    private static final int FRAME_BYTES = 2 * Integer.BYTES; // length and checksum of the payload.
+    private static final int INITIAL_BUFFER = 1 << 12;
+
+    private final FileChannel channel;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition synced = lock.newCondition();
+    private ByteBuffer pending = ByteBuffer.allocate(INITIAL_BUFFER); // records appended but not written yet.
+    private ByteBuffer spare = ByteBuffer.allocate(INITIAL_BUFFER);
+    private long appended, durable;
+    private boolean syncing, closed;
+    private IOException failure;
+
+    /**
+     * Opens the log in file for appending, creating it if needed. A log which may end with a torn record must be
+     * replayed first, so that new records are not appended behind it.
+     * @param file The file of the log.
+     * @throws IOException if the file cannot be opened.
+     */
+    public WriteAheadLog(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        appended = durable = channel.size();
+        channel.position(appended);
+    }
+
+    /**
+     * Appends a mutation to the log. It is <b>not</b> durable until {@link #sync(long)} is called with the position
+     * returned.
+     * @param op Either {@link #PUT} or {@link #REMOVE}.
+     * @param key The key of the mutation.
+     * @param value The value of the mutation.
+     * @return The position of the end of the record in the log.
+     * @throws IOException if an earlier write to the log failed: the records after a lost batch could never be made
+     * durable, so the log takes none of them.
+     * @throws IllegalStateException if the log has been closed.
+     */
+    public long append(byte op, String key, String value) throws IOException {
+        byte[] k = key.getBytes(UTF_8), v = value.getBytes(UTF_8);
+        int length = 1 + 2 * Integer.BYTES + k.length + v.length;
+        ByteBuffer payload = ByteBuffer.allocate(length).put(op).putInt(k.length).put(k).putInt(v.length).put(v);
+        CRC32C crc = new CRC32C();
+        crc.update(payload.array());
+        lock.lock();
+        try {
+            if(closed)
+                throw new IllegalStateException("The log is closed.");
+            if(failure != null)
+                throw new IOException("An earlier write to the log failed.", failure);
+            if(pending.remaining() < FRAME_BYTES + length) { // grow to fit the record.
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(2 * pending.capacity(), pending.position() + FRAME_BYTES + length));
+                pending = grown.put(pending.flip());
+            }
+            pending.putInt(length).putInt((int) crc.getValue()).put(payload.array());
+            appended += FRAME_BYTES + length;
+            return appended;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Blocks until every record up to position is durable, writing and forcing the pending records if no other thread
+     * is already doing so.
+     * @param position A position returned by {@link #append(byte, String, String)}.
+     * @throws IOException if the records cannot be written.
+     */
+    public void sync(long position) throws IOException {
+        lock.lock();
+        try {
+            while(durable < position) {
+                if(failure != null)
+                    throw new IOException("An earlier write to the log failed.", failure);
+                if(syncing) { // another thread leads the current batch, which may cover position.
+                    synced.awaitUninterruptibly();
+                    continue;
+                }
+                syncing = true;
+                ByteBuffer batch = pending.flip();
+                pending = spare.clear();
+                long end = appended;
+                lock.unlock();
+                IOException error = null;
+                try {
+                    while(batch.hasRemaining())
+                        channel.write(batch);
+                    channel.force(false);
+                } catch(IOException e) {
+                    error = e;
+                } finally {
+                    lock.lock();
+                    syncing = false;
+                    spare = batch;
+                    if(error == null)
+                        durable = end;
+                    else
+                        failure = error; // the batch is lost, so no later record can be made durable either.
+                    synced.signalAll();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Makes every record appended so far durable.
+     * @throws IOException if the records cannot be written.
+     */
+    public void syncAll() throws IOException {
+        long position;
+        lock.lock();
+        try {
+            position = appended;
+        } finally {
+            lock.unlock();
+        }
+        sync(position);
+    }
+
+    /**
+     * Makes every record appended so far durable and closes the log.
+     * @throws IOException if the records cannot be written.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            syncAll();
+        } finally {
+            lock.lock();
+            try {
+                closed = true;
+            } finally {
+                lock.unlock();
+            }
+            channel.close();
+        }
+    }
+
+    /**
+     * Reads the log in file back, in the order the records were appended, and truncates it after its last intact
+     * record. A missing file is an empty log.
+     * @param file The file of the log.
+     * @param mutation Called on every intact record.
+     * @return The number of records replayed.
+     * @throws IOException if the file cannot be read or truncated.
+     */
+    public static int replay(Path file, Mutation mutation) throws IOException {
+        if(!file.toFile().exists())
+            return 0;
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer log = ByteBuffer.allocate((int) channel.size()); // not mapped, so that it can be truncated.
+            while(log.hasRemaining() && channel.read(log) >= 0);
+            log.flip();
+            int records = 0;
+            CRC32C crc = new CRC32C();
+            while(log.remaining() >= FRAME_BYTES) {
+                int start = log.position(), length = log.getInt(), checksum = log.getInt();
+                if(length < 1 + 2 * Integer.BYTES || length > log.remaining()) { // torn frame.
+                    log.position(start);
+                    break;
+                }
+                ByteBuffer payload = log.slice(log.position(), length);
+                crc.reset();
+                crc.update(payload.duplicate());
+                if((int) crc.getValue() != checksum) { // torn payload.
+                    log.position(start);
+                    break;
+                }
+                byte op = payload.get();
+                byte[] k = new byte[payload.getInt()];
+                payload.get(k);
+                byte[] v = new byte[payload.getInt()];
+                payload.get(v);
+                mutation.apply(op, new String(k, UTF_8), new String(v, UTF_8));
+                log.position(log.position() + length);
+                records++;
+            }
+            if(log.position() < channel.size()) { // drop the torn tail.
+                channel.truncate(log.position());
+                channel.force(true);
+            }
+            return records;
+        }
+    }
+}